@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.benchmark;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.ChildContext;
+import eu.esdihumboldt.hale.common.align.model.Entity;
+import eu.esdihumboldt.hale.common.align.model.ParameterValue;
+import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.FormattedStringFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.JoinFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.RenameFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.RetypeFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter;
+import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter.JoinCondition;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultAlignment;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultCell;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultProperty;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultType;
+import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.project.model.Project;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.core.io.report.impl.DefaultIOReporter;
+import eu.esdihumboldt.hale.common.lookup.impl.LookupTableImpl;
+import eu.esdihumboldt.hale.common.schema.SchemaSpaceID;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.HasValueFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.MappableFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.PrimaryKey;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultSchema;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultSchemaSpace;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
+import eu.esdihumboldt.hale.io.xsd.model.XmlElement;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+
+/**
+ * Synthetic alignment of a database schema to an application schema, used as input for the
+ * benchmarks.
+ *
+ * <p>Every feature type {@code Feature<i>} is mapped from the table {@code t_<i>}, every second one
+ * with a Join to the detail table {@code t_<i>_detail}, all others with a Retype. Each type cell
+ * has Rename, Formatted String and Classification property cells. The target schema is also
+ * written as XSD file, because the mapping transformers read the application schema from its
+ * location.
+ */
+public final class AlignmentFixture {
+
+  public static final String TARGET_NS = "http://www.example.org/benchmark/app";
+  public static final String SOURCE_NS = "jdbc:postgresql:benchmark";
+  private static final String XSD_NS = "http://www.w3.org/2001/XMLSchema";
+
+  private static final List<String> SOURCE_COLUMNS =
+      Arrays.asList("id", "name", "first_name", "last_name", "category");
+  private static final List<String> DETAIL_COLUMNS = Arrays.asList("id", "parent_id", "detail");
+  private static final List<String> TARGET_PROPERTIES =
+      Arrays.asList("name", "label", "category", "detail");
+
+  private final DefaultAlignment alignment = new DefaultAlignment();
+  private final DefaultSchemaSpace sourceSchemaSpace = new DefaultSchemaSpace();
+  private final DefaultSchemaSpace targetSchemaSpace = new DefaultSchemaSpace();
+  private final Map<String, Value> projectVariables = new LinkedHashMap<>();
+  private final Project projectInfo = new Project();
+  private final Path schemaFile;
+
+  private final DefaultTypeDefinition stringType;
+  private Cell sampleTypeCell;
+  private Cell sampleFormattedStringCell;
+
+  private int cellCounter = 0;
+
+  private AlignmentFixture(final int typeCells, final Path workDir) throws IOException {
+    this.schemaFile = workDir.resolve("benchmark-" + typeCells + ".xsd");
+    this.projectInfo.setName("benchmark-" + typeCells);
+    this.projectVariables.put("NAMESPACE", Value.of("https://example.org/benchmark/"));
+    this.projectVariables.put("DATASET", Value.of("benchmark-" + typeCells));
+
+    this.stringType = new DefaultTypeDefinition(new QName(XSD_NS, "string"));
+    stringType.setConstraint(HasValueFlag.ENABLED);
+
+    final DefaultSchema sourceSchema = new DefaultSchema(SOURCE_NS, URI.create(SOURCE_NS));
+    final DefaultSchema targetSchema = new DefaultSchema(TARGET_NS, schemaFile.toUri());
+
+    for (int i = 0; i < typeCells; i++) {
+      final DefaultTypeDefinition table = createTable(sourceSchema, "t_" + i, SOURCE_COLUMNS);
+      final DefaultTypeDefinition featureType = createFeatureType(targetSchema, i);
+
+      final TypeEntityDefinition tableEntity = typeEntity(table, SchemaSpaceID.SOURCE);
+      final TypeEntityDefinition featureTypeEntity = typeEntity(featureType, SchemaSpaceID.TARGET);
+
+      final DefaultCell typeCell;
+      TypeEntityDefinition detailEntity = null;
+      if (i % 2 == 1) {
+        final DefaultTypeDefinition detailTable =
+            createTable(sourceSchema, "t_" + i + "_detail", DETAIL_COLUMNS);
+        detailEntity = typeEntity(detailTable, SchemaSpaceID.SOURCE);
+        typeCell = createJoinCell(tableEntity, detailEntity, featureTypeEntity);
+      } else {
+        typeCell = createCell(RetypeFunction.ID);
+        typeCell.setSource(entities(null, new DefaultType(tableEntity)));
+        typeCell.setTarget(entities(null, new DefaultType(featureTypeEntity)));
+      }
+      alignment.addCell(typeCell);
+
+      alignment.addCell(
+          createRenameCell(
+              propertyEntity(tableEntity, "name"), propertyEntity(featureTypeEntity, "name")));
+      alignment.addCell(
+          createFormattedStringCell(
+              propertyEntity(tableEntity, "first_name"),
+              propertyEntity(tableEntity, "last_name"),
+              propertyEntity(featureTypeEntity, "label")));
+      alignment.addCell(
+          createClassificationCell(
+              propertyEntity(tableEntity, "category"),
+              propertyEntity(featureTypeEntity, "category")));
+      if (detailEntity != null) {
+        alignment.addCell(
+            createRenameCell(
+                propertyEntity(detailEntity, "detail"),
+                propertyEntity(featureTypeEntity, "detail")));
+      }
+
+      if (sampleTypeCell == null) {
+        sampleTypeCell = typeCell;
+      }
+    }
+
+    sourceSchemaSpace.addSchema(sourceSchema);
+    targetSchemaSpace.addSchema(targetSchema);
+
+    writeSchema(typeCells);
+  }
+
+  /**
+   * Create the fixture with the given number of type cells.
+   *
+   * @param typeCells number of type cells
+   * @param workDir directory for the generated application schema
+   * @return the fixture
+   * @throws IOException if the schema file cannot be written
+   */
+  public static AlignmentFixture create(final int typeCells, final Path workDir)
+      throws IOException {
+    return new AlignmentFixture(typeCells, workDir);
+  }
+
+  public Alignment getAlignment() {
+    return alignment;
+  }
+
+  public SchemaSpace getSourceSchemaSpace() {
+    return sourceSchemaSpace;
+  }
+
+  public SchemaSpace getTargetSchemaSpace() {
+    return targetSchemaSpace;
+  }
+
+  public Map<String, Value> getProjectVariables() {
+    return Collections.unmodifiableMap(projectVariables);
+  }
+
+  public Project getProjectInfo() {
+    return projectInfo;
+  }
+
+  public URI getProjectLocation() {
+    return schemaFile.getParent().resolve(projectInfo.getName() + ".halex").toUri();
+  }
+
+  /**
+   * Create a new reporter, so that messages do not pile up across benchmark invocations.
+   *
+   * @return reporter for an export of the fixture
+   */
+  public IOReporter createReporter() {
+    final URI location = getProjectLocation();
+    return new DefaultIOReporter(() -> location, "Benchmark export", "export", false);
+  }
+
+  /** @return the first type cell of the alignment */
+  public Cell getSampleTypeCell() {
+    return sampleTypeCell;
+  }
+
+  /** @return the Formatted String property cell of the first type cell */
+  public Cell getSampleFormattedStringCell() {
+    return sampleFormattedStringCell;
+  }
+
+  private DefaultTypeDefinition createTable(
+      final DefaultSchema schema, final String name, final List<String> columns) {
+    final DefaultTypeDefinition table = new DefaultTypeDefinition(new QName(SOURCE_NS, name));
+    table.setConstraint(MappableFlag.ENABLED);
+    table.setConstraint(new PrimaryKey(Collections.singletonList(new QName("id"))));
+    for (final String column : columns) {
+      final DefaultPropertyDefinition property =
+          new DefaultPropertyDefinition(new QName(column), table, stringType);
+      property.setConstraint(Cardinality.CC_EXACTLY_ONCE);
+    }
+    schema.addType(table);
+    return table;
+  }
+
+  private DefaultTypeDefinition createFeatureType(final DefaultSchema schema, final int index) {
+    final QName elementName = new QName(TARGET_NS, "Feature" + index);
+    final DefaultTypeDefinition featureType =
+        new DefaultTypeDefinition(new QName(TARGET_NS, "Feature" + index + "Type"));
+    featureType.setConstraint(MappableFlag.ENABLED);
+    featureType.setDescription(
+        "-- Name -- Feature "
+            + index
+            + " -- Definition -- Synthetic feature type number "
+            + index
+            + " of the benchmark schema. -- Description -- NOTE Generated by the benchmark fixture.");
+
+    final XmlElements elements = new XmlElements();
+    elements.addElement(new XmlElement(elementName, featureType, null));
+    featureType.setConstraint(elements);
+
+    for (final String name : TARGET_PROPERTIES) {
+      final DefaultPropertyDefinition property =
+          new DefaultPropertyDefinition(new QName(TARGET_NS, name), featureType, stringType);
+      property.setConstraint(Cardinality.CC_OPTIONAL);
+      property.setDescription("-- Name -- " + name + " -- Definition -- The " + name + ".");
+    }
+    schema.addType(featureType);
+    return featureType;
+  }
+
+  private DefaultCell createJoinCell(
+      final TypeEntityDefinition table,
+      final TypeEntityDefinition detailTable,
+      final TypeEntityDefinition featureType) {
+    final DefaultCell cell = createCell(JoinFunction.ID);
+    cell.setSource(
+        entities(JoinFunction.JOIN_TYPES, new DefaultType(table), new DefaultType(detailTable)));
+    cell.setTarget(entities(null, new DefaultType(featureType)));
+
+    final JoinCondition condition =
+        new JoinCondition(propertyEntity(table, "id"), propertyEntity(detailTable, "parent_id"));
+    final JoinParameter joinParameter =
+        new JoinParameter(
+            Arrays.asList(table, detailTable), new HashSet<>(Collections.singleton(condition)));
+
+    final ListMultimap<String, ParameterValue> parameters = ArrayListMultimap.create();
+    parameters.put(JoinFunction.PARAMETER_JOIN, new ParameterValue(Value.complex(joinParameter)));
+    cell.setTransformationParameters(parameters);
+    return cell;
+  }
+
+  private DefaultCell createRenameCell(
+      final PropertyEntityDefinition source, final PropertyEntityDefinition target) {
+    final DefaultCell cell = createCell(RenameFunction.ID);
+    cell.setSource(entities(null, new DefaultProperty(source)));
+    cell.setTarget(entities(null, new DefaultProperty(target)));
+    return cell;
+  }
+
+  private DefaultCell createFormattedStringCell(
+      final PropertyEntityDefinition first,
+      final PropertyEntityDefinition second,
+      final PropertyEntityDefinition target) {
+    final DefaultCell cell = createCell(FormattedStringFunction.ID);
+    cell.setSource(entities("var", new DefaultProperty(first), new DefaultProperty(second)));
+    cell.setTarget(entities(null, new DefaultProperty(target)));
+
+    final ListMultimap<String, ParameterValue> parameters = ArrayListMultimap.create();
+    parameters.put(
+        "pattern",
+        new ParameterValue(Value.of("{{project:NAMESPACE}}{first_name}, {last_name} ({{project:DATASET}})")));
+    cell.setTransformationParameters(parameters);
+
+    if (sampleFormattedStringCell == null) {
+      sampleFormattedStringCell = cell;
+    }
+    return cell;
+  }
+
+  private DefaultCell createClassificationCell(
+      final PropertyEntityDefinition source, final PropertyEntityDefinition target) {
+    final DefaultCell cell = createCell(ClassificationMappingFunction.ID);
+    cell.setSource(entities(null, new DefaultProperty(source)));
+    cell.setTarget(entities(null, new DefaultProperty(target)));
+
+    final Map<Value, Value> lookup = new LinkedHashMap<>();
+    for (int code = 1000; code < 1020; code++) {
+      lookup.put(
+          Value.of(String.valueOf(code)),
+          Value.of("{{project:NAMESPACE}}codelist/Category/" + code));
+    }
+    final ListMultimap<String, ParameterValue> parameters = ArrayListMultimap.create();
+    parameters.put(
+        ClassificationMappingFunction.PARAMETER_LOOKUPTABLE,
+        new ParameterValue(Value.complex(new LookupTableImpl(lookup))));
+    parameters.put("notClassifiedAction", new ParameterValue(Value.of("null")));
+    cell.setTransformationParameters(parameters);
+    return cell;
+  }
+
+  private DefaultCell createCell(final String transformationIdentifier) {
+    final DefaultCell cell = new DefaultCell();
+    cell.setId("C" + cellCounter++);
+    cell.setTransformationIdentifier(transformationIdentifier);
+    return cell;
+  }
+
+  private static TypeEntityDefinition typeEntity(
+      final TypeDefinition type, final SchemaSpaceID schemaSpace) {
+    return new TypeEntityDefinition(type, schemaSpace, null);
+  }
+
+  private static PropertyEntityDefinition propertyEntity(
+      final TypeEntityDefinition type, final String propertyName) {
+    final ChildDefinition<?> child =
+        type.getType().getChildren().stream()
+            .filter(c -> c.getName().getLocalPart().equals(propertyName))
+            .findFirst()
+            .orElseThrow(
+                () -> new IllegalArgumentException("Unknown property " + propertyName));
+    return new PropertyEntityDefinition(
+        type.getType(),
+        Collections.singletonList(new ChildContext(child)),
+        type.getSchemaSpace(),
+        null);
+  }
+
+  private static ListMultimap<String, Entity> entities(final String name, final Entity... entities) {
+    final ListMultimap<String, Entity> result = ArrayListMultimap.create();
+    for (final Entity entity : entities) {
+      result.put(name, entity);
+    }
+    return result;
+  }
+
+  private void writeSchema(final int typeCells) throws IOException {
+    try (final Writer writer = Files.newBufferedWriter(schemaFile, StandardCharsets.UTF_8)) {
+      writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      writer.write(
+          "<xs:schema xmlns:xs=\""
+              + XSD_NS
+              + "\" xmlns:app=\""
+              + TARGET_NS
+              + "\" targetNamespace=\""
+              + TARGET_NS
+              + "\" elementFormDefault=\"qualified\">\n");
+      for (int i = 0; i < typeCells; i++) {
+        writer.write(
+            "  <xs:element name=\"Feature" + i + "\" type=\"app:Feature" + i + "Type\"/>\n");
+        writer.write("  <xs:complexType name=\"Feature" + i + "Type\">\n    <xs:sequence>\n");
+        for (final String name : TARGET_PROPERTIES) {
+          writer.write(
+              "      <xs:element name=\"" + name + "\" type=\"xs:string\" minOccurs=\"0\"/>\n");
+        }
+        writer.write("    </xs:sequence>\n  </xs:complexType>\n");
+      }
+      writer.write("</xs:schema>\n");
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import de.ii.ldproxy.cfg.LdproxyCfgWriter;
+import de.ii.xtraplatform.features.domain.FeatureProviderDataV2;
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingGenerator;
+import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
+import de.ii.xtraserver.hale.io.writer.handler.MappingContext;
+import de.ii.xtraserver.hale.io.writer.handler.PropertyTransformationHandler;
+import de.ii.xtraserver.hale.io.writer.handler.PropertyTransformationHandlerFactory;
+import de.ii.xtraserver.hale.io.writer.handler.TypeTransformationHandler;
+import de.ii.xtraserver.hale.io.writer.handler.TypeTransformationHandlerFactory;
+import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
+import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiMappingGenerator;
+import de.interactive_instruments.xtraserver.config.api.XtraServerMapping;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end benchmarks of both writers: the complete generation of a mapping, and the final
+ * assembly steps {@link MappingContext#getMapping()} and {@link
+ * de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext#getProviderData(String)} on
+ * contexts that were populated by the handlers beforehand. The assembly steps consume the state of
+ * the context, so every invocation gets a freshly populated one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark {
+
+  private static final String PROVIDER_ID = "benchmark";
+
+  @Param({"10", "100", "1000", "10000"})
+  public int typeCells;
+
+  private Path workDir;
+  private AlignmentFixture fixture;
+
+  /** A populated classic context, created again for every invocation. */
+  @State(Scope.Thread)
+  public static class ClassicContext {
+
+    private MappingContext context;
+
+    @Setup(Level.Invocation)
+    public void setUp(final ExportBenchmark benchmark) throws UnsupportedTransformationException {
+      this.context = benchmark.populateClassicContext();
+    }
+  }
+
+  /** A populated Web API context, created again for every invocation. */
+  @State(Scope.Thread)
+  public static class WebApiContext {
+
+    private de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext context;
+
+    @Setup(Level.Invocation)
+    public void setUp(final ExportBenchmark benchmark)
+        throws UnsupportedTransformationException, IOException {
+      this.context = benchmark.populateWebApiContext();
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    this.workDir = Files.createTempDirectory("xtraserver-benchmark");
+    this.fixture = AlignmentFixture.create(typeCells, workDir);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(workDir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public XtraServerMapping classicGenerate() throws UnsupportedTransformationException {
+    final IOReporter reporter = fixture.createReporter();
+    final XtraServerMappingGenerator generator =
+        new XtraServerMappingGenerator(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            new NoOpProgressIndicator(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            reporter);
+    return generator.generate(reporter);
+  }
+
+  @Benchmark
+  public XtraServerMapping classicGetMapping(final ClassicContext state) {
+    return state.context.getMapping();
+  }
+
+  @Benchmark
+  public long webApiGenerate() throws UnsupportedTransformationException, IOException {
+    final IOReporter reporter = fixture.createReporter();
+    try (final XtraServerWebApiMappingGenerator generator =
+        new XtraServerWebApiMappingGenerator(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            new NoOpProgressIndicator(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            reporter)) {
+      final CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+      generator.generate(reporter, out, PROVIDER_ID, true);
+      return out.getCount();
+    }
+  }
+
+  @Benchmark
+  public FeatureProviderDataV2 webApiGetProviderData(final WebApiContext state) {
+    return state.context.getProviderData(PROVIDER_ID);
+  }
+
+  private MappingContext populateClassicContext() throws UnsupportedTransformationException {
+    final MappingContext context =
+        new MappingContext(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            fixture.createReporter());
+    final TypeTransformationHandlerFactory typeHandlerFactory =
+        TypeTransformationHandler.createFactory(context);
+    final PropertyTransformationHandlerFactory propertyHandlerFactory =
+        PropertyTransformationHandler.createFactory(context);
+
+    final Alignment alignment = fixture.getAlignment();
+    for (final Cell typeCell : alignment.getActiveTypeCells()) {
+      final TypeTransformationHandler typeHandler =
+          typeHandlerFactory.create(typeCell.getTransformationIdentifier());
+      if (typeHandler == null) {
+        continue;
+      }
+      typeHandler.handle(typeCell);
+      for (final Cell propertyCell : sortedPropertyCells(alignment, typeCell)) {
+        final PropertyTransformationHandler propertyHandler =
+            propertyHandlerFactory.create(propertyCell.getTransformationIdentifier());
+        if (propertyHandler != null) {
+          propertyHandler.handle(new CellParentWrapper(typeCell, propertyCell));
+        }
+      }
+    }
+    return context;
+  }
+
+  private de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext populateWebApiContext()
+      throws UnsupportedTransformationException, IOException {
+    final de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext context =
+        new de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            fixture.createReporter(),
+            LdproxyCfgWriter.create(Files.createDirectories(workDir.resolve("ldproxy-cfg"))));
+    final de.ii.xtraserver.webapi.hale.io.writer.handler.TypeTransformationHandlerFactory
+        typeHandlerFactory =
+            de.ii.xtraserver.webapi.hale.io.writer.handler.TypeTransformationHandler.createFactory(
+                context);
+    final de.ii.xtraserver.webapi.hale.io.writer.handler.PropertyTransformationHandlerFactory
+        propertyHandlerFactory =
+            de.ii.xtraserver.webapi.hale.io.writer.handler.PropertyTransformationHandler
+                .createFactory(context);
+
+    final Alignment alignment = fixture.getAlignment();
+    for (final Cell typeCell : alignment.getActiveTypeCells()) {
+      final de.ii.xtraserver.webapi.hale.io.writer.handler.TypeTransformationHandler typeHandler =
+          typeHandlerFactory.create(typeCell.getTransformationIdentifier());
+      if (typeHandler == null) {
+        continue;
+      }
+      typeHandler.handle(typeCell, PROVIDER_ID);
+      for (final Cell propertyCell : sortedPropertyCells(alignment, typeCell)) {
+        final de.ii.xtraserver.webapi.hale.io.writer.handler.PropertyTransformationHandler
+            propertyHandler = propertyHandlerFactory.create(propertyCell.getTransformationIdentifier());
+        if (propertyHandler != null) {
+          propertyHandler.handle(new CellParentWrapper(typeCell, propertyCell), PROVIDER_ID);
+        }
+      }
+    }
+    return context;
+  }
+
+  private static List<? extends Cell> sortedPropertyCells(
+      final Alignment alignment, final Cell typeCell) {
+    return alignment.getPropertyCells(typeCell).stream()
+        .sorted(Comparator.comparing(Cell::getPriority))
+        .collect(Collectors.toList());
+  }
+}
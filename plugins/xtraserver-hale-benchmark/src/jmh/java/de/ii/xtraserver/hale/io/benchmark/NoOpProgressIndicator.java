@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.benchmark;
+
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
+
+/** Progress indicator that ignores all progress, so it does not distort the measurements. */
+final class NoOpProgressIndicator implements ProgressIndicator {
+
+  @Override
+  public void begin(final String taskName, final int totalWork) {}
+
+  @Override
+  public void setCurrentTask(final String taskName) {}
+
+  @Override
+  public void advance(final int workUnits) {}
+
+  @Override
+  public boolean isCanceled() {
+    return false;
+  }
+
+  @Override
+  public void end() {}
+}
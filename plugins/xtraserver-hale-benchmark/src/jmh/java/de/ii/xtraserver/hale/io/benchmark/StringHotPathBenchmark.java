@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.benchmark;
+
+import de.ii.ldproxy.cfg.LdproxyCfgWriter;
+import de.ii.xtraserver.hale.io.writer.handler.MappingContext;
+import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Micro benchmarks for the string processing that is done for every cell: resolving project
+ * variables and parsing schema documentation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringHotPathBenchmark {
+
+  private static final String TEMPLATE =
+      "{{project:NAMESPACE}}codelist/{{project:DATASET}}/{{project:NAMESPACE}}/{{project:UNSET}}";
+
+  private static final String PLAIN = "https://example.org/codelist/Category/1000";
+
+  private static final String DESCRIPTION =
+      "-- Name -- Administrative unit -- Definition -- Unit of administration where a Member State"
+          + " has and/or exercises jurisdictional rights, for local, regional and national"
+          + " governance. -- Description -- NOTE Administrative units are not related to the"
+          + " abstract notion of a country.";
+
+  private Path workDir;
+  private MappingContext classicContext;
+  private de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext webApiContext;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    this.workDir = Files.createTempDirectory("xtraserver-benchmark");
+    final AlignmentFixture fixture = AlignmentFixture.create(1, workDir);
+    this.classicContext =
+        new MappingContext(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            fixture.createReporter());
+    this.webApiContext =
+        new de.ii.xtraserver.webapi.hale.io.writer.handler.MappingContext(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            fixture.createReporter(),
+            LdproxyCfgWriter.create(Files.createDirectories(workDir.resolve("ldproxy-cfg"))));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(workDir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public String classicResolveProjectVars() {
+    return classicContext.resolveProjectVars(TEMPLATE);
+  }
+
+  @Benchmark
+  public String classicResolveProjectVarsWithoutVariables() {
+    return classicContext.resolveProjectVars(PLAIN);
+  }
+
+  @Benchmark
+  public String webApiResolveProjectVars() {
+    return webApiContext.resolveProjectVars(TEMPLATE);
+  }
+
+  @Benchmark
+  public Map<String, String> parseDescription() {
+    return XtraServerWebApiUtil.parseDescription(DESCRIPTION);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer.handler;
+
+import de.ii.xtraserver.hale.io.benchmark.AlignmentFixture;
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
+import de.interactive_instruments.xtraserver.config.api.MappingValue;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.Property;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Micro benchmark for the translation of a Formatted String pattern into an XtraServer
+ * expression. Lives in the handler package because the handlers are package private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormattedStringHandlerBenchmark {
+
+  private Path workDir;
+  private FormattedStringHandler handler;
+  private Cell propertyCell;
+  private Property targetProperty;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.workDir = Files.createTempDirectory("xtraserver-benchmark");
+    final AlignmentFixture fixture = AlignmentFixture.create(1, workDir);
+    final MappingContext mappingContext =
+        new MappingContext(
+            fixture.getAlignment(),
+            fixture.getTargetSchemaSpace(),
+            fixture.getProjectVariables(),
+            fixture.getProjectInfo(),
+            fixture.getProjectLocation(),
+            fixture.createReporter());
+    this.handler = new FormattedStringHandler(mappingContext);
+    this.propertyCell =
+        new CellParentWrapper(
+            fixture.getSampleTypeCell(), fixture.getSampleFormattedStringCell());
+    this.targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(workDir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public Optional<MappingValue> doHandle() {
+    return handler.doHandle(propertyCell, targetProperty);
+  }
+}
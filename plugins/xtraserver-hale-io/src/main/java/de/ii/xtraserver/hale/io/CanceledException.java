@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io;
+
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
+
+/**
+ * Thrown by the reader and the writers when the user canceled the operation. The generators check
+ * for cancellation between units of work, e.g. between type cells, transformer stages or feature
+ * type mappings, so the operation ends in a consistent state.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public class CanceledException extends RuntimeException {
+
+  public CanceledException() {
+    super("The operation was canceled");
+  }
+
+  /**
+   * Throw a {@link CanceledException} if the operation was canceled.
+   *
+   * @param progress the progress indicator of the operation, may be null
+   */
+  public static void checkCanceled(final ProgressIndicator progress) {
+    if (progress != null && progress.isCanceled()) {
+      throw new CanceledException();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.cli;
+
+import de.ii.xtraserver.hale.io.cli.BatchExporter.MappingFormat;
+import de.ii.xtraserver.hale.io.cli.BatchExporter.WebApiFormat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * Command line entry point for the {@link BatchExporter}, registered as Eclipse application
+ * <code>de.interactive_instruments.xtraserver.hale.io.batchExport</code>.
+ *
+ * <pre>
+ * hale -nosplash -application de.interactive_instruments.xtraserver.hale.io.batchExport
+ *     -out &lt;directory&gt; [-threads &lt;n&gt;] [-mapping xml|archive|none]
+ *     [-webapi yaml|archive|none] (-projects &lt;list file&gt; | &lt;project file&gt;...)
+ * </pre>
+ *
+ * <p>The exit code is 0 if all projects were exported, 1 if an export failed and 2 for invalid
+ * arguments.
+ */
+public class BatchExportApplication implements IApplication {
+
+  static final Integer EXIT_FAILED = 1;
+  static final Integer EXIT_USAGE = 2;
+
+  private static final String USAGE =
+      "Usage: -out <directory> [-threads <n>] [-mapping xml|archive|none]"
+          + " [-webapi yaml|archive|none] (-projects <list file> | <project file>...)";
+
+  @Override
+  public Object start(final IApplicationContext context) throws Exception {
+    final String[] args =
+        (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+    context.applicationRunning();
+
+    final BatchExporter exporter;
+    try {
+      exporter = parseArguments(args != null ? args : new String[0]);
+    } catch (final IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      return EXIT_USAGE;
+    } catch (final IOException e) {
+      System.err.println("The project list cannot be read: " + e.getMessage());
+      return EXIT_USAGE;
+    }
+
+    return exporter.run(System.out) ? EXIT_OK : EXIT_FAILED;
+  }
+
+  @Override
+  public void stop() {
+    // the export threads are daemon threads and end with the application
+  }
+
+  static BatchExporter parseArguments(final String[] args) throws IOException {
+    Path outputDirectory = null;
+    int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    MappingFormat mappingFormat = MappingFormat.XML;
+    WebApiFormat webApiFormat = WebApiFormat.ARCHIVE;
+    final List<Path> projects = new ArrayList<>();
+
+    for (int i = 0; i < args.length; i++) {
+      final String arg = args[i];
+      switch (arg) {
+        case "-out":
+          outputDirectory = Paths.get(value(args, ++i, arg));
+          break;
+        case "-threads":
+          try {
+            threads = Integer.parseInt(value(args, ++i, arg));
+          } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+          }
+          break;
+        case "-mapping":
+          mappingFormat = format(MappingFormat.class, value(args, ++i, arg));
+          break;
+        case "-webapi":
+          webApiFormat = format(WebApiFormat.class, value(args, ++i, arg));
+          break;
+        case "-projects":
+          projects.addAll(BatchExporter.readProjectList(Paths.get(value(args, ++i, arg))));
+          break;
+        default:
+          if (arg.startsWith("-")) {
+            throw new IllegalArgumentException("Unknown option: " + arg);
+          }
+          projects.add(Paths.get(arg).toAbsolutePath().normalize());
+      }
+    }
+
+    if (outputDirectory == null) {
+      throw new IllegalArgumentException("No output directory given");
+    }
+    if (projects.isEmpty()) {
+      throw new IllegalArgumentException("No projects given");
+    }
+    return new BatchExporter(projects, outputDirectory, threads, mappingFormat, webApiFormat);
+  }
+
+  private static String value(final String[] args, final int index, final String option) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException("Missing value for option " + option);
+    }
+    return args[index];
+  }
+
+  private static <T extends Enum<T>> T format(final Class<T> type, final String value) {
+    try {
+      return Enum.valueOf(type, value.toUpperCase(Locale.ENGLISH));
+    } catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown format: " + value);
+    }
+  }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.cli;
+
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingFileWriter;
+import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiMappingFileWriter;
+import eu.esdihumboldt.hale.common.align.io.impl.AbstractAlignmentWriter;
+import eu.esdihumboldt.hale.common.core.HalePlatform;
+import eu.esdihumboldt.hale.common.core.io.impl.LogProgressIndicator;
+import eu.esdihumboldt.hale.common.core.io.report.IOReport;
+import eu.esdihumboldt.hale.common.core.io.supplier.DefaultInputSupplier;
+import eu.esdihumboldt.hale.common.core.io.supplier.FileIOSupplier;
+import eu.esdihumboldt.hale.common.core.report.Report;
+import eu.esdihumboldt.hale.common.core.report.ReportHandler;
+import eu.esdihumboldt.hale.common.headless.impl.ProjectTransformationEnvironment;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Exports the XtraServer Mapping and the XtraServer Web API configuration for a list of hale
+ * projects without the hale studio UI. Each project is loaded with its alignment, schemas and
+ * project variables and passed to both writers. The projects are processed concurrently on a
+ * bounded thread pool, every writer gets its own reporter.
+ *
+ * <p>The output files of a project are written to the output directory and named after the
+ * project file, the name is also used as provider id of the XtraServer Web API configuration. The
+ * names are checked before any project is loaded.
+ */
+public final class BatchExporter {
+
+  // same rule as XtraServerWebApiMappingFileWriter
+  private static final Pattern PROVIDER_ID = Pattern.compile("[\\w-]+");
+
+  /** Output format of the XtraServer Mapping. */
+  public enum MappingFormat {
+    XML(XtraServerMappingFileWriter.CONTENT_TYPE_MAPPING, ".xml"),
+    ARCHIVE(XtraServerMappingFileWriter.CONTENT_TYPE_ARCHIVE, "-mapping.zip"),
+    NONE(null, null);
+
+    private final String contentType;
+    private final String suffix;
+
+    MappingFormat(final String contentType, final String suffix) {
+      this.contentType = contentType;
+      this.suffix = suffix;
+    }
+  }
+
+  /** Output format of the XtraServer Web API configuration. */
+  public enum WebApiFormat {
+    YAML(XtraServerWebApiMappingFileWriter.CONTENT_TYPE_MAPPING, ".yml"),
+    ARCHIVE(XtraServerWebApiMappingFileWriter.CONTENT_TYPE_ARCHIVE, ".zip"),
+    NONE(null, null);
+
+    private final String contentType;
+    private final String suffix;
+
+    WebApiFormat(final String contentType, final String suffix) {
+      this.contentType = contentType;
+      this.suffix = suffix;
+    }
+  }
+
+  private final List<Path> projects;
+  private final Path outputDirectory;
+  private final int threads;
+  private final MappingFormat mappingFormat;
+  private final WebApiFormat webApiFormat;
+
+  /**
+   * @param projects the hale project files
+   * @param outputDirectory directory for the exported files
+   * @param threads maximum number of projects that are processed at the same time
+   * @param mappingFormat output format of the XtraServer Mapping
+   * @param webApiFormat output format of the XtraServer Web API configuration
+   * @throws IllegalArgumentException if the number of threads is not positive, two project files
+   *     have the same name or the name of a project file is not a valid provider id
+   */
+  public BatchExporter(
+      final List<Path> projects,
+      final Path outputDirectory,
+      final int threads,
+      final MappingFormat mappingFormat,
+      final WebApiFormat webApiFormat) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of threads must be at least 1");
+    }
+    this.projects = new ArrayList<>(Objects.requireNonNull(projects));
+    this.outputDirectory = Objects.requireNonNull(outputDirectory);
+    this.threads = threads;
+    this.mappingFormat = Objects.requireNonNull(mappingFormat);
+    this.webApiFormat = Objects.requireNonNull(webApiFormat);
+    final Map<String, Path> projectsByName = new HashMap<>();
+    for (final Path project : this.projects) {
+      final String name = getBaseName(project);
+      final Path other = projectsByName.put(name, project);
+      if (other != null) {
+        throw new IllegalArgumentException(
+            "The projects "
+                + other
+                + " and "
+                + project
+                + " have the same name '"
+                + name
+                + "', their exported files would overwrite each other.");
+      }
+    }
+    if (webApiFormat != WebApiFormat.NONE) {
+      for (final Path project : this.projects) {
+        final String providerId = getBaseName(project);
+        if (!PROVIDER_ID.matcher(providerId).matches()) {
+          throw new IllegalArgumentException(
+              "The name '"
+                  + providerId
+                  + "' of the project "
+                  + project
+                  + " is not a valid provider id. It may only contain letters, numbers, hyphens"
+                  + " and underscores.");
+        }
+      }
+    }
+  }
+
+  /**
+   * Read the project files from a list file with one project file per line. Empty lines and lines
+   * starting with '#' are ignored, relative paths are resolved against the directory of the list
+   * file.
+   *
+   * @param projectList the list file
+   * @return the project files
+   * @throws IOException if the list cannot be read
+   */
+  public static List<Path> readProjectList(final Path projectList) throws IOException {
+    final Path baseDirectory = projectList.toAbsolutePath().getParent();
+    final List<Path> projects = new ArrayList<>();
+    for (final String line : Files.readAllLines(projectList, StandardCharsets.UTF_8)) {
+      final String project = line.trim();
+      if (!project.isEmpty() && !project.startsWith("#")) {
+        projects.add(baseDirectory.resolve(project).normalize());
+      }
+    }
+    return projects;
+  }
+
+  /**
+   * Export all projects and print a summary.
+   *
+   * @param summary stream for the summary
+   * @return true if all exports succeeded
+   * @throws InterruptedException if the export is interrupted
+   * @throws IOException if the output directory cannot be created
+   */
+  public boolean run(final PrintStream summary) throws InterruptedException, IOException {
+    Files.createDirectories(outputDirectory);
+
+    final long start = System.nanoTime();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerFactory());
+    final List<ProjectResult> results = new ArrayList<>();
+    try {
+      final List<Future<ProjectResult>> futures = new ArrayList<>();
+      for (final Path project : projects) {
+        futures.add(executor.submit(exportProject(project)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (final ExecutionException e) {
+          results.add(ProjectResult.failed(projects.get(i), "Export aborted", e.getCause()));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return printSummary(summary, results, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private Callable<ProjectResult> exportProject(final Path project) {
+    return () -> {
+      final ProjectResult result = new ProjectResult(project);
+      final long start = System.nanoTime();
+      final ProjectTransformationEnvironment environment;
+      try {
+        environment =
+            new ProjectTransformationEnvironment(
+                project.toString(),
+                new DefaultInputSupplier(project.toUri()),
+                new CollectingReportHandler(result));
+      } catch (final Exception e) {
+        return ProjectResult.failed(project, "Project could not be loaded", e);
+      }
+      result.loadMillis = (System.nanoTime() - start) / 1_000_000;
+      if (result.error != null) {
+        return result;
+      }
+
+      final String name = getBaseName(project);
+      try {
+        if (mappingFormat != MappingFormat.NONE) {
+          result.exports.add(
+              export(
+                  environment,
+                  XtraServerMappingFileWriter::new,
+                  mappingFormat.contentType,
+                  outputDirectory.resolve(name + mappingFormat.suffix),
+                  project));
+        }
+        if (webApiFormat != WebApiFormat.NONE) {
+          result.exports.add(
+              export(
+                  environment,
+                  XtraServerWebApiMappingFileWriter::new,
+                  webApiFormat.contentType,
+                  outputDirectory.resolve(name + webApiFormat.suffix),
+                  project));
+        }
+      } catch (final RuntimeException e) {
+        result.error = "Export failed: " + describe(e);
+      }
+      return result;
+    };
+  }
+
+  private static ExportResult export(
+      final ProjectTransformationEnvironment environment,
+      final Supplier<? extends AbstractAlignmentWriter> writerFactory,
+      final String contentType,
+      final Path target,
+      final Path project) {
+    final ExportResult result = new ExportResult(target);
+    final long start = System.nanoTime();
+    try {
+      final AbstractAlignmentWriter writer = writerFactory.get();
+      writer.setAlignment(environment.getAlignment());
+      writer.setSourceSchema(environment.getSourceSchema());
+      writer.setTargetSchema(environment.getTargetSchema());
+      writer.setProjectInfo(environment.getProject());
+      writer.setProjectLocation(project.toUri());
+      writer.setContentType(HalePlatform.getContentTypeManager().getContentType(contentType));
+      writer.setTarget(new FileIOSupplier(target.toFile()));
+
+      final IOReport report = writer.execute(new LogProgressIndicator());
+      result.success = report.isSuccess() && report.getErrors().isEmpty();
+      result.warnings = report.getWarnings().size();
+      result.errors = report.getErrors().size();
+      if (!report.getErrors().isEmpty()) {
+        result.message = report.getErrors().iterator().next().getMessage();
+      } else if (!report.isSuccess()) {
+        result.message = report.getSummary();
+      }
+    } catch (final Exception e) {
+      result.success = false;
+      result.errors++;
+      result.message = describe(e);
+    }
+    result.millis = (System.nanoTime() - start) / 1_000_000;
+    return result;
+  }
+
+  private static boolean printSummary(
+      final PrintStream summary, final List<ProjectResult> results, final long totalMillis) {
+    int failed = 0;
+    int warnings = 0;
+    for (final ProjectResult result : results) {
+      final boolean success = result.isSuccess();
+      if (!success) {
+        failed++;
+      }
+      summary.println(
+          String.format(
+              Locale.ENGLISH,
+              "%s %s (load %d ms)",
+              success ? "OK    " : "FAILED",
+              result.project,
+              result.loadMillis));
+      if (result.error != null) {
+        summary.println("         " + result.error);
+      }
+      for (final ExportResult export : result.exports) {
+        warnings += export.warnings;
+        summary.println(
+            String.format(
+                Locale.ENGLISH,
+                "       %s %s: %d warning(s), %d error(s), %d ms",
+                export.success ? "ok    " : "failed",
+                export.target.getFileName(),
+                export.warnings,
+                export.errors,
+                export.millis));
+        if (export.message != null) {
+          summary.println("         " + export.message);
+        }
+      }
+    }
+    summary.println(
+        String.format(
+            Locale.ENGLISH,
+            "%d project(s), %d failed, %d warning(s), %d ms",
+            results.size(),
+            failed,
+            warnings,
+            totalMillis));
+    summary.flush();
+    return failed == 0;
+  }
+
+  /** @return the message of an exception, with the root cause if it is a different exception */
+  private static String describe(final Throwable e) {
+    final String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    Throwable root = e;
+    while (root.getCause() != null && root.getCause() != root) {
+      root = root.getCause();
+    }
+    if (root == e) {
+      return message;
+    }
+    return message
+        + " (caused by "
+        + root.getClass().getName()
+        + (root.getMessage() != null ? ": " + root.getMessage() : "")
+        + ")";
+  }
+
+  private static String getBaseName(final Path project) {
+    final String fileName = project.getFileName().toString();
+    final int extension = fileName.lastIndexOf('.');
+    return extension > 0 ? fileName.substring(0, extension) : fileName;
+  }
+
+  private static final class ProjectResult {
+
+    private final Path project;
+    private final List<ExportResult> exports = new ArrayList<>();
+    private long loadMillis;
+    // load or export error of the whole project, the errors of the writers are in the exports
+    private String error;
+
+    private ProjectResult(final Path project) {
+      this.project = project;
+    }
+
+    static ProjectResult failed(final Path project, final String phase, final Throwable cause) {
+      final ProjectResult result = new ProjectResult(project);
+      result.error = phase + ": " + describe(cause);
+      return result;
+    }
+
+    boolean isSuccess() {
+      return error == null && exports.stream().allMatch(export -> export.success);
+    }
+  }
+
+  private static final class ExportResult {
+
+    private final Path target;
+    private boolean success;
+    private int warnings;
+    private int errors;
+    private long millis;
+    private String message;
+
+    private ExportResult(final Path target) {
+      this.target = target;
+    }
+  }
+
+  /** Marks a project as failed if a report of the project loading was not successful. */
+  private static final class CollectingReportHandler implements ReportHandler {
+
+    private final ProjectResult result;
+
+    private CollectingReportHandler(final ProjectResult result) {
+      this.result = result;
+    }
+
+    @Override
+    public void publishReport(final Report<?> report) {
+      if (!report.isSuccess() && result.error == null) {
+        result.error = "Loading failed: " + report.getSummary();
+      }
+    }
+  }
+
+  private static final class WorkerFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "xtraserver-batch-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
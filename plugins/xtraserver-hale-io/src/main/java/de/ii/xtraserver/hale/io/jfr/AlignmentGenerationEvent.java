@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight Recorder event for the generation of an alignment from an XtraServer Mapping file. */
+@Name("de.ii.xtraserver.AlignmentGeneration")
+@Label("Alignment Generation")
+@Description("Generation of an alignment from an XtraServer Mapping")
+@Category({"hale", "XtraServer"})
+@StackTrace(false)
+public final class AlignmentGenerationEvent extends Event {
+
+  @Label("Feature Types")
+  @Description("Number of feature type mappings that were read")
+  int featureTypeCount;
+
+  @Label("Cell Count")
+  @Description("Number of cells in the generated alignment")
+  int cellCount;
+
+  private AlignmentGenerationEvent() {}
+
+  /**
+   * Create an event and start its timing.
+   *
+   * @return the started event
+   */
+  public static AlignmentGenerationEvent start() {
+    final AlignmentGenerationEvent event = new AlignmentGenerationEvent();
+    if (event.isEnabled()) {
+      event.begin();
+    }
+    return event;
+  }
+
+  /**
+   * Stop the timing and commit the event, if it passes the thresholds of the recording.
+   *
+   * @param featureTypeCount number of feature type mappings that were read
+   * @param cellCount number of generated cells
+   */
+  public void end(final int featureTypeCount, final int cellCount) {
+    end();
+    if (shouldCommit()) {
+      this.featureTypeCount = featureTypeCount;
+      this.cellCount = cellCount;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.jfr;
+
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for the transformation of a single type or property cell by a handler of
+ * the XtraServer Mapping or XtraServer Web API export. The event is only populated and committed
+ * if it is enabled in the running recording. It may only be created if {@link
+ * FlightRecorder#AVAILABLE} is true.
+ */
+@Name("de.ii.xtraserver.CellTransformation")
+@Label("Cell Transformation")
+@Description("Transformation of an alignment cell by an export handler")
+@Category({"hale", "XtraServer"})
+@StackTrace(false)
+public final class CellTransformationEvent extends Event {
+
+  @Label("Exporter")
+  String exporter;
+
+  @Label("Handler")
+  String handler;
+
+  @Label("Transformation Identifier")
+  String transformationIdentifier;
+
+  @Label("Cell Id")
+  String cellId;
+
+  @Label("Feature Type")
+  String featureType;
+
+  private CellTransformationEvent() {}
+
+  /**
+   * Create an event and start its timing.
+   *
+   * @param exporter name of the export format
+   * @param handler the handler that transforms the cell
+   * @return the started event
+   */
+  public static CellTransformationEvent start(final String exporter, final Object handler) {
+    final CellTransformationEvent event = new CellTransformationEvent();
+    if (event.isEnabled()) {
+      event.exporter = exporter;
+      event.handler = handler.getClass().getSimpleName();
+      event.begin();
+    }
+    return event;
+  }
+
+  /**
+   * Stop the timing and commit the event, if it passes the thresholds of the recording.
+   *
+   * @param cell the transformed cell
+   * @param featureType name of the current feature type, may be null
+   */
+  public void end(final Cell cell, final String featureType) {
+    end();
+    if (shouldCommit()) {
+      this.transformationIdentifier = cell.getTransformationIdentifier();
+      this.cellId = cell.getId();
+      this.featureType = featureType;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.jfr;
+
+/**
+ * Checks if the Flight Recorder API is available. The package <code>jdk.jfr</code> is imported
+ * optionally, so the events of this package may only be created if {@link #AVAILABLE} is true.
+ * This class does not reference the API itself and can always be loaded.
+ *
+ * <pre>
+ * final CellTransformationEvent event = FlightRecorder.AVAILABLE
+ *     ? CellTransformationEvent.start(EXPORTER, this)
+ *     : null;
+ * try {
+ *   ...
+ * } finally {
+ *   if (event != null) {
+ *     event.end(cell, featureTypeName);
+ *   }
+ * }
+ * </pre>
+ */
+public final class FlightRecorder {
+
+  /** True if the events can be created */
+  public static final boolean AVAILABLE = isAvailable();
+
+  private FlightRecorder() {}
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightRecorder.class.getClassLoader());
+      return true;
+    } catch (final ClassNotFoundException | LinkageError e) {
+      // no JFR in the runtime or package not wired in the OSGi container
+      return false;
+    }
+  }
+}
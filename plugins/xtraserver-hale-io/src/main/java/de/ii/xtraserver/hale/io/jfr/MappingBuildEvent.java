@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for building the result of an export from the collected feature type
+ * mappings, i.e. the post-processing of the XtraServer Mapping or the creation of the XtraServer
+ * Web API provider data.
+ */
+@Name("de.ii.xtraserver.MappingBuild")
+@Label("Mapping Build")
+@Description("Creation of the mapping from the collected feature types")
+@Category({"hale", "XtraServer"})
+@StackTrace(false)
+public final class MappingBuildEvent extends Event {
+
+  @Label("Exporter")
+  String exporter;
+
+  @Label("Feature Types")
+  @Description("Number of feature types in the result")
+  int featureTypeCount;
+
+  private MappingBuildEvent() {}
+
+  /**
+   * Create an event and start its timing.
+   *
+   * @param exporter name of the export format
+   * @return the started event
+   */
+  public static MappingBuildEvent start(final String exporter) {
+    final MappingBuildEvent event = new MappingBuildEvent();
+    if (event.isEnabled()) {
+      event.exporter = exporter;
+      event.begin();
+    }
+    return event;
+  }
+
+  /**
+   * Stop the timing and commit the event, if it passes the thresholds of the recording.
+   *
+   * @param featureTypeCount number of feature types in the result
+   */
+  public void end(final int featureTypeCount) {
+    end();
+    if (shouldCommit()) {
+      this.featureTypeCount = featureTypeCount;
+      commit();
+    }
+  }
+}
@@ -15,6 +15,7 @@
 
 package de.ii.xtraserver.hale.io.reader;
 
+import de.ii.xtraserver.hale.io.CanceledException;
 import de.ii.xtraserver.hale.io.reader.handler.AlignmentGenerator;
 import java.io.IOException;
 import java.io.InputStream;
@@ -49,7 +50,7 @@ public class XtraServerMappingFileReader extends AbstractAlignmentReader {
 	 */
 	@Override
 	public boolean isCancelable() {
-		return false;
+		return true;
 	}
 
 	/**
@@ -100,6 +101,10 @@ public class XtraServerMappingFileReader extends AbstractAlignmentReader {
 
 			alignment = haleAlignmentGenerator.generate();
 
+		} catch (CanceledException e) {
+			reporter.error(new IOMessageImpl("The import was canceled", null));
+			reporter.setSuccess(false);
+			return null;
 		} catch (Exception e) {
 			reporter.error(new IOMessageImpl(e.getMessage(), e));
 			reporter.setSuccess(false);
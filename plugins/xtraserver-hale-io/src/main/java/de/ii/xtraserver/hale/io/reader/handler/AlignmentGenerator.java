@@ -19,6 +19,9 @@ import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import de.ii.xtraserver.hale.io.CanceledException;
+import de.ii.xtraserver.hale.io.jfr.AlignmentGenerationEvent;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
 import de.interactive_instruments.xtraserver.config.api.FeatureTypeMapping;
 import de.interactive_instruments.xtraserver.config.api.MappingTable;
 import de.interactive_instruments.xtraserver.config.api.MappingValue;
@@ -42,6 +45,7 @@ public class AlignmentGenerator {
 	private final TypeTransformationHandlerFactory typeHandlerFactory;
 	private final PropertyTransformationHandlerFactory propertyHandlerFactory;
 	private final XtraServerMapping xtraServerMapping;
+	private final ProgressIndicator progress;
 
 	/**
 	 * @param sourceTypes source types
@@ -61,18 +65,35 @@ public class AlignmentGenerator {
 		this.propertyHandlerFactory = PropertyTransformationHandler
 				.createFactory(transformationContext);
 		this.xtraServerMapping = xtraServerMapping;
+		this.progress = progress;
 	}
 
 	/**
 	 * @return the generated alignment
+	 * @throws CanceledException if the import was canceled
 	 */
 	public MutableAlignment generate() {
+		final AlignmentGenerationEvent event = FlightRecorder.AVAILABLE
+				? AlignmentGenerationEvent.start()
+				: null;
 		final MutableAlignment alignment = new DefaultAlignment();
+		try {
+			for (final FeatureTypeMapping featureTypeMapping : xtraServerMapping
+					.getFeatureTypeMappings()) {
+				CanceledException.checkCanceled(progress);
+				progress.setCurrentTask("Generating cells for Feature Type "
+						+ featureTypeMapping.getName());
+				generateFeatureTypeCellStream().apply(featureTypeMapping)
+						.forEach(cell -> alignment.addCell(cell));
+			}
 
-		xtraServerMapping.getFeatureTypeMappings().stream().flatMap(generateFeatureTypeCellStream())
-				.forEach(cell -> alignment.addCell(cell));
-
-		return alignment;
+			return alignment;
+		} finally {
+			if (event != null) {
+				event.end(xtraServerMapping.getFeatureTypeMappings().size(),
+						alignment.getCells().size());
+			}
+		}
 	}
 
 	private Function<FeatureTypeMapping, Stream<MutableCell>> generateFeatureTypeCellStream() {
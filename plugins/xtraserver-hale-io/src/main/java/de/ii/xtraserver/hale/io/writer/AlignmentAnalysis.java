@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The analysis of an alignment that does not depend on the output format: the metadata of the
+ * target schema, the traversal order of the cells, the transformation hints of the cells, the
+ * resolved project variables, the resolved lookup tables and the number of threads. An
+ * export that writes several formats creates the analysis once and passes it to the mapping
+ * contexts of all formats, so every schema annotation, hint and project variable is only read
+ * once.
+ */
+public final class AlignmentAnalysis {
+
+  /** Project variable with the number of threads of an export. */
+  public static final String PROPERTY_PARALLELISM = "XTRASERVER_PARALLELISM";
+
+  private final TargetSchemaIndex targetSchemaIndex;
+  private final AlignmentIndex alignmentIndex;
+  private final TransformationHintIndex transformationHintIndex;
+  private final ProjectVariableTemplates projectVariableTemplates;
+  private final LookupTableCache lookupTableCache;
+  private final int parallelism;
+
+  /**
+   * Analyzes an alignment, ignored transformation hints are reported with a single warning.
+   *
+   * @param alignment the Alignment with all cells
+   * @param schemaspace the target schema
+   * @param transformationProperties Properties used in transformations
+   * @param reporter reporter
+   */
+  public AlignmentAnalysis(
+      final Alignment alignment,
+      final SchemaSpace schemaspace,
+      final Map<String, Value> transformationProperties,
+      final IOReporter reporter) {
+    this.targetSchemaIndex =
+        new TargetSchemaIndex(Objects.requireNonNull(schemaspace, "Schemaspace not provided"));
+    this.alignmentIndex = new AlignmentIndex(Objects.requireNonNull(alignment), targetSchemaIndex);
+    this.transformationHintIndex = new TransformationHintIndex(alignment);
+    this.transformationHintIndex.reportProblems(reporter);
+    this.projectVariableTemplates =
+        new ProjectVariableTemplates(Objects.requireNonNull(transformationProperties));
+    this.lookupTableCache = new LookupTableCache(projectVariableTemplates);
+    this.parallelism =
+        parseParallelism(transformationProperties.get(PROPERTY_PARALLELISM), reporter);
+  }
+
+  private static int parseParallelism(final Value value, final IOReporter reporter) {
+    if (value == null || value.isEmpty()) {
+      return 1;
+    }
+    final String parallelism = value.as(String.class).trim();
+    if ("auto".equalsIgnoreCase(parallelism)) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    try {
+      return Math.max(1, Integer.parseInt(parallelism));
+    } catch (final NumberFormatException e) {
+      reporter.warn(
+          "Invalid value \"{0}\" for project variable {1}, the export runs sequentially",
+          parallelism,
+          PROPERTY_PARALLELISM);
+      return 1;
+    }
+  }
+
+  /**
+   * @return the cached metadata of the target schema
+   */
+  public TargetSchemaIndex getTargetSchemaIndex() {
+    return targetSchemaIndex;
+  }
+
+  /**
+   * @return the grouped and sorted cells of the alignment
+   */
+  public AlignmentIndex getAlignmentIndex() {
+    return alignmentIndex;
+  }
+
+  /**
+   * @return the transformation hints of all cells
+   */
+  public TransformationHintIndex getTransformationHintIndex() {
+    return transformationHintIndex;
+  }
+
+  /**
+   * @return the project variable resolver
+   */
+  public ProjectVariableTemplates getProjectVariableTemplates() {
+    return projectVariableTemplates;
+  }
+
+  /**
+   * @return the lookup tables of the classification mappings
+   */
+  public LookupTableCache getLookupTableCache() {
+    return lookupTableCache;
+  }
+
+  /**
+   * Returns the number of threads of the export, as set with the project variable {@value
+   * #PROPERTY_PARALLELISM}. The value is either a number or 'auto' for the number of available
+   * processors. Without the variable the export runs sequentially. An invalid value is reported
+   * once, when the analysis is created.
+   *
+   * @return the number of threads, 1 for sequential processing
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The traversal order of an alignment, built once per export: the active type cells grouped by
+ * their target feature type and the property cells of every type cell sorted by priority and
+ * wrapped in a {@link CellParentWrapper}, whose table name is resolved in advance.
+ *
+ * <p>The join parameters of a type cell are parsed once on first use and shared as {@link
+ * JoinChain}s by all export formats.
+ *
+ * <p>The feature types are keyed by the element name of the target type. Type cells without a
+ * valid target are kept in their own group keyed by the cell, so that the error is raised when the
+ * cell is processed.
+ */
+public final class AlignmentIndex {
+
+  private final List<Cell> typeCells;
+  private final Map<Object, List<Cell>> typeCellsByFeatureType;
+  private final Map<Object, List<Cell>> sortedTypeCellsByFeatureType;
+  private final Map<Cell, List<CellParentWrapper>> propertyCells;
+  private final Map<Cell, List<JoinChain>> joinChains = new IdentityHashMap<>();
+  private final int totalWorkUnits;
+
+  /**
+   * Index the active type cells of an alignment and their property cells
+   *
+   * @param alignment the Alignment with all cells
+   * @param targetSchemaIndex the metadata of the target schema
+   */
+  public AlignmentIndex(final Alignment alignment, final TargetSchemaIndex targetSchemaIndex) {
+    this.typeCells = ImmutableList.copyOf(alignment.getActiveTypeCells());
+
+    final Map<Object, List<Cell>> groups = new LinkedHashMap<>();
+    final Map<Cell, List<CellParentWrapper>> wrappers = new IdentityHashMap<>();
+    int workUnits = 0;
+    for (final Cell typeCell : typeCells) {
+      groups
+          .computeIfAbsent(featureTypeKey(typeCell, targetSchemaIndex), key -> new ArrayList<>())
+          .add(typeCell);
+      final List<CellParentWrapper> sortedPropertyCells =
+          alignment.getPropertyCells(typeCell).stream()
+              .sorted(Comparator.comparing(Cell::getPriority))
+              .map(propertyCell -> wrap(typeCell, propertyCell))
+              .collect(ImmutableList.toImmutableList());
+      wrappers.put(typeCell, sortedPropertyCells);
+      workUnits += sortedPropertyCells.size() + 1;
+    }
+
+    final ImmutableMap.Builder<Object, List<Cell>> unsorted = ImmutableMap.builder();
+    final ImmutableMap.Builder<Object, List<Cell>> sorted = ImmutableMap.builder();
+    for (final Map.Entry<Object, List<Cell>> group : groups.entrySet()) {
+      unsorted.put(group.getKey(), ImmutableList.copyOf(group.getValue()));
+      sorted.put(
+          group.getKey(),
+          group.getValue().stream()
+              .sorted(Comparator.comparing(Cell::getPriority))
+              .collect(ImmutableList.toImmutableList()));
+    }
+    this.typeCellsByFeatureType = unsorted.build();
+    this.sortedTypeCellsByFeatureType = sorted.build();
+    this.propertyCells = wrappers;
+    this.totalWorkUnits = workUnits;
+  }
+
+  /**
+   * @return the active type cells in alignment order
+   */
+  public List<Cell> getTypeCells() {
+    return typeCells;
+  }
+
+  /**
+   * @return the active type cells grouped by target feature type, in alignment order
+   */
+  public Map<Object, List<Cell>> getTypeCellsByFeatureType() {
+    return typeCellsByFeatureType;
+  }
+
+  /**
+   * @return the active type cells grouped by target feature type, every group sorted by priority
+   */
+  public Map<Object, List<Cell>> getSortedTypeCellsByFeatureType() {
+    return sortedTypeCellsByFeatureType;
+  }
+
+  /**
+   * @param typeCell an active type cell
+   * @return the wrapped property cells of the type cell, sorted by priority
+   */
+  public List<CellParentWrapper> getPropertyCells(final Cell typeCell) {
+    final List<CellParentWrapper> cells = propertyCells.get(typeCell);
+    return cells != null ? cells : ImmutableList.of();
+  }
+
+  /**
+   * Return the validated join parameters of a type cell. They are parsed on the first call and
+   * shared afterwards; an invalid parameter is not cached, so every caller gets the error.
+   *
+   * @param typeCell a type cell with a join function
+   * @return the join chains of the type cell
+   * @throws IllegalArgumentException if a join parameter is invalid
+   */
+  public synchronized List<JoinChain> getJoinChains(final Cell typeCell) {
+    List<JoinChain> chains = joinChains.get(typeCell);
+    if (chains == null) {
+      chains = JoinChain.parse(typeCell);
+      joinChains.put(typeCell, chains);
+    }
+    return chains;
+  }
+
+  /**
+   * @param typeCells active type cells
+   * @return the number of work units of the type cells, one for each type and property cell
+   */
+  public int getWorkUnits(final List<Cell> typeCells) {
+    int workUnits = 0;
+    for (final Cell typeCell : typeCells) {
+      workUnits += getPropertyCells(typeCell).size() + 1;
+    }
+    return workUnits;
+  }
+
+  /**
+   * @return the number of work units of all active type cells, one for each type and property cell
+   */
+  public int getTotalWorkUnits() {
+    return totalWorkUnits;
+  }
+
+  private static Object featureTypeKey(
+      final Cell typeCell, final TargetSchemaIndex targetSchemaIndex) {
+    try {
+      return XtraServerMappingUtils.getFeatureTypeName(typeCell, targetSchemaIndex);
+    } catch (final IllegalStateException e) {
+      return typeCell;
+    }
+  }
+
+  private static CellParentWrapper wrap(final Cell typeCell, final Cell propertyCell) {
+    final CellParentWrapper wrapper = new CellParentWrapper(typeCell, propertyCell);
+    try {
+      wrapper.getTableName();
+    } catch (final RuntimeException e) {
+      // the table name is resolved again by the handler, which reports the error
+    }
+    return wrapper;
+  }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import de.ii.xtraserver.webapi.hale.io.writer.WebApiTypeResolver;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.ChildContext;
+import eu.esdihumboldt.hale.common.align.model.Entity;
+import eu.esdihumboldt.hale.common.align.model.EntityDefinition;
+import eu.esdihumboldt.hale.common.align.model.ParameterValue;
+import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingFunction;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.filter.AbstractGeotoolsFilter;
+import eu.esdihumboldt.hale.common.instance.model.Filter;
+import eu.esdihumboldt.hale.common.lookup.LookupTable;
+import eu.esdihumboldt.hale.common.schema.SchemaSpaceID;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.GroupPropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.Schema;
+import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.NillableFlag;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.PrimaryKey;
+import eu.esdihumboldt.hale.io.jdbc.constraints.DatabaseTable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * Stores the generated output of single feature types in a cache directory next to the export
+ * target, so that feature types whose type cells did not change since the last export are not
+ * translated again.
+ *
+ * <p>Each entry is identified by a SHA-256 fingerprint of the type cells of a feature type with
+ * their property cells, parameters, notes and lookup tables, the table names and primary keys of
+ * their source types, the project variables, the type map of {@value
+ * WebApiTypeResolver#PROPERTY_TYPE_MAP}, the types of the target schema and the export format.
+ */
+public final class IncrementalExportCache {
+
+  /** Project variable that enables the cache. */
+  public static final String PROPERTY_INCREMENTAL = "XTRASERVER_INCREMENTAL";
+
+  private static final String CACHE_VERSION = "2";
+  private static final String ENTRY_SUFFIX = ".entry";
+  // export options that do not change the generated output
+  private static final Set<String> IGNORED_PROPERTIES =
+      Set.of("XTRASERVER_PARALLELISM", PROPERTY_INCREMENTAL, "XTRASERVER_WEBAPI_INDEXES");
+
+  private final Path directory;
+  private final AlignmentIndex alignmentIndex;
+  private final LookupTableCache lookupTableCache;
+  private final byte[] baseFingerprint;
+  private final Set<String> usedEntries = new HashSet<>();
+  private int hits;
+  private int misses;
+
+  private IncrementalExportCache(
+      final Path directory, final AlignmentAnalysis analysis, final byte[] baseFingerprint) {
+    this.directory = directory;
+    this.alignmentIndex = analysis.getAlignmentIndex();
+    this.lookupTableCache = analysis.getLookupTableCache();
+    this.baseFingerprint = baseFingerprint;
+  }
+
+  /**
+   * @param projectProperties project transformation properties
+   * @return true if the project variable {@value #PROPERTY_INCREMENTAL} is set to 'true'
+   */
+  public static boolean isEnabled(final Map<String, Value> projectProperties) {
+    final Value enabled = projectProperties.get(PROPERTY_INCREMENTAL);
+    return enabled != null
+        && !enabled.isEmpty()
+        && Boolean.parseBoolean(enabled.as(String.class).trim());
+  }
+
+  /**
+   * Creates the cache for an export, if it is enabled with the project variable {@value
+   * #PROPERTY_INCREMENTAL}.
+   *
+   * @param format identifier of the export format, entries of different formats never match
+   * @param target location of the export target, the cache directory is created next to it
+   * @param analysis the analysis of the alignment that is exported
+   * @param targetSchemaSpace the target schema
+   * @param projectProperties project transformation properties
+   * @param projectLocation project file, relative type map locations are resolved against it,
+   *     may be null
+   * @param reporter reporter
+   * @return the cache or empty if the cache is disabled or the target is not a local file
+   */
+  public static Optional<IncrementalExportCache> create(
+      final String format,
+      final URI target,
+      final AlignmentAnalysis analysis,
+      final SchemaSpace targetSchemaSpace,
+      final Map<String, Value> projectProperties,
+      final URI projectLocation,
+      final IOReporter reporter) {
+    if (!isEnabled(projectProperties)) {
+      return Optional.empty();
+    }
+    if (target == null || !"file".equalsIgnoreCase(target.getScheme())) {
+      reporter.warn(
+          "Incremental export is only supported for local files, the export cache is not used");
+      return Optional.empty();
+    }
+
+    final Path targetFile = Paths.get(target);
+    final Path directory = targetFile.resolveSibling(targetFile.getFileName() + ".cache");
+    try {
+      Files.createDirectories(directory);
+    } catch (final IOException e) {
+      reporter.warn("Export cache directory {0} cannot be created: {1}", directory, e.getMessage());
+      return Optional.empty();
+    }
+
+    final MessageDigest digest = newDigest();
+    update(digest, CACHE_VERSION);
+    update(digest, IncrementalExportCache.class.getPackage().getImplementationVersion());
+    update(digest, format);
+    for (final Schema schema : targetSchemaSpace.getSchemas()) {
+      update(digest, String.valueOf(schema.getLocation()));
+    }
+    final List<TypeDefinition> targetTypes = new ArrayList<>(targetSchemaSpace.getTypes());
+    targetTypes.sort(Comparator.comparing(type -> type.getName().toString()));
+    for (final TypeDefinition type : targetTypes) {
+      updateType(digest, type);
+    }
+    for (final Map.Entry<String, Value> property : new TreeMap<>(projectProperties).entrySet()) {
+      if (!IGNORED_PROPERTIES.contains(property.getKey())) {
+        update(digest, property.getKey());
+        update(digest, valueToString(property.getValue()));
+      }
+    }
+    // the variable only holds the location, the content of the type map may change
+    final Optional<URI> typeMap =
+        WebApiTypeResolver.getTypeMapLocation(projectProperties, projectLocation);
+    if (typeMap.isPresent()) {
+      try (final InputStream in = typeMap.get().toURL().openStream()) {
+        digest.update(ByteStreams.toByteArray(in));
+      } catch (final IOException | RuntimeException e) {
+        // the type map is then not used and its problem reported by the export
+        update(digest, null);
+      }
+    }
+    return Optional.of(new IncrementalExportCache(directory, analysis, digest.digest()));
+  }
+
+  /**
+   * Computes the fingerprint of the type cells of one feature type.
+   *
+   * @param typeCells the type cells in processing order
+   * @return the hex encoded fingerprint
+   */
+  public String fingerprint(final List<? extends Cell> typeCells) {
+    final MessageDigest digest = newDigest();
+    digest.update(baseFingerprint);
+    for (final Cell typeCell : typeCells) {
+      updateCell(digest, typeCell);
+      for (final Cell propertyCell : alignmentIndex.getPropertyCells(typeCell)) {
+        updateCell(digest, propertyCell);
+      }
+    }
+
+    final StringBuilder hex = new StringBuilder();
+    for (final byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Reads an entry. Entries that cannot be read are treated as missing.
+   *
+   * @param fingerprint the fingerprint of the entry
+   * @return the content of the entry or empty if there is no entry for the fingerprint
+   */
+  public Optional<byte[]> read(final String fingerprint) {
+    usedEntries.add(fingerprint);
+    final Path file = directory.resolve(fingerprint + ENTRY_SUFFIX);
+    if (Files.isRegularFile(file)) {
+      try {
+        final byte[] content = Files.readAllBytes(file);
+        hits++;
+        return Optional.of(content);
+      } catch (final IOException e) {
+        // regenerate the entry
+      }
+    }
+    misses++;
+    return Optional.empty();
+  }
+
+  /**
+   * Writes an entry, an existing entry with the same fingerprint is replaced.
+   *
+   * @param fingerprint the fingerprint of the entry
+   * @param content the content of the entry
+   * @throws IOException if the entry cannot be written
+   */
+  public void write(final String fingerprint, final byte[] content) throws IOException {
+    usedEntries.add(fingerprint);
+    final Path tmpFile = Files.createTempFile(directory, fingerprint, ".tmp");
+    try {
+      Files.write(tmpFile, content);
+      Files.move(
+          tmpFile,
+          directory.resolve(fingerprint + ENTRY_SUFFIX),
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * Deletes all entries that were not read or written during this export and reports the number of
+   * reused feature types.
+   *
+   * @param reporter reporter
+   */
+  public void finish(final IOReporter reporter) {
+    final List<Path> unusedEntries = new ArrayList<>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+      for (final Path entry : entries) {
+        final String name = entry.getFileName().toString();
+        if (!usedEntries.contains(name.substring(0, name.length() - ENTRY_SUFFIX.length()))) {
+          unusedEntries.add(entry);
+        }
+      }
+      for (final Path entry : unusedEntries) {
+        Files.deleteIfExists(entry);
+      }
+    } catch (final IOException e) {
+      reporter.warn("Outdated entries of the export cache could not be deleted: {0}", e.getMessage());
+    }
+
+    reporter.info(
+        "Incremental export: {0} feature types reused from {1}, {2} feature types translated",
+        hits,
+        directory,
+        misses);
+  }
+
+  private void updateCell(final MessageDigest digest, final Cell cell) {
+    update(digest, cell.getTransformationIdentifier());
+    update(digest, String.valueOf(cell.getPriority()));
+    update(digest, String.valueOf(cell.getTransformationMode()));
+    updateEntities(digest, cell.getSource());
+    updateEntities(digest, cell.getTarget());
+
+    final ListMultimap<String, ParameterValue> parameters = cell.getTransformationParameters();
+    if (parameters != null) {
+      for (final String name : sortedKeys(parameters)) {
+        update(digest, name);
+        for (final ParameterValue parameter : parameters.get(name)) {
+          update(digest, String.valueOf(parameter.getType()));
+          update(digest, valueToString(parameter));
+        }
+      }
+    }
+
+    // transformation hints are read from the notes
+    final ListMultimap<String, String> documentation = cell.getDocumentation();
+    if (documentation != null) {
+      for (final String type : sortedKeys(documentation)) {
+        update(digest, type);
+        for (final String doc : documentation.get(type)) {
+          update(digest, doc);
+        }
+      }
+    }
+
+    // the lookup tables are only referenced by id
+    if (ClassificationMappingFunction.ID.equals(cell.getTransformationIdentifier())
+        && parameters != null) {
+      final LookupTable lookup = lookupTableCache.getLookupTable(parameters);
+      if (lookup != null) {
+        final Map<String, String> entries =
+            new TreeMap<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        lookup
+            .asMap()
+            .forEach((key, value) -> entries.put(valueToString(key), valueToString(value)));
+        entries.forEach(
+            (key, value) -> {
+              update(digest, key);
+              update(digest, value);
+            });
+      }
+    }
+  }
+
+  private static void updateEntities(
+      final MessageDigest digest, final ListMultimap<String, ? extends Entity> entities) {
+    if (entities == null) {
+      update(digest, null);
+      return;
+    }
+    for (final String name : sortedKeys(entities)) {
+      for (final Entity entity : entities.get(name)) {
+        update(digest, name);
+        updateEntity(digest, entity.getDefinition());
+      }
+    }
+  }
+
+  private static void updateEntity(final MessageDigest digest, final EntityDefinition definition) {
+    update(digest, String.valueOf(definition.getSchemaSpace()));
+    update(digest, String.valueOf(definition.getType().getName()));
+    if (definition.getSchemaSpace() == SchemaSpaceID.SOURCE) {
+      // the table name and the primary key of the mapping tables are taken from the source type
+      final DatabaseTable table = definition.getType().getConstraint(DatabaseTable.class);
+      update(digest, table != null ? table.getTableName() : null);
+      final PrimaryKey primaryKey = definition.getType().getConstraint(PrimaryKey.class);
+      update(
+          digest,
+          primaryKey != null ? String.valueOf(primaryKey.getPrimaryKeyPath()) : null);
+    }
+    update(digest, filterToString(definition.getFilter()));
+    for (final ChildContext child : definition.getPropertyPath()) {
+      update(digest, String.valueOf(child.getChild().getName()));
+      update(digest, String.valueOf(child.getContextName()));
+      update(digest, String.valueOf(child.getIndex()));
+      update(
+          digest,
+          child.getCondition() != null ? filterToString(child.getCondition().getFilter()) : null);
+    }
+  }
+
+  private static void updateType(final MessageDigest digest, final TypeDefinition type) {
+    update(digest, type.getName().toString());
+    update(digest, type.getDescription());
+    update(digest, type.getSuperType() != null ? type.getSuperType().getName().toString() : null);
+    updateChildren(digest, type.getDeclaredChildren());
+  }
+
+  private static void updateChildren(
+      final MessageDigest digest, final Collection<? extends ChildDefinition<?>> children) {
+    for (final ChildDefinition<?> child : children) {
+      update(digest, child.getName().toString());
+      update(digest, child.getDescription());
+      final Cardinality cardinality = child.getConstraint(Cardinality.class);
+      update(digest, cardinality.getMinOccurs() + ".." + cardinality.getMaxOccurs());
+      final PropertyDefinition property = child.asProperty();
+      if (property != null) {
+        update(digest, property.getPropertyType().getName().toString());
+        update(digest, String.valueOf(property.getConstraint(NillableFlag.class).isEnabled()));
+      }
+      final GroupPropertyDefinition group = child.asGroup();
+      if (group != null) {
+        updateChildren(digest, group.getDeclaredChildren());
+      }
+      update(digest, null);
+    }
+  }
+
+  private static List<String> sortedKeys(final Multimap<String, ?> multimap) {
+    final List<String> keys = new ArrayList<>(multimap.keySet());
+    keys.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+    return keys;
+  }
+
+  private static String filterToString(final Filter filter) {
+    if (filter == null) {
+      return null;
+    }
+    if (filter instanceof AbstractGeotoolsFilter) {
+      return ((AbstractGeotoolsFilter) filter).getFilterTerm();
+    }
+    return filter.toString();
+  }
+
+  private static String valueToString(final Value value) {
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+    if (value.isRepresentedAsDOM()) {
+      try {
+        final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        final StringWriter writer = new StringWriter();
+        transformer.transform(new DOMSource(value.getDOMRepresentation()), new StreamResult(writer));
+        return writer.toString();
+      } catch (final TransformerException e) {
+        throw new IllegalStateException("Parameter value cannot be serialized", e);
+      }
+    }
+    return value.getStringRepresentation();
+  }
+
+  private static void update(final MessageDigest digest, final String value) {
+    if (value == null) {
+      digest.update((byte) 1);
+      return;
+    }
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import com.google.common.collect.ImmutableList;
+import eu.esdihumboldt.hale.common.align.model.AlignmentUtil;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.ParameterValue;
+import eu.esdihumboldt.hale.common.align.model.functions.JoinFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter;
+import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter.JoinCondition;
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A validated join parameter of a {@link JoinFunction} type cell with its conditions sorted by the
+ * position of the joined type. The chains of a type cell are parsed once by the {@link
+ * AlignmentIndex} and shared by the handlers of all export formats.
+ */
+public final class JoinChain {
+
+  private final JoinParameter joinParameter;
+  private final List<JoinCondition> sortedConditions;
+
+  private JoinChain(final JoinParameter joinParameter) {
+    this.joinParameter = joinParameter;
+    final List<TypeEntityDefinition> types = joinParameter.getTypes();
+    this.sortedConditions =
+        joinParameter.getConditions().stream()
+            .sorted(
+                Comparator.comparingInt(
+                    condition -> types.indexOf(AlignmentUtil.getTypeEntity(condition.joinProperty))))
+            .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Parse and validate the join parameters of a type cell
+   *
+   * @param typeCell the type cell
+   * @return one chain for every join parameter of the cell
+   * @throws IllegalArgumentException if a join parameter is invalid
+   */
+  static List<JoinChain> parse(final Cell typeCell) {
+    final ImmutableList.Builder<JoinChain> chains = ImmutableList.builder();
+    for (final ParameterValue transParam :
+        typeCell.getTransformationParameters().get(JoinFunction.PARAMETER_JOIN)) {
+      final JoinParameter joinParameter = transParam.as(JoinParameter.class);
+      final String validation = joinParameter.validate();
+      if (validation != null) {
+        throw new IllegalArgumentException("Join parameter invalid: " + validation);
+      }
+      chains.add(new JoinChain(joinParameter));
+    }
+    return chains.build();
+  }
+
+  /**
+   * @return the join parameter
+   */
+  public JoinParameter getJoinParameter() {
+    return joinParameter;
+  }
+
+  /**
+   * @return the joined types, the first one is the main type
+   */
+  public List<TypeEntityDefinition> getTypes() {
+    return joinParameter.getTypes();
+  }
+
+  /**
+   * @return the join conditions sorted by the position of the joined type
+   */
+  public List<JoinCondition> getSortedConditions() {
+    return sortedConditions;
+  }
+}
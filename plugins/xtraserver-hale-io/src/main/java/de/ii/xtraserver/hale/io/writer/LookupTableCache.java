@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import com.google.common.collect.ListMultimap;
+import eu.esdihumboldt.hale.common.align.model.ParameterValue;
+import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingFunction;
+import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingUtil;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.service.ServiceManager;
+import eu.esdihumboldt.hale.common.lookup.LookupTable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the lookup tables of classification mappings for an export. All lookups use one project
+ * scoped {@link ServiceManager}, lookup tables that are referenced by id are resolved once per id
+ * and their entries are converted to strings once, with the project variables in the values
+ * already replaced. Lookup tables that are defined in a cell are not cached, they are only used
+ * by this cell and are converted on every call.
+ */
+public final class LookupTableCache {
+
+  private final ServiceManager serviceProvider = new ServiceManager(ServiceManager.SCOPE_PROJECT);
+  private final ProjectVariableTemplates projectVariableTemplates;
+  private final Map<String, Optional<LookupTable>> lookupTablesById = new ConcurrentHashMap<>();
+  // only the referenced lookup tables, which are kept by lookupTablesById anyway
+  private final Map<LookupTable, Map<String, String>> entries =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+
+  /**
+   * @param projectVariableTemplates resolves the project variables in the values
+   */
+  public LookupTableCache(final ProjectVariableTemplates projectVariableTemplates) {
+    this.projectVariableTemplates = Objects.requireNonNull(projectVariableTemplates);
+  }
+
+  /**
+   * Return the lookup table of a classification mapping, either the referenced lookup table or the
+   * one that is defined in the parameters
+   *
+   * @param parameters the transformation parameters of the cell
+   * @return the lookup table or null if none is defined or the referenced one does not exist
+   */
+  public LookupTable getLookupTable(final ListMultimap<String, ParameterValue> parameters) {
+    final List<ParameterValue> ids =
+        parameters.get(ClassificationMappingFunction.PARAMETER_LOOKUPTABLE_ID);
+    if (ids.isEmpty()) {
+      // defined in the cell itself
+      return ClassificationMappingUtil.getClassificationLookup(parameters, serviceProvider);
+    }
+    final String id = ids.get(0).as(String.class);
+    if (id == null) {
+      return ClassificationMappingUtil.getClassificationLookup(parameters, serviceProvider);
+    }
+    return lookupTablesById
+        .computeIfAbsent(
+            id,
+            key -> {
+              final LookupTable lookupTable =
+                  ClassificationMappingUtil.getClassificationLookup(parameters, serviceProvider);
+              if (lookupTable != null) {
+                entries.put(lookupTable, null);
+              }
+              return Optional.ofNullable(lookupTable);
+            })
+        .orElse(null);
+  }
+
+  /**
+   * Return the entries of a lookup table as strings in the order of the lookup table, the project
+   * variables in the values are replaced
+   *
+   * @param lookupTable the lookup table
+   * @return the unmodifiable entries
+   */
+  public Map<String, String> getEntries(final LookupTable lookupTable) {
+    final boolean referenced;
+    synchronized (entries) {
+      final Map<String, String> cached = entries.get(lookupTable);
+      if (cached != null) {
+        return cached;
+      }
+      referenced = entries.containsKey(lookupTable);
+    }
+    final Map<String, String> converted = convert(lookupTable);
+    if (referenced) {
+      entries.put(lookupTable, converted);
+    }
+    return converted;
+  }
+
+  private Map<String, String> convert(final LookupTable lookupTable) {
+    final Map<String, String> converted = new LinkedHashMap<>();
+    for (final Map.Entry<Value, Value> entry : lookupTable.asMap().entrySet()) {
+      converted.put(
+          entry.getKey().as(String.class),
+          projectVariableTemplates.resolve(entry.getValue().as(String.class)));
+    }
+    return Collections.unmodifiableMap(converted);
+  }
+}
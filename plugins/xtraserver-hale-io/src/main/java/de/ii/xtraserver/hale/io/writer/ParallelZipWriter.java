@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive whose entries are compressed in parallel. Every entry is deflated with its
+ * own {@link Deflater} on a worker pool, the compressed entries are written to the output in the
+ * order in which they were added as soon as they are finished. All entries get the same fixed
+ * timestamp, so identical entries result in a byte-identical archive.
+ *
+ * <p>At most twice the parallelism of entries are held in memory, {@link #add(String,
+ * EntrySource)} blocks until the oldest entry is written if more entries are pending. ZIP64 is not
+ * supported, entries and archives are limited to 4 GB and 65535 entries, and a compressed entry
+ * must fit into a byte array. Exceeding a limit fails with an {@link IOException} as soon as it is
+ * detected, the incomplete archive must be discarded.
+ */
+public final class ParallelZipWriter implements Closeable {
+
+  private static final int LOCAL_FILE_HEADER = 0x04034b50;
+  private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int VERSION = 20;
+  private static final int FLAG_UTF8 = 0x0800;
+  private static final int METHOD_STORED = 0;
+  private static final int METHOD_DEFLATED = 8;
+  // 1980-01-01 00:00, the earliest DOS date
+  private static final int DOS_TIME = 0;
+  private static final int DOS_DATE = (1 << 5) | 1;
+  private static final long MAX_SIZE = 0xFFFFFFFFL;
+  private static final int MAX_ENTRIES = 0xFFFF;
+  private static final int MAX_NAME_LENGTH = 0xFFFF;
+  // leaves room for the last deflater output and the array header
+  private static final int MAX_BUFFER = Integer.MAX_VALUE - 65536 - 8;
+  private static final int OUTPUT_BUFFER = 65536;
+
+  private final OutputStream out;
+  private final ExecutorService executor;
+  private final int maxPending;
+  private final Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+  private final List<CentralDirectoryEntry> centralDirectory = new ArrayList<>();
+  private final Set<String> names = new HashSet<>();
+  private long offset;
+  private boolean finished;
+
+  /**
+   * Provides the content of an entry, called on a worker thread.
+   */
+  @FunctionalInterface
+  public interface EntrySource {
+
+    /**
+     * @return the content, closed after reading
+     * @throws IOException if the content cannot be read
+     */
+    InputStream open() throws IOException;
+  }
+
+  /**
+   * Create a writer with one worker per available processor.
+   *
+   * @param out the target stream, not closed by the writer
+   */
+  public ParallelZipWriter(final OutputStream out) {
+    this(out, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param out the target stream, not closed by the writer. It is buffered by the writer, the
+   *     headers are written field by field.
+   * @param parallelism the number of entries that are compressed at the same time
+   */
+  public ParallelZipWriter(final OutputStream out, final int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.out = new BufferedOutputStream(out, OUTPUT_BUFFER);
+    this.maxPending = 2 * parallelism;
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, "zip-deflater-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Add a file entry. Names ending with '/' are directories without content.
+   *
+   * @param name the entry name
+   * @param source the content, only opened once
+   * @throws IOException if a previous entry cannot be read or written
+   */
+  public void add(final String name, final EntrySource source) throws IOException {
+    if (finished) {
+      throw new IllegalStateException("The archive is already finished");
+    }
+    if (!names.add(name)) {
+      throw new IllegalArgumentException("Duplicate archive entry: " + name);
+    }
+    if (names.size() > MAX_ENTRIES) {
+      throw new IOException(
+          "More than " + MAX_ENTRIES + " archive entries are not supported without ZIP64");
+    }
+    if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_LENGTH) {
+      throw new IllegalArgumentException("Archive entry name is too long: " + name);
+    }
+    while (pending.size() >= maxPending) {
+      write(await(pending.removeFirst()));
+    }
+    pending.addLast(executor.submit(() -> CompressedEntry.of(name, source)));
+  }
+
+  /**
+   * Add a directory entry.
+   *
+   * @param name the directory name, '/' is appended if missing
+   * @throws IOException if a previous entry cannot be read or written
+   */
+  public void addDirectory(final String name) throws IOException {
+    final String directory = name.endsWith("/") ? name : name + "/";
+    add(directory, null);
+  }
+
+  /**
+   * Write the remaining entries and the central directory. The output stream is flushed but not
+   * closed.
+   *
+   * @throws IOException if an entry cannot be read or written
+   */
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    while (!pending.isEmpty()) {
+      write(await(pending.removeFirst()));
+    }
+    final long centralDirectoryOffset = offset;
+    checkArchiveSize(centralDirectoryOffset, "The archive content");
+    for (final CentralDirectoryEntry entry : centralDirectory) {
+      writeCentralDirectoryEntry(entry);
+    }
+    final long centralDirectorySize = offset - centralDirectoryOffset;
+    checkArchiveSize(centralDirectorySize, "The central directory");
+    checkArchiveSize(offset, "The archive");
+
+    writeInt(END_OF_CENTRAL_DIRECTORY);
+    writeShort(0);
+    writeShort(0);
+    writeShort(centralDirectory.size());
+    writeShort(centralDirectory.size());
+    writeInt((int) centralDirectorySize);
+    writeInt((int) centralDirectoryOffset);
+    writeShort(0);
+    out.flush();
+    finished = true;
+  }
+
+  /** Stops the workers, pending entries are discarded if the archive is not finished. */
+  @Override
+  public void close() {
+    for (final Future<CompressedEntry> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+    executor.shutdownNow();
+  }
+
+  private void write(final CompressedEntry entry) throws IOException {
+    checkEntrySize(entry.size, entry.name);
+    checkEntrySize(entry.data.size(), entry.name);
+    checkArchiveSize(offset, "The archive content");
+    centralDirectory.add(new CentralDirectoryEntry(entry, offset));
+    final long dataSize = entry.data.size();
+
+    writeInt(LOCAL_FILE_HEADER);
+    writeShort(VERSION);
+    writeShort(FLAG_UTF8);
+    writeShort(entry.method);
+    writeShort(DOS_TIME);
+    writeShort(DOS_DATE);
+    writeInt((int) entry.crc);
+    writeInt(entry.data.size());
+    writeInt((int) entry.size);
+    writeShort(entry.encodedName.length);
+    writeShort(0);
+    writeBytes(entry.encodedName);
+    entry.data.writeTo(out);
+    offset += dataSize;
+  }
+
+  private void writeCentralDirectoryEntry(final CentralDirectoryEntry entry) throws IOException {
+    writeInt(CENTRAL_DIRECTORY_HEADER);
+    writeShort(VERSION);
+    writeShort(VERSION);
+    writeShort(FLAG_UTF8);
+    writeShort(entry.method);
+    writeShort(DOS_TIME);
+    writeShort(DOS_DATE);
+    writeInt((int) entry.crc);
+    writeInt((int) entry.compressedSize);
+    writeInt((int) entry.size);
+    writeShort(entry.encodedName.length);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeInt(0);
+    writeInt((int) entry.localHeaderOffset);
+    writeBytes(entry.encodedName);
+  }
+
+  private static void checkEntrySize(final long size, final String name) throws IOException {
+    if (size > MAX_SIZE) {
+      throw new IOException("Archive entry " + name + " exceeds 4 GB, ZIP64 is not supported");
+    }
+  }
+
+  private static void checkArchiveSize(final long size, final String what) throws IOException {
+    if (size > MAX_SIZE) {
+      throw new IOException(what + " exceeds 4 GB, ZIP64 is not supported");
+    }
+  }
+
+  private void writeShort(final int value) throws IOException {
+    out.write(value & 0xFF);
+    out.write((value >>> 8) & 0xFF);
+    offset += 2;
+  }
+
+  private void writeInt(final int value) throws IOException {
+    writeShort(value & 0xFFFF);
+    writeShort((value >>> 16) & 0xFFFF);
+  }
+
+  private void writeBytes(final byte[] bytes) throws IOException {
+    out.write(bytes);
+    offset += bytes.length;
+  }
+
+  private static CompressedEntry await(final Future<CompressedEntry> future) throws IOException {
+    try {
+      return future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Writing the archive was interrupted", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static final class CompressedEntry {
+
+    private final String name;
+    private final byte[] encodedName;
+    private final int method;
+    private final long crc;
+    private final long size;
+    private final ByteArrayOutputStream data;
+
+    private CompressedEntry(
+        final String name,
+        final int method,
+        final long crc,
+        final long size,
+        final ByteArrayOutputStream data) {
+      this.name = name;
+      this.encodedName = name.getBytes(StandardCharsets.UTF_8);
+      this.method = method;
+      this.crc = crc;
+      this.size = size;
+      this.data = data;
+    }
+
+    static CompressedEntry of(final String name, final EntrySource source) throws IOException {
+      if (source == null) {
+        return new CompressedEntry(name, METHOD_STORED, 0, 0, new ByteArrayOutputStream(0));
+      }
+      final CRC32 crc = new CRC32();
+      final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      final ByteArrayOutputStream data = new ByteArrayOutputStream(8192);
+      final byte[] input = new byte[65536];
+      final byte[] output = new byte[65536];
+      long size = 0;
+      try (final InputStream in = source.open()) {
+        int read;
+        while ((read = in.read(input)) != -1) {
+          crc.update(input, 0, read);
+          size += read;
+          checkEntrySize(size, name);
+          deflater.setInput(input, 0, read);
+          while (!deflater.needsInput()) {
+            deflate(deflater, output, data, name);
+          }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+          deflate(deflater, output, data, name);
+        }
+      } finally {
+        deflater.end();
+      }
+      return new CompressedEntry(name, METHOD_DEFLATED, crc.getValue(), size, data);
+    }
+
+    private static void deflate(
+        final Deflater deflater,
+        final byte[] output,
+        final ByteArrayOutputStream data,
+        final String name)
+        throws IOException {
+      if (data.size() > MAX_BUFFER) {
+        throw new IOException("Compressed archive entry " + name + " exceeds 2 GB");
+      }
+      data.write(output, 0, deflater.deflate(output));
+    }
+  }
+
+  /** The header of a written entry, without the compressed data. */
+  private static final class CentralDirectoryEntry {
+
+    private final byte[] encodedName;
+    private final int method;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+
+    private CentralDirectoryEntry(final CompressedEntry entry, final long localHeaderOffset) {
+      this.encodedName = entry.encodedName;
+      this.method = entry.method;
+      this.crc = entry.crc;
+      this.compressedSize = entry.data.size();
+      this.size = entry.size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import eu.esdihumboldt.hale.common.core.io.Value;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces project variables in the form <code>{{project:NAME}}</code> in strings. Every distinct
+ * template is parsed once into literal and variable segments, the parsed templates are kept in a
+ * bounded LRU cache that is shared by all instances. Unresolved variables are replaced with
+ * 'PROJECT_VARIABLE_&lt;NAME&gt;_NOT_SET'.
+ */
+public final class ProjectVariableTemplates {
+
+  private static final String VARIABLE_START = "{{project:";
+  private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\{project:([^}]+)}}");
+  private static final int MAX_CACHED_TEMPLATES = 8192;
+
+  private static final Map<String, Template> TEMPLATES =
+      new LinkedHashMap<String, Template>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Template> eldest) {
+          return size() > MAX_CACHED_TEMPLATES;
+        }
+      };
+
+  private final Map<String, Value> variables;
+  private final Map<String, String> resolvedVariables = new ConcurrentHashMap<>();
+
+  /**
+   * @param variables the project variables
+   */
+  public ProjectVariableTemplates(final Map<String, Value> variables) {
+    this.variables = Objects.requireNonNull(variables);
+  }
+
+  /**
+   * Replace project variables in a string
+   *
+   * @param template input string
+   * @return string with replaced project variables
+   */
+  public String resolve(final String template) {
+    if (template == null || !template.contains(VARIABLE_START)) {
+      return template;
+    }
+    return getTemplate(template).render(this);
+  }
+
+  private static Template getTemplate(final String template) {
+    synchronized (TEMPLATES) {
+      final Template cached = TEMPLATES.get(template);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final Template parsed = Template.parse(template);
+    synchronized (TEMPLATES) {
+      TEMPLATES.put(template, parsed);
+    }
+    return parsed;
+  }
+
+  private String getVariable(final String name) {
+    return resolvedVariables.computeIfAbsent(
+        name,
+        n -> {
+          final Value value = variables.get(n);
+          if (value != null && !value.isEmpty()) {
+            return value.as(String.class);
+          }
+          return "PROJECT_VARIABLE_" + n + "_NOT_SET";
+        });
+  }
+
+  /** Alternating literal and variable segments, starting and ending with a literal. */
+  private static final class Template {
+
+    private final String[] literals;
+    private final String[] variableNames;
+    private final int literalLength;
+
+    private Template(final List<String> literals, final List<String> variableNames) {
+      this.literals = literals.toArray(new String[0]);
+      this.variableNames = variableNames.toArray(new String[0]);
+      int length = 0;
+      for (final String literal : this.literals) {
+        length += literal.length();
+      }
+      this.literalLength = length;
+    }
+
+    static Template parse(final String template) {
+      final List<String> literals = new ArrayList<>();
+      final List<String> variableNames = new ArrayList<>();
+      final Matcher matcher = VARIABLE_PATTERN.matcher(template);
+      int end = 0;
+      while (matcher.find()) {
+        literals.add(template.substring(end, matcher.start()));
+        variableNames.add(matcher.group(1));
+        end = matcher.end();
+      }
+      literals.add(template.substring(end));
+      return new Template(literals, variableNames);
+    }
+
+    String render(final ProjectVariableTemplates templates) {
+      if (variableNames.length == 0) {
+        return literals[0];
+      }
+      final StringBuilder result = new StringBuilder(literalLength + 16 * variableNames.length);
+      for (int i = 0; i < variableNames.length; i++) {
+        result.append(literals[i]).append(templates.getVariable(variableNames[i]));
+      }
+      return result.append(literals[variableNames.length]).toString();
+    }
+  }
+}
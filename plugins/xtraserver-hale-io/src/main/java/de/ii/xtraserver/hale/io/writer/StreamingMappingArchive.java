@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Merges XtraServer Mapping archives that were written for single feature types to one archive.
+ * The XML entries with the same name are concatenated with a {@link StreamingMappingDocument}
+ * and spooled to temporary files, other entries are taken from the first archive.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+class StreamingMappingArchive implements Closeable {
+
+	private final Path directory;
+
+	private final Map<String, SpooledEntry> entries = new LinkedHashMap<>();
+
+	StreamingMappingArchive() throws IOException {
+		this.directory = Files.createTempDirectory("xtraserver-mapping");
+	}
+
+	/**
+	 * Add the entries of an archive. The stream is not closed.
+	 *
+	 * @param archive the zip archive
+	 * @throws IOException if the archive cannot be read or an entry cannot be spooled
+	 * @throws XMLStreamException if an XML entry cannot be merged
+	 */
+	void append(final InputStream archive) throws IOException, XMLStreamException {
+		final ZipInputStream zip = new ZipInputStream(archive);
+		ZipEntry zipEntry;
+		while ((zipEntry = zip.getNextEntry()) != null) {
+			if (zipEntry.isDirectory()) {
+				continue;
+			}
+			SpooledEntry entry = entries.get(zipEntry.getName());
+			if (entry == null) {
+				entry = new SpooledEntry(zipEntry.getName(),
+						directory.resolve("entry" + entries.size()));
+				entries.put(zipEntry.getName(), entry);
+			}
+			entry.append(new NonClosingInputStream(zip));
+			zip.closeEntry();
+		}
+	}
+
+	/**
+	 * Write the merged archive. The entries are compressed in parallel with a
+	 * {@link ParallelZipWriter}. The output stream is not closed.
+	 *
+	 * @param out target stream
+	 * @throws IOException if writing fails
+	 * @throws XMLStreamException if an XML entry cannot be completed
+	 */
+	void writeTo(final OutputStream out) throws IOException, XMLStreamException {
+		try (ParallelZipWriter zip = new ParallelZipWriter(out)) {
+			addTo(zip, "");
+			zip.finish();
+		}
+	}
+
+	/**
+	 * Add the merged entries below a directory to an archive that is written by
+	 * the caller. The entries must not be read after this archive is closed, so
+	 * the caller finishes the writer first.
+	 *
+	 * @param zip the target archive
+	 * @param directory the directory of the entries, ending with a slash, or an
+	 *            empty string
+	 * @throws IOException if an entry cannot be completed or added
+	 * @throws XMLStreamException if an XML entry cannot be completed
+	 */
+	void addTo(final ParallelZipWriter zip, final String directory)
+			throws IOException, XMLStreamException {
+		for (final SpooledEntry entry : entries.values()) {
+			entry.finish();
+		}
+		for (final SpooledEntry entry : entries.values()) {
+			zip.add(directory + entry.name, () -> Files.newInputStream(entry.file));
+		}
+	}
+
+	/**
+	 * Deletes the spooled entries.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (final SpooledEntry entry : entries.values()) {
+			entry.out.close();
+			Files.deleteIfExists(entry.file);
+		}
+		entries.clear();
+		Files.deleteIfExists(directory);
+	}
+
+	private static class SpooledEntry {
+
+		private final String name;
+
+		private final Path file;
+
+		private final OutputStream out;
+
+		private final StreamingMappingDocument document;
+
+		private boolean written;
+
+		SpooledEntry(final String name, final Path file) throws IOException {
+			this.name = name;
+			this.file = file;
+			this.out = new BufferedOutputStream(Files.newOutputStream(file));
+			try {
+				this.document = name.endsWith(".xml") ? new StreamingMappingDocument(out) : null;
+			} catch (final XMLStreamException e) {
+				out.close();
+				throw new IOException("Cannot create archive entry " + name, e);
+			}
+		}
+
+		void append(final InputStream in) throws IOException, XMLStreamException {
+			if (document != null) {
+				document.append(in);
+			}
+			else if (!written) {
+				in.transferTo(out);
+			}
+			written = true;
+		}
+
+		void finish() throws IOException, XMLStreamException {
+			if (document != null) {
+				document.finish();
+			}
+			out.close();
+		}
+	}
+
+	/**
+	 * Keeps the StAX reader from closing the zip stream after an entry.
+	 */
+	private static class NonClosingInputStream extends FilterInputStream {
+
+		NonClosingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public void close() {
+			// the zip stream is closed by the owner
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Concatenates XML documents with the same root element to a single document with StAX. The
+ * prolog and the root element are taken from the first document, the children of the root
+ * elements of all documents are copied to the output in the order in which the documents are
+ * appended. Only one document is read at a time.
+ *
+ * <p>
+ * Namespace declarations of the root element of a later document that are not declared on the
+ * written root element are added to its top level children. Comments directly below the root
+ * element, like the description of the mapping, are only copied from the first document.
+ * </p>
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+class StreamingMappingDocument {
+
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+	private final XMLEventWriter writer;
+
+	private final Map<String, String> rootNamespaces = new HashMap<>();
+
+	private QName rootName;
+
+	StreamingMappingDocument(final OutputStream out) throws XMLStreamException {
+		this.writer = OUTPUT_FACTORY.createXMLEventWriter(out, "UTF-8");
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	/**
+	 * Copy the children of the root element of a document to the output. The stream is not
+	 * closed.
+	 *
+	 * @param document the XML document
+	 * @throws XMLStreamException if the document cannot be read or written or has a different
+	 *             root element than the first document
+	 */
+	void append(final InputStream document) throws XMLStreamException {
+		final boolean first = rootName == null;
+		final XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(document);
+		try {
+			List<Namespace> missingNamespaces = new ArrayList<>();
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+
+				if (depth == 0) {
+					if (event.isStartDocument()) {
+						if (first) {
+							writer.add(eventFactory.createStartDocument("UTF-8", "1.0"));
+						}
+					}
+					else if (event.isStartElement()) {
+						depth = 1;
+						missingNamespaces = startRoot(event.asStartElement(), first);
+					}
+					else if (first && !event.isEndDocument()) {
+						// prolog of the first document
+						writer.add(event);
+					}
+					continue;
+				}
+
+				if (event.isStartElement()) {
+					if (depth == 1 && !missingNamespaces.isEmpty()) {
+						event = addNamespaces(event.asStartElement(), missingNamespaces);
+					}
+					depth++;
+				}
+				else if (event.isEndElement()) {
+					depth--;
+					if (depth == 0) {
+						// the root element is closed in finish()
+						continue;
+					}
+				}
+				else if (depth == 1 && !first && event.getEventType() == XMLEvent.COMMENT) {
+					continue;
+				}
+				writer.add(event);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private List<Namespace> startRoot(final StartElement root, final boolean first)
+			throws XMLStreamException {
+		final List<Namespace> missingNamespaces = new ArrayList<>();
+		if (first) {
+			rootName = root.getName();
+			for (final Iterator<?> it = root.getNamespaces(); it.hasNext();) {
+				final Namespace namespace = (Namespace) it.next();
+				rootNamespaces.put(namespace.getPrefix(), namespace.getNamespaceURI());
+			}
+			writer.add(root);
+		}
+		else {
+			if (!rootName.equals(root.getName())) {
+				throw new XMLStreamException("Cannot append document with root element "
+						+ root.getName() + " to document with root element " + rootName);
+			}
+			for (final Iterator<?> it = root.getNamespaces(); it.hasNext();) {
+				final Namespace namespace = (Namespace) it.next();
+				if (!Objects.equals(rootNamespaces.get(namespace.getPrefix()),
+						namespace.getNamespaceURI())) {
+					missingNamespaces.add(namespace);
+				}
+			}
+		}
+		return missingNamespaces;
+	}
+
+	private StartElement addNamespaces(final StartElement element,
+			final List<Namespace> missingNamespaces) {
+		final List<Namespace> namespaces = new ArrayList<>();
+		final Set<String> prefixes = new HashSet<>();
+		for (final Iterator<?> it = element.getNamespaces(); it.hasNext();) {
+			final Namespace namespace = (Namespace) it.next();
+			namespaces.add(namespace);
+			prefixes.add(namespace.getPrefix());
+		}
+		for (final Namespace namespace : missingNamespaces) {
+			if (prefixes.add(namespace.getPrefix())) {
+				namespaces.add(namespace);
+			}
+		}
+		final QName name = element.getName();
+		return eventFactory.createStartElement(name.getPrefix(), name.getNamespaceURI(),
+				name.getLocalPart(), element.getAttributes(), namespaces.iterator(),
+				element.getNamespaceContext());
+	}
+
+	/**
+	 * Close the root element and flush the output. The output stream is not closed.
+	 *
+	 * @throws XMLStreamException if writing fails or no document was appended
+	 */
+	void finish() throws XMLStreamException {
+		if (rootName == null) {
+			throw new XMLStreamException("No document was appended");
+		}
+		writer.add(eventFactory.createEndElement(rootName, null));
+		writer.add(eventFactory.createEndDocument());
+		writer.flush();
+		writer.close();
+	}
+}
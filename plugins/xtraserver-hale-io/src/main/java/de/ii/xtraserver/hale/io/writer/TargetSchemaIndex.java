@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import eu.esdihumboldt.hale.common.align.model.Property;
+import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
+import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlAppInfo;
+import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.namespace.QName;
+import org.apache.ws.commons.schema.XmlSchemaAppInfo;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Caches the metadata of the target schema that is needed by the transformation handlers: the
+ * element names of the feature types, the {@link Reference} flag of the properties and the
+ * association targets from the 'targetElement' AppInfo annotations.
+ *
+ * <p>The element names of the mapping relevant types are resolved when the index is created, the
+ * properties are resolved on first access, so that the AppInfo markup of each property is only
+ * scanned once per export. The index is thread safe and shared by all mapping contexts of an
+ * export.
+ */
+public final class TargetSchemaIndex {
+
+  private final Map<TypeDefinition, FeatureTypeElement> featureTypeElements =
+      new ConcurrentHashMap<>();
+  private final Map<PropertyDefinition, PropertyInfo> properties = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the index for the mapping relevant types of a target schema
+   *
+   * @param targetSchemaSpace the target schema
+   */
+  public TargetSchemaIndex(final SchemaSpace targetSchemaSpace) {
+    for (final TypeDefinition type : targetSchemaSpace.getMappingRelevantTypes()) {
+      featureTypeElements.put(type, FeatureTypeElement.of(type));
+    }
+  }
+
+  /**
+   * Return the name of the XML element of a feature type
+   *
+   * @param type the feature type
+   * @return the element name
+   * @throws IllegalStateException if the type has none or more than one element
+   */
+  public QName getFeatureTypeName(final TypeDefinition type) {
+    return featureTypeElements.computeIfAbsent(type, FeatureTypeElement::of).getName();
+  }
+
+  /**
+   * @param property property definition
+   * @return true if the property is a reference according to the schema
+   */
+  public boolean isReference(final PropertyDefinition property) {
+    return properties.computeIfAbsent(property, PropertyInfo::of).reference;
+  }
+
+  /**
+   * Return the association target from the 'targetElement' AppInfo annotation of a property.
+   *
+   * @param property property definition
+   * @return association target or null if the property has no such annotation
+   */
+  public String getTargetElement(final PropertyDefinition property) {
+    return properties.computeIfAbsent(property, PropertyInfo::of).targetElement;
+  }
+
+  /**
+   * Find the association target of a target property from the AppInfo annotation in the XSD. The
+   * annotation is looked up at the parent of the last property in the path.
+   *
+   * @param targetProperty target property to analyze
+   * @return association target or null if no annotation is found
+   */
+  public String getTargetFromSchema(final Property targetProperty) {
+    final PropertyEntityDefinition definition = targetProperty.getDefinition();
+    if (definition.getPropertyPath().isEmpty()) {
+      return null;
+    }
+    final int refElemIndex = Math.max(0, definition.getPropertyPath().size() - 2);
+    final ChildDefinition<?> child = definition.getPropertyPath().get(refElemIndex).getChild();
+    if (!(child instanceof PropertyDefinition)) {
+      return null;
+    }
+    return getTargetElement((PropertyDefinition) child);
+  }
+
+  /**
+   * Return the association target of a target property, if the property is a reference and an
+   * association target is found in the schema.
+   *
+   * @param targetProperty target property to analyze
+   * @return association target
+   */
+  public Optional<String> getAssociationTarget(final Property targetProperty) {
+    if (isReference(targetProperty.getDefinition().getDefinition())) {
+      return Optional.ofNullable(getTargetFromSchema(targetProperty));
+    }
+    return Optional.empty();
+  }
+
+  private static final class FeatureTypeElement {
+
+    private final QName name;
+    private final String error;
+
+    private FeatureTypeElement(final QName name, final String error) {
+      this.name = name;
+      this.error = error;
+    }
+
+    static FeatureTypeElement of(final TypeDefinition type) {
+      final XmlElements constraints = type.getConstraint(XmlElements.class);
+      if (constraints == null || constraints.getElements().size() == 0) {
+        return new FeatureTypeElement(null, "No constraint has been specified.");
+      } else if (constraints.getElements().size() > 1) {
+        return new FeatureTypeElement(null, "More than one constraint has been specified.");
+      }
+      return new FeatureTypeElement(constraints.getElements().iterator().next().getName(), null);
+    }
+
+    QName getName() {
+      if (error != null) {
+        throw new IllegalStateException(error);
+      }
+      return name;
+    }
+  }
+
+  private static final class PropertyInfo {
+
+    private final boolean reference;
+    private final String targetElement;
+
+    private PropertyInfo(final boolean reference, final String targetElement) {
+      this.reference = reference;
+      this.targetElement = targetElement;
+    }
+
+    static PropertyInfo of(final PropertyDefinition property) {
+      return new PropertyInfo(
+          property.getConstraint(Reference.class).isReference(), findTargetElement(property));
+    }
+
+    private static String findTargetElement(final PropertyDefinition property) {
+      final XmlAppInfo appInfoAnnotation = property.getConstraint(XmlAppInfo.class);
+      for (final XmlSchemaAppInfo appInfo : appInfoAnnotation.getAppInfos()) {
+        final NodeList markup = appInfo.getMarkup();
+        for (int i = 0; i < markup.getLength(); i++) {
+          final Node item = markup.item(i);
+          if ("targetElement".equals(item.getNodeName())) {
+            return item.getTextContent();
+          }
+        }
+      }
+      return null;
+    }
+  }
+}
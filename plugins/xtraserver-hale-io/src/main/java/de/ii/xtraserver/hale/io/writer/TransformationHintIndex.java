@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.Priority;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Transformation hints of all cells of an alignment. The hints are given in the documentation of
+ * a cell in the form <code>{{XTRASERVER:NAME}}</code>, <code>{{XTRASERVER:NAME=value}}</code> or
+ * with the prefix <code>XSWA</code> for hints that are only evaluated for XtraServer Web API
+ * exports.
+ *
+ * <p>The documentation of every cell is parsed once when the index is created. Hint markup that
+ * cannot be parsed, unknown XSWA hints and XTRASERVER hints that only differ slightly from a known
+ * hint are collected and can be reported with {@link #reportProblems(IOReporter)}.
+ */
+public final class TransformationHintIndex {
+
+  public static final String PREFIX_XTRASERVER = "XTRASERVER";
+  public static final String PREFIX_XSWA = "XSWA";
+  public static final String HINT_CHOICE = "CHOICE";
+  public static final String HINT_EMBED = "EMBED";
+
+  private static final List<String> PREFIXES = ImmutableList.of(PREFIX_XTRASERVER, PREFIX_XSWA);
+  private static final List<String> KNOWN_HINTS = ImmutableList.of(HINT_CHOICE, HINT_EMBED);
+  private static final Pattern HINT_PATTERN =
+      Pattern.compile("\\{\\{(XTRASERVER|XSWA):(\\w+)(?:=(.+?))?}}");
+  // everything that looks like a hint, to find markup that the strict pattern does not accept
+  private static final Pattern HINT_CANDIDATE_PATTERN =
+      Pattern.compile("\\{\\{\\s*(\\w+)\\s*:[^{}]*}}");
+
+  private final Map<String, CellHints> hintsByCellId;
+  private final List<String> problems;
+
+  /**
+   * Parse the transformation hints of all cells of an alignment.
+   *
+   * @param alignment the alignment
+   */
+  public TransformationHintIndex(final Alignment alignment) {
+    final ImmutableMap.Builder<String, CellHints> hints = ImmutableMap.builder();
+    final List<String> problems = new ArrayList<>();
+    for (final Cell cell : alignment.getCells()) {
+      final CellHints cellHints = parse(cell, problems);
+      if (cellHints != CellHints.EMPTY) {
+        hints.put(cell.getId(), cellHints);
+      }
+    }
+    this.hintsByCellId = hints.build();
+    this.problems = ImmutableList.copyOf(problems);
+  }
+
+  /**
+   * @param cell the cell, may also be a wrapper of an alignment cell with the same id
+   * @return the transformation hints of the cell
+   */
+  public CellHints get(final Cell cell) {
+    return hintsByCellId.getOrDefault(cell.getId(), CellHints.EMPTY);
+  }
+
+  /**
+   * @return descriptions of the hint markup that was ignored
+   */
+  public List<String> getProblems() {
+    return problems;
+  }
+
+  /**
+   * Report all ignored hint markup with a single warning.
+   *
+   * @param reporter the reporter
+   */
+  public void reportProblems(final IOReporter reporter) {
+    if (!problems.isEmpty()) {
+      reporter.warn(
+          "{0} transformation hint(s) in the cell documentation are unknown or malformed and have"
+              + " been ignored: {1}",
+          problems.size(),
+          String.join("; ", problems));
+    }
+  }
+
+  private static CellHints parse(final Cell cell, final List<String> problems) {
+    final Priority priority = cell.getPriority();
+    final String docs = getDocumentation(cell);
+    if (docs == null || !docs.contains("{{")) {
+      return priority == null || priority == Priority.NORMAL
+          ? CellHints.EMPTY
+          : new CellHints(ImmutableMap.of(), ImmutableMap.of(), priority);
+    }
+
+    final Map<String, String> xtraServerHints = new LinkedHashMap<>();
+    final Map<String, String> webApiHints = new LinkedHashMap<>();
+    final Matcher matcher = HINT_PATTERN.matcher(docs);
+    int end = 0;
+    final StringBuilder unmatched = new StringBuilder();
+    while (matcher.find()) {
+      unmatched.append(docs, end, matcher.start()).append(' ');
+      end = matcher.end();
+
+      final String prefix = matcher.group(1);
+      final String name = matcher.group(2);
+      final String value = matcher.group(3) != null ? matcher.group(3) : "true";
+      if (PREFIX_XSWA.equals(prefix)) {
+        if (!KNOWN_HINTS.contains(name)) {
+          problems.add(describe(cell, matcher.group(), suggest(name)));
+        }
+        webApiHints.put(name, value);
+      } else {
+        if (!KNOWN_HINTS.contains(name) && suggest(name) != null) {
+          problems.add(describe(cell, matcher.group(), suggest(name)));
+        }
+        xtraServerHints.put(name, value);
+      }
+    }
+    unmatched.append(docs, end, docs.length());
+
+    final Matcher candidates = HINT_CANDIDATE_PATTERN.matcher(unmatched);
+    while (candidates.find()) {
+      final String prefix = candidates.group(1);
+      if (PREFIXES.contains(prefix) || isSimilar(prefix, PREFIXES)) {
+        problems.add(describe(cell, candidates.group(), null));
+      }
+    }
+
+    if (xtraServerHints.isEmpty() && webApiHints.isEmpty() && priority == Priority.NORMAL) {
+      return CellHints.EMPTY;
+    }
+    return new CellHints(xtraServerHints, webApiHints, priority);
+  }
+
+  private static String getDocumentation(final Cell cell) {
+    if (!cell.getDocumentation().containsKey(null)) {
+      return null;
+    }
+    final List<String> docs = cell.getDocumentation().get(null);
+    return docs.isEmpty() ? null : docs.get(0);
+  }
+
+  private static String describe(final Cell cell, final String markup, final String suggestion) {
+    return markup
+        + " (cell "
+        + cell.getId()
+        + (suggestion != null ? ", did you mean " + suggestion + "?" : "")
+        + ")";
+  }
+
+  private static String suggest(final String name) {
+    for (final String known : KNOWN_HINTS) {
+      if (!known.equals(name) && isSimilar(name, ImmutableList.of(known))) {
+        return known;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isSimilar(final String value, final List<String> candidates) {
+    final String upperCaseValue = value.toUpperCase(Locale.ENGLISH);
+    for (final String candidate : candidates) {
+      if (editDistance(upperCaseValue, candidate) <= 2) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int editDistance(final String a, final String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      for (int j = 1; j <= b.length(); j++) {
+        final int substitution = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] =
+            Math.min(
+                Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + substitution);
+      }
+      final int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+
+  /** The transformation hints of a single cell. */
+  public static final class CellHints {
+
+    static final CellHints EMPTY =
+        new CellHints(ImmutableMap.of(), ImmutableMap.of(), Priority.NORMAL);
+
+    private final Map<String, String> xtraServerHints;
+    private final Map<String, String> hints;
+    private final Priority priority;
+
+    private CellHints(
+        final Map<String, String> xtraServerHints,
+        final Map<String, String> webApiHints,
+        final Priority priority) {
+      this.xtraServerHints = ImmutableMap.copyOf(xtraServerHints);
+      final Map<String, String> hints = new LinkedHashMap<>(xtraServerHints);
+      hints.putAll(webApiHints);
+      this.hints = ImmutableMap.copyOf(hints);
+      this.priority = priority;
+    }
+
+    /**
+     * @return the hints with the prefix XTRASERVER in the order of the documentation
+     */
+    public Map<String, String> getXtraServerHints() {
+      return xtraServerHints;
+    }
+
+    /**
+     * @return the hints with the prefixes XTRASERVER and XSWA, XSWA hints take precedence
+     */
+    public Map<String, String> getHints() {
+      return hints;
+    }
+
+    public Optional<String> get(final String name) {
+      return Optional.ofNullable(hints.get(name));
+    }
+
+    public boolean isChoice() {
+      return hints.containsKey(HINT_CHOICE);
+    }
+
+    public boolean isEmbed() {
+      return hints.containsKey(HINT_EMBED);
+    }
+
+    /**
+     * @return the priority of the cell, if it differs from {@link Priority#NORMAL}
+     */
+    public Optional<Priority> getPriority() {
+      return priority == null || priority == Priority.NORMAL
+          ? Optional.empty()
+          : Optional.of(priority);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import de.ii.xtraserver.hale.io.CanceledException;
+import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
+import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiMappingGenerator;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.project.ProjectInfo;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Translates an Alignment to a XtraServer Mapping and a XtraServer Web API configuration. The
+ * alignment is analyzed once and walked once, feature type by feature type. The type cells of a
+ * feature type are passed to the handlers of both formats with the same property cell wrappers of
+ * the {@link AlignmentIndex}, which hold the analysis of every cell that both formats need: source
+ * and target property, association target and resolved parameters. The join chains are shared by
+ * the index as well. Within a feature type every format keeps the cell order of its own export, so
+ * both outputs are the same as those of two separate exports.
+ *
+ * <p>Both outputs are written to one archive, the entries of the XtraServer Mapping archive below
+ * {@value #MAPPING_DIRECTORY} and the entries of the configuration store below {@value
+ * #WEB_API_DIRECTORY}. The XtraServer Mapping is serialized feature type by feature type and
+ * merged with a {@link StreamingMappingArchive}, whose entries are added to the archive directly.
+ */
+public class XtraServerCombinedMappingGenerator implements Closeable {
+
+  static final String MAPPING_DIRECTORY = "xtraserver/";
+  static final String WEB_API_DIRECTORY = "webapi/";
+
+  private final AlignmentAnalysis analysis;
+  private final ProgressIndicator progress;
+  private final XtraServerMappingGenerator mappingGenerator;
+  private final XtraServerWebApiMappingGenerator webApiGenerator;
+
+  /**
+   * Constructor
+   *
+   * @param alignment the Alignment with all cells
+   * @param targetSchemaSpace the target schema
+   * @param progress Progress indicator
+   * @param projectProperties project transformation properties
+   * @param projectInfo project info
+   * @param projectLocation project file
+   * @param reporter reporter
+   * @throws IOException if the configuration store cannot be created
+   */
+  public XtraServerCombinedMappingGenerator(
+      final Alignment alignment,
+      final SchemaSpace targetSchemaSpace,
+      final ProgressIndicator progress,
+      final Map<String, Value> projectProperties,
+      final ProjectInfo projectInfo,
+      final URI projectLocation,
+      final IOReporter reporter)
+      throws IOException {
+    this.analysis =
+        new AlignmentAnalysis(alignment, targetSchemaSpace, projectProperties, reporter);
+    this.mappingGenerator =
+        new XtraServerMappingGenerator(
+            alignment,
+            targetSchemaSpace,
+            progress,
+            projectProperties,
+            projectInfo,
+            projectLocation,
+            reporter,
+            analysis);
+    this.webApiGenerator =
+        new XtraServerWebApiMappingGenerator(
+            alignment,
+            targetSchemaSpace,
+            progress,
+            projectProperties,
+            projectInfo,
+            projectLocation,
+            reporter,
+            analysis);
+
+    // the type cells are walked once, +1 for writing each format
+    progress.begin(
+        "Translating hale alignment to XtraServer Mapping and Web API configuration",
+        analysis.getAlignmentIndex().getTotalWorkUnits() + 2);
+    this.progress = progress;
+  }
+
+  /**
+   * Generates both outputs and writes them to one archive. The output stream is not closed.
+   *
+   * @param out the target stream
+   * @param providerId the provider id of the Web API configuration
+   * @throws UnsupportedTransformationException if the transformation of types or properties is not
+   *     supported
+   * @throws IOException if writing fails
+   * @throws XMLStreamException if the XtraServer Mapping cannot be written
+   * @throws CanceledException if the export was canceled
+   */
+  public void generate(final OutputStream out, final String providerId)
+      throws UnsupportedTransformationException, IOException, XMLStreamException {
+
+    final AlignmentIndex alignmentIndex = analysis.getAlignmentIndex();
+    final Map<Object, List<Cell>> typeCellsByFeatureType =
+        alignmentIndex.getTypeCellsByFeatureType();
+    for (final Map.Entry<Object, List<Cell>> featureType :
+        alignmentIndex.getSortedTypeCellsByFeatureType().entrySet()) {
+      CanceledException.checkCanceled(this.progress);
+      this.progress.setCurrentTask("Transforming type");
+      // same order as XtraServerMappingGenerator.generate() with parallel feature types
+      mappingGenerator.handleFeatureType(typeCellsByFeatureType.get(featureType.getKey()));
+      // same order as XtraServerWebApiMappingGenerator.generate()
+      for (final Cell typeCell : featureType.getValue()) {
+        webApiGenerator.handleTypeCell(
+            typeCell, alignmentIndex.getPropertyCells(typeCell), providerId);
+      }
+      this.progress.advance(alignmentIndex.getWorkUnits(featureType.getValue()));
+    }
+
+    try (final StreamingMappingArchive mappingArchive = new StreamingMappingArchive();
+        final ParallelZipWriter zip = new ParallelZipWriter(out)) {
+      CanceledException.checkCanceled(this.progress);
+      this.progress.setCurrentTask("Writing XtraServer Mapping Archive");
+      mappingGenerator.serializeFeatureTypes(
+          mapping -> XtraServerMappingFileWriter.writeToBuffer(mapping, true),
+          serializedMapping -> mappingArchive.append(new ByteArrayInputStream(serializedMapping)));
+      mappingArchive.addTo(zip, MAPPING_DIRECTORY);
+      this.progress.advance(1);
+
+      webApiGenerator.write(zip, WEB_API_DIRECTORY, providerId);
+      zip.finish();
+      this.progress.advance(1);
+    }
+  }
+
+  /**
+   * Return all property paths for which no association target could be found in the schema.
+   *
+   * @return list of properties with missing association targets
+   */
+  public Set<String> getMissingAssociationTargets() {
+    return mappingGenerator.getMissingAssociationTargets();
+  }
+
+  /** Deletes the temporary directory of the configuration store. */
+  @Override
+  public void close() throws IOException {
+    webApiGenerator.close();
+  }
+}
@@ -15,10 +15,14 @@
 
 package de.ii.xtraserver.hale.io.writer;
 
+import de.ii.xtraserver.hale.io.CanceledException;
 import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import jakarta.xml.bind.JAXBException;
@@ -47,16 +51,16 @@ public class XtraServerMappingFileWriter extends AbstractAlignmentWriter {
 
 	private final static String WRITER_TYPE_NAME = "XtraServer Mapping Exporter";
 
-	static final String CONTENT_TYPE_MAPPING = "de.ii.xtraserver.hale.io.mapping.xml";
+	public static final String CONTENT_TYPE_MAPPING = "de.ii.xtraserver.hale.io.mapping.xml";
 
-	static final String CONTENT_TYPE_ARCHIVE = "de.ii.xtraserver.hale.io.mapping.archive";
+	public static final String CONTENT_TYPE_ARCHIVE = "de.ii.xtraserver.hale.io.mapping.archive";
 
 	/**
 	 * @see eu.esdihumboldt.hale.common.core.io.IOProvider#isCancelable()
 	 */
 	@Override
 	public boolean isCancelable() {
-		return false;
+		return true;
 	}
 
 	/**
@@ -100,42 +104,48 @@ public class XtraServerMappingFileWriter extends AbstractAlignmentWriter {
 					getAlignment(), getTargetSchema(), progress,
 					Collections.unmodifiableMap(projectProperties), getProjectInfo(),
 					getProjectLocation(), reporter);
-			final XtraServerMapping mapping = generator.generate(reporter);
-			XtraServerMappingFile.Writer writer = XtraServerMappingFile.write().mapping(mapping);
-
+			final boolean archive;
 			if (getContentType().getId().equals(CONTENT_TYPE_MAPPING)) {
-				progress.setCurrentTask("Writing XtraServer Mapping file");
+				archive = false;
 			}
 			else if (getContentType().getId().equals(CONTENT_TYPE_ARCHIVE)) {
-				progress.setCurrentTask("Writing XtraServer Mapping Archive");
-				writer.createArchiveWithAdditionalFiles();
+				archive = true;
 			}
 			else {
 				throw new IOProviderConfigurationException(
 						"Content type not supported: " + getContentType().getName());
 			}
-			writer.toStream(out);
-			progress.advance(1);
 
-			final Set<String> missingAssociationTargets = generator.getMissingAssociationTargets();
-			if (!missingAssociationTargets.isEmpty()) {
-				StringBuilder builder = new StringBuilder();
-				int warningCount = 0;
-				for (String s : missingAssociationTargets) {
-					builder.append(System.getProperty("line.separator"));
-					builder.append(s);
-					warningCount++;
+			final IncrementalExportCache cache = canUseCache(generator, projectProperties, reporter)
+					? IncrementalExportCache
+							.create(getContentType().getId(), getTarget().getLocation(),
+									generator.getAnalysis(), getTargetSchema(), projectProperties,
+									getProjectLocation(), reporter)
+							.orElse(null)
+					: null;
+
+			if (generator.isStreamingOutput() || cache != null) {
+				writeStreaming(generator, archive, cache, out);
+				if (cache != null) {
+					cache.finish(reporter);
 				}
-				reporter.countWarning(warningCount);
-
-				reporter.warn(
-						"To determine the mapping association targets, this plugin relies on annotations "
-								+ "that are described in 'ISO 19109 - Rules for application schema'. "
-								+ "This requires that references possess a GML 'targetElement' elment inside an 'appInfo' "
-								+ "schema annotation. Please note that the following list of properties are not mapped with "
-								+ "association targets due to missing annotations: {0} ",
-						builder.toString());
 			}
+			else {
+				final XtraServerMapping mapping = generator.generate(reporter);
+				XtraServerMappingFile.Writer writer = XtraServerMappingFile.write().mapping(mapping);
+
+				if (archive) {
+					progress.setCurrentTask("Writing XtraServer Mapping Archive");
+					writer.createArchiveWithAdditionalFiles();
+				}
+				else {
+					progress.setCurrentTask("Writing XtraServer Mapping file");
+				}
+				writer.toStream(out);
+			}
+			progress.advance(1);
+
+			reportMissingAssociationTargets(generator.getMissingAssociationTargets(), reporter);
 		} catch (final UnsupportedTransformationException e) {
 			reporter.error("The transformation of the type '" + e.getTransformationIdentifier()
 					+ "'  is not supported. Make sure that the XtraServer compatibility mode is enabled.");
@@ -145,10 +155,116 @@ public class XtraServerMappingFileWriter extends AbstractAlignmentWriter {
 			reporter.error("An internal error occurred", e);
 			reporter.setSuccess(false);
 			return reporter;
+		} catch (final CanceledException e) {
+			reporter.error("The export was canceled");
+			reporter.setSuccess(false);
+			return reporter;
 		}
 		progress.end();
 		reporter.setSuccess(true);
 		return reporter;
 	}
 
+	/**
+	 * The incremental export transforms the mapping feature type by feature type. It is refused
+	 * with a warning if a transformer stage is selected that needs the mappings of all feature
+	 * types, since the result would differ from the normal export. The streaming output does not
+	 * depend on the stages, it then only serializes the mapping feature type by feature type.
+	 *
+	 * @return false if the incremental export is requested, but not possible
+	 */
+	private static boolean canUseCache(final XtraServerMappingGenerator generator,
+			final ValueProperties projectProperties, final IOReporter reporter) {
+		if (!IncrementalExportCache.isEnabled(projectProperties)) {
+			return false;
+		}
+		final List<String> stages = generator.getCrossFeatureTypeStages();
+		if (stages.isEmpty()) {
+			return true;
+		}
+		reporter.warn(
+				"The project variable {0} is ignored and the complete mapping is generated, "
+						+ "because the transformer stages {1} need the mappings of all feature "
+						+ "types. Remove them with XTRASERVER_TRANSFORMER_STAGES, e.g. \"-{2}\", "
+						+ "to export feature type by feature type.",
+				IncrementalExportCache.PROPERTY_INCREMENTAL, stages, String.join(",-", stages));
+		return false;
+	}
+
+	/**
+	 * Report the properties for which no association target could be found in the schema with a
+	 * single warning.
+	 *
+	 * @param missingAssociationTargets the property paths
+	 * @param reporter the reporter
+	 */
+	static void reportMissingAssociationTargets(final Set<String> missingAssociationTargets,
+			final IOReporter reporter) {
+		if (!missingAssociationTargets.isEmpty()) {
+			StringBuilder builder = new StringBuilder();
+			int warningCount = 0;
+			for (String s : missingAssociationTargets) {
+				builder.append(System.getProperty("line.separator"));
+				builder.append(s);
+				warningCount++;
+			}
+			reporter.countWarning(warningCount);
+
+			reporter.warn(
+					"To determine the mapping association targets, this plugin relies on annotations "
+							+ "that are described in 'ISO 19109 - Rules for application schema'. "
+							+ "This requires that references possess a GML 'targetElement' elment inside an 'appInfo' "
+							+ "schema annotation. Please note that the following list of properties are not mapped with "
+							+ "association targets due to missing annotations: {0} ",
+					builder.toString());
+		}
+	}
+
+	/**
+	 * Writes the mapping feature type by feature type. Each Mapping of a single feature type is
+	 * written to a buffer and its content appended to the output, so that the serialized form of
+	 * the complete mapping is never held in memory. The buffers are also the entries of the
+	 * incremental export cache.
+	 */
+	private void writeStreaming(final XtraServerMappingGenerator generator, final boolean archive,
+			final IncrementalExportCache cache, final OutputStream out)
+			throws UnsupportedTransformationException, IOException, XMLStreamException {
+		if (archive) {
+			try (StreamingMappingArchive mappingArchive = new StreamingMappingArchive()) {
+				generator.generateStreaming(mapping -> writeToBuffer(mapping, true),
+						serializedMapping -> mappingArchive
+								.append(new ByteArrayInputStream(serializedMapping)),
+						cache);
+				mappingArchive.writeTo(out);
+			}
+		}
+		else {
+			final StreamingMappingDocument document = new StreamingMappingDocument(out);
+			generator.generateStreaming(mapping -> writeToBuffer(mapping, false),
+					serializedMapping -> document.append(new ByteArrayInputStream(serializedMapping)),
+					cache);
+			document.finish();
+		}
+	}
+
+	/**
+	 * Serialize a Mapping to a plain XtraServer Mapping file or to an archive
+	 * with the additional files.
+	 */
+	static byte[] writeToBuffer(final XtraServerMapping mapping, final boolean archive)
+			throws IOException, XMLStreamException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			final XtraServerMappingFile.Writer writer = XtraServerMappingFile.write()
+					.mapping(mapping);
+			if (archive) {
+				writer.createArchiveWithAdditionalFiles();
+			}
+			writer.toStream(buffer);
+		} catch (final JAXBException | SAXException e) {
+			throw new XMLStreamException(e);
+		}
+		return buffer.toByteArray();
+	}
+
 }
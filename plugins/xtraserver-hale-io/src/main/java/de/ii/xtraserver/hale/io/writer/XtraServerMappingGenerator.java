@@ -15,6 +15,7 @@
 
 package de.ii.xtraserver.hale.io.writer;
 
+import de.ii.xtraserver.hale.io.CanceledException;
 import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
 import de.ii.xtraserver.hale.io.writer.handler.MappingContext;
 import de.ii.xtraserver.hale.io.writer.handler.PropertyTransformationHandler;
@@ -22,12 +23,24 @@ import de.ii.xtraserver.hale.io.writer.handler.PropertyTransformationHandlerFact
 import de.ii.xtraserver.hale.io.writer.handler.TypeTransformationHandler;
 import de.ii.xtraserver.hale.io.writer.handler.TypeTransformationHandlerFactory;
 import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.xml.stream.XMLStreamException;
 
+import de.interactive_instruments.xtraserver.config.api.FeatureTypeMapping;
 import de.interactive_instruments.xtraserver.config.api.XtraServerMapping;
 import eu.esdihumboldt.hale.common.align.model.Alignment;
 import eu.esdihumboldt.hale.common.align.model.Cell;
@@ -44,7 +57,8 @@ import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
  */
 public class XtraServerMappingGenerator {
 
-  private final Alignment alignment;
+  private final AlignmentAnalysis analysis;
+  private final AlignmentIndex alignmentIndex;
   private final TypeTransformationHandlerFactory typeHandlerFactory;
   private final PropertyTransformationHandlerFactory propertyHandlerFactory;
   private final ProgressIndicator progress;
@@ -65,20 +79,45 @@ public class XtraServerMappingGenerator {
       final SchemaSpace targetSchemaSpace, final ProgressIndicator progress,
       final Map<String, Value> projectProperties, final ProjectInfo projectInfo,
       final URI projectLocation, final IOReporter reporter) {
-    this.alignment = alignment;
+    this(alignment, targetSchemaSpace, progress, projectProperties, projectInfo, projectLocation,
+        reporter, new AlignmentAnalysis(alignment, targetSchemaSpace, projectProperties, reporter));
+    // total work units for the progress indicator (+1 for writing the file)
+    progress.begin("Translating hale alignment to XtraServer Mapping file",
+        alignmentIndex.getTotalWorkUnits() + 1);
+  }
+
+  /**
+   * Constructor that uses an existing analysis of the alignment. The progress indicator is not
+   * started, the caller begins it with its own total work units.
+   *
+   * @param alignment         the Alignment with all cells
+   * @param targetSchemaSpace the target schema
+   * @param progress          Progress indicator
+   * @param projectProperties project transformation properties
+   * @param projectInfo       project info
+   * @param projectLocation   project file
+   * @param reporter          reporter
+   * @param analysis          the analysis of the alignment, may be shared with other exports
+   */
+  public XtraServerMappingGenerator(final Alignment alignment,
+      final SchemaSpace targetSchemaSpace, final ProgressIndicator progress,
+      final Map<String, Value> projectProperties, final ProjectInfo projectInfo,
+      final URI projectLocation, final IOReporter reporter, final AlignmentAnalysis analysis) {
     mappingContext = new MappingContext(alignment, targetSchemaSpace, projectProperties,
-        projectInfo, projectLocation, reporter);
+        projectInfo, projectLocation, reporter, analysis);
     this.typeHandlerFactory = TypeTransformationHandler.createFactory(mappingContext);
     this.propertyHandlerFactory = PropertyTransformationHandler.createFactory(mappingContext);
-    // Calculate the total work units for the progress indicator (+1 for
-    // writing the
-    // file)
-    int c = 1;
-    for (final Cell typeCell : this.alignment.getActiveTypeCells()) {
-      c += this.alignment.getPropertyCells(typeCell).size() + 1;
-    }
-    progress.begin("Translating hale alignment to XtraServer Mapping file", c);
+    this.analysis = analysis;
+    this.alignmentIndex = analysis.getAlignmentIndex();
     this.progress = progress;
+    mappingContext.setProgressIndicator(progress);
+  }
+
+  /**
+   * @return the analysis of the alignment that is used by this generator
+   */
+  public AlignmentAnalysis getAnalysis() {
+    return analysis;
   }
 
   /**
@@ -88,39 +127,346 @@ public class XtraServerMappingGenerator {
    * @return the generated XtraServer Mapping
    * @throws UnsupportedTransformationException if the transformation of types or properties is not
    *                                            supported
+   * @throws CanceledException                  if the export was canceled
    */
   public XtraServerMapping generate(final IOReporter reporter)
       throws UnsupportedTransformationException {
+    return generateMapping();
+  }
+
+  private XtraServerMapping generateMapping() throws UnsupportedTransformationException {
+    final int parallelism = mappingContext.getParallelism();
+    if (parallelism > 1) {
+      generateParallel(parallelism);
+    } else {
+      for (final Cell typeCell : alignmentIndex.getTypeCells()) {
+        handleTypeCell(typeCell, mappingContext, typeHandlerFactory, propertyHandlerFactory, true);
+      }
+    }
+    final XtraServerMapping mapping = mappingContext.getMapping();
+    mappingContext.reportTransformerStatistics();
+    return mapping;
+  }
+
+  /**
+   * Processes the type cells of one feature type in a separate mapping context, which is merged
+   * into the main context as in the parallel generation. This is the entry point for exporters that
+   * walk the alignment themselves feature type by feature type and feed the same cells to several
+   * generators, the feature types are passed in the order of {@link
+   * AlignmentIndex#getTypeCellsByFeatureType()} and the progress is then reported by the caller.
+   *
+   * @param typeCells the type cells of the feature type in alignment order
+   * @throws UnsupportedTransformationException if the transformation of types or properties is not
+   *                                            supported
+   * @throws CanceledException                  if the export was canceled
+   */
+  public void handleFeatureType(final List<Cell> typeCells)
+      throws UnsupportedTransformationException {
+    mappingContext.mergeFeatureTypeContext(handleFeatureType(typeCells, false));
+  }
+
+  /**
+   * Transforms the Mapping of all feature types that were passed to {@link
+   * #handleFeatureType(List)} and serializes it feature type by feature type.
+   *
+   * @param serializer serializes the Mapping of one feature type
+   * @param consumer   receives the serialized Mappings, at least one (possibly empty) Mapping is
+   *                   passed
+   * @throws IOException        if a Mapping cannot be written
+   * @throws XMLStreamException if a Mapping cannot be written
+   * @throws CanceledException  if the export was canceled
+   */
+  public void serializeFeatureTypes(final MappingSerializer serializer,
+      final MappingConsumer consumer) throws IOException, XMLStreamException {
+    final XtraServerMapping mapping = mappingContext.getMapping();
+    mappingContext.reportTransformerStatistics();
+    serializeFeatureTypeByFeatureType(mapping, serializer, consumer);
+  }
+
+  /**
+   * Generates the Mapping feature type by feature type. The type cells of each feature type are
+   * processed in a separate mapping context, which is transformed to a Mapping that only contains
+   * the FeatureTypeMappings of this feature type. The Mapping is serialized and passed to the
+   * consumer. The context is dropped afterwards, so only the mapping of one feature type is kept
+   * in memory.
+   *
+   * <p>If one of the {@link #getCrossFeatureTypeStages() stages that need all feature types} is
+   * selected, the complete Mapping is generated and transformed first, as in {@link
+   * #generate(IOReporter)}. Only the serialization is then done feature type by feature type, so
+   * the serialized form of the complete Mapping is never held in memory. The cache cannot be used
+   * in this case.
+   *
+   * <p>If a cache is given, the serialized Mappings are stored in the cache and feature types
+   * with unchanged type cells are taken from the cache without processing their cells.
+   *
+   * @param serializer                          serializes the Mapping of one feature type
+   * @param consumer                            receives the serialized Mappings in alignment
+   *                                            order, at least one (possibly empty) Mapping is
+   *                                            passed
+   * @param cache                               the export cache, may be null
+   * @throws UnsupportedTransformationException if the transformation of types or properties is not
+   *                                            supported
+   * @throws IOException                        if a Mapping cannot be written
+   * @throws XMLStreamException                 if a Mapping cannot be written
+   * @throws CanceledException                  if the export was canceled
+   * @throws IllegalStateException              if a cache is given and a stage that needs all
+   *                                            feature types is selected
+   */
+  public void generateStreaming(final MappingSerializer serializer,
+      final MappingConsumer consumer, final IncrementalExportCache cache)
+      throws UnsupportedTransformationException, IOException, XMLStreamException {
+    if (!getCrossFeatureTypeStages().isEmpty()) {
+      if (cache != null) {
+        throw new IllegalStateException(
+            "The export cache cannot be used with the transformer stages "
+                + getCrossFeatureTypeStages());
+      }
+      serializeFeatureTypeByFeatureType(generateMapping(), serializer, consumer);
+      return;
+    }
+
+    final Map<Object, List<Cell>> typeCellsByFeatureType = alignmentIndex
+        .getTypeCellsByFeatureType();
+    if (typeCellsByFeatureType.isEmpty()) {
+      consumer.accept(serializer.serialize(mappingContext.getMapping()));
+      mappingContext.reportTransformerStatistics();
+      return;
+    }
+    for (final List<Cell> typeCells : typeCellsByFeatureType.values()) {
+      CanceledException.checkCanceled(this.progress);
+      final String fingerprint = cache != null ? cache.fingerprint(typeCells) : null;
+      final Optional<byte[]> cacheEntry =
+          cache != null ? cache.read(fingerprint) : Optional.empty();
+      if (cacheEntry.isPresent()) {
+        this.progress.setCurrentTask("Reusing cached Feature Type");
+        consumer.accept(readCacheEntry(cacheEntry.get()));
+        this.progress.advance(alignmentIndex.getWorkUnits(typeCells));
+        continue;
+      }
 
-    for (final Cell typeCell : this.alignment.getActiveTypeCells()) {
-      final String typeTransformationIdentifier = typeCell.getTransformationIdentifier();
-      // Create FeatureTypeMapping from the type cells. The Mapping tables
-      // are created
-      // and added by the Type Handlers
+      final MappingContext featureTypeContext = handleFeatureType(typeCells, true);
+      final byte[] serializedMapping = serializer.serialize(featureTypeContext.getMapping());
+      consumer.accept(serializedMapping);
+      mappingContext.mergeFeatureTypeReport(featureTypeContext);
+      if (cache != null) {
+        cache.write(fingerprint, createCacheEntry(serializedMapping,
+            featureTypeContext.getMissingAssociationTargets()));
+      }
+    }
+    mappingContext.reportTransformerStatistics();
+  }
+
+  private void serializeFeatureTypeByFeatureType(final XtraServerMapping mapping,
+      final MappingSerializer serializer, final MappingConsumer consumer)
+      throws IOException, XMLStreamException {
+    if (mapping.getFeatureTypeMappings().isEmpty()) {
+      consumer.accept(serializer.serialize(mapping));
+      return;
+    }
+    this.progress.setCurrentTask("Writing Feature Types");
+    for (final FeatureTypeMapping featureTypeMapping : mapping.getFeatureTypeMappings()) {
+      CanceledException.checkCanceled(this.progress);
+      consumer.accept(serializer.serialize(
+          mappingContext.createFeatureTypeMapping(featureTypeMapping)));
+    }
+  }
+
+  /**
+   * A cache entry holds the missing association targets and the serialized Mapping of a feature
+   * type.
+   */
+  private static byte[] createCacheEntry(final byte[] serializedMapping,
+      final Set<String> missingAssociationTargets) throws IOException {
+    final ByteArrayOutputStream entry = new ByteArrayOutputStream(serializedMapping.length + 256);
+    try (final DataOutputStream out = new DataOutputStream(entry)) {
+      out.writeInt(missingAssociationTargets.size());
+      for (final String missingAssociationTarget : missingAssociationTargets) {
+        out.writeUTF(missingAssociationTarget);
+      }
+      out.writeInt(serializedMapping.length);
+      out.write(serializedMapping);
+    }
+    return entry.toByteArray();
+  }
+
+  private byte[] readCacheEntry(final byte[] entry) throws IOException {
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry))) {
+      final int missingAssociationTargets = in.readInt();
+      for (int i = 0; i < missingAssociationTargets; i++) {
+        mappingContext.addMissingAssociationTarget(in.readUTF());
+      }
+      final byte[] serializedMapping = new byte[in.readInt()];
+      in.readFully(serializedMapping);
+      return serializedMapping;
+    }
+  }
+
+  /**
+   * Returns true if the mapping shall be written feature type by feature type with {@link
+   * #generateStreaming(MappingSerializer, MappingConsumer, IncrementalExportCache)}.
+   *
+   * @return true for streaming output
+   */
+  public boolean isStreamingOutput() {
+    return mappingContext.isStreamingOutput();
+  }
+
+  /**
+   * Returns the selected transformer stages that need the FeatureTypeMappings of all feature
+   * types. If any is selected, {@link #generateStreaming(MappingSerializer, MappingConsumer,
+   * IncrementalExportCache)} only serializes the Mapping feature type by feature type and cannot
+   * use an export cache.
+   *
+   * @return the names of the stages
+   */
+  public List<String> getCrossFeatureTypeStages() {
+    return mappingContext.getCrossFeatureTypeStages();
+  }
+
+  /**
+   * Processes the type cells of each feature type in a separate mapping context on a {@link
+   * ForkJoinPool}. The contexts are merged in alignment order, so the result does not depend on
+   * the order in which the tasks complete.
+   *
+   * @param parallelism number of worker threads
+   * @throws UnsupportedTransformationException if the transformation of types or properties is not
+   *                                            supported
+   */
+  private void generateParallel(final int parallelism)
+      throws UnsupportedTransformationException {
+
+    final Map<Object, List<Cell>> typeCellsByFeatureType = alignmentIndex
+        .getTypeCellsByFeatureType();
+
+    this.progress.setCurrentTask("Transforming types using " + parallelism + " threads");
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      final List<ForkJoinTask<MappingContext>> tasks = new ArrayList<>();
+      for (final List<Cell> typeCells : typeCellsByFeatureType.values()) {
+        tasks.add(pool.submit(() -> handleFeatureType(typeCells, false)));
+      }
+
+      final Iterator<List<Cell>> typeCells = typeCellsByFeatureType.values().iterator();
+      for (final ForkJoinTask<MappingContext> task : tasks) {
+        mappingContext.mergeFeatureTypeContext(getResult(task));
+        this.progress.advance(alignmentIndex.getWorkUnits(typeCells.next()));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private MappingContext handleFeatureType(final List<Cell> typeCells,
+      final boolean reportProgress) throws UnsupportedTransformationException {
+    // handlers are bound to their context, so every feature type context gets its own set
+    final MappingContext featureTypeContext = mappingContext.createFeatureTypeContext();
+    final TypeTransformationHandlerFactory featureTypeHandlerFactory = TypeTransformationHandler
+        .createFactory(featureTypeContext);
+    final PropertyTransformationHandlerFactory featurePropertyHandlerFactory =
+        PropertyTransformationHandler.createFactory(featureTypeContext);
+
+    for (final Cell typeCell : typeCells) {
+      handleTypeCell(typeCell, featureTypeContext, featureTypeHandlerFactory,
+          featurePropertyHandlerFactory, reportProgress);
+    }
+    return featureTypeContext;
+  }
+
+  private void handleTypeCell(final Cell typeCell, final MappingContext context,
+      final TypeTransformationHandlerFactory typeHandlerFactory,
+      final PropertyTransformationHandlerFactory propertyHandlerFactory,
+      final boolean reportProgress) throws UnsupportedTransformationException {
+    handleTypeCell(typeCell, alignmentIndex.getPropertyCells(typeCell), context,
+        typeHandlerFactory, propertyHandlerFactory, reportProgress);
+  }
+
+  private void handleTypeCell(final Cell typeCell, final List<CellParentWrapper> propertyCells,
+      final MappingContext context, final TypeTransformationHandlerFactory typeHandlerFactory,
+      final PropertyTransformationHandlerFactory propertyHandlerFactory,
+      final boolean reportProgress) throws UnsupportedTransformationException {
+    CanceledException.checkCanceled(this.progress);
+    final String typeTransformationIdentifier = typeCell.getTransformationIdentifier();
+    // Create FeatureTypeMapping from the type cells. The Mapping tables
+    // are created
+    // and added by the Type Handlers
+    if (reportProgress) {
       this.progress.setCurrentTask("Transforming type");
-      final TypeTransformationHandler typeHandler = typeHandlerFactory
-          .create(typeTransformationIdentifier);
-      if (typeHandler != null) {
-        typeHandler.handle(typeCell);
+    }
+    final TypeTransformationHandler typeHandler = typeHandlerFactory
+        .create(typeTransformationIdentifier);
+    if (typeHandler != null) {
+      typeHandler.handle(typeCell);
+      if (reportProgress) {
         this.progress.setCurrentTask(
-            "Mapping values for Feature Type " + mappingContext.getFeatureTypeName());
-        // Add MappingValues from the type cell's property cells
-        for (final Cell propertyCell : this.alignment.getPropertyCells(typeCell).stream()
-            .sorted(Comparator.comparing(Cell::getPriority)).collect(Collectors.toList())) {
-          final String propertyTransformationIdentifier = propertyCell
-              .getTransformationIdentifier();
-          final PropertyTransformationHandler propertyHandler = propertyHandlerFactory
-              .create(propertyTransformationIdentifier);
-          if (propertyHandler != null) {
-            propertyHandler.handle(new CellParentWrapper(typeCell, propertyCell));
-          }
+            "Mapping values for Feature Type " + context.getFeatureTypeName());
+      }
+      // Add MappingValues from the type cell's property cells
+      for (final CellParentWrapper propertyCell : propertyCells) {
+        final String propertyTransformationIdentifier = propertyCell
+            .getTransformationIdentifier();
+        final PropertyTransformationHandler propertyHandler = propertyHandlerFactory
+            .create(propertyTransformationIdentifier);
+        if (propertyHandler != null) {
+          propertyHandler.handle(propertyCell);
+        }
+        if (reportProgress) {
           this.progress.advance(1);
         }
-      } else {
-        this.progress.advance(this.alignment.getPropertyCells(typeCell).size());
       }
+    } else if (reportProgress) {
+      this.progress.advance(propertyCells.size());
     }
-    return mappingContext.getMapping();
+  }
+
+  private static MappingContext getResult(final ForkJoinTask<MappingContext> task)
+      throws UnsupportedTransformationException {
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Mapping generation was interrupted", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof UnsupportedTransformationException) {
+        throw (UnsupportedTransformationException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Serializes the Mappings of single feature types in streaming mode.
+   */
+  @FunctionalInterface
+  public interface MappingSerializer {
+
+    /**
+     * @param mapping the Mapping of one feature type
+     * @return the serialized Mapping
+     * @throws IOException        if serializing fails
+     * @throws XMLStreamException if serializing fails
+     */
+    byte[] serialize(XtraServerMapping mapping) throws IOException, XMLStreamException;
+  }
+
+  /**
+   * Receives the serialized Mappings of single feature types in streaming mode.
+   */
+  @FunctionalInterface
+  public interface MappingConsumer {
+
+    /**
+     * @param serializedMapping the serialized Mapping of one feature type
+     * @throws IOException        if writing fails
+     * @throws XMLStreamException if writing fails
+     */
+    void accept(byte[] serializedMapping) throws IOException, XMLStreamException;
   }
 
   /**
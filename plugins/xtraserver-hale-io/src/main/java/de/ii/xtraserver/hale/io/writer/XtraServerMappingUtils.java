@@ -17,11 +17,11 @@ package de.ii.xtraserver.hale.io.writer;
 
 import com.google.common.collect.ListMultimap;
 
+import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Entity;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
-import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
 import javax.xml.namespace.QName;
 
 /**
@@ -39,6 +39,9 @@ public class XtraServerMappingUtils {
 	 * @return the target {@link Property}
 	 */
 	public static Property getSourceProperty(Cell propertyCell) {
+		if (propertyCell instanceof CellParentWrapper) {
+			return ((CellParentWrapper) propertyCell).getSourceProperty();
+		}
 		ListMultimap<String, ? extends Entity> sourceEntities = propertyCell.getSource();
 		if (sourceEntities != null && !sourceEntities.isEmpty()) {
 			return (Property) sourceEntities.values().iterator().next();
@@ -55,6 +58,9 @@ public class XtraServerMappingUtils {
 	 * @return the target {@link Property}
 	 */
 	public static Property getTargetProperty(Cell propertyCell) {
+		if (propertyCell instanceof CellParentWrapper) {
+			return ((CellParentWrapper) propertyCell).getTargetProperty();
+		}
 		ListMultimap<String, ? extends Entity> targetEntities = propertyCell.getTarget();
 		if (targetEntities != null && !targetEntities.isEmpty()) {
 			return (Property) targetEntities.values().iterator().next();
@@ -63,22 +69,25 @@ public class XtraServerMappingUtils {
 		return null;
 	}
 
-	public static QName getFeatureTypeName(final Cell typeCell) {
+	/**
+	 * Return the feature type name of a type cell from the schema index.
+	 * 
+	 * @param typeCell the type cell
+	 * @param targetSchemaIndex metadata of the target schema
+	 * @return the element name of the target type
+	 */
+	public static QName getFeatureTypeName(final Cell typeCell,
+			final TargetSchemaIndex targetSchemaIndex) {
+		return targetSchemaIndex.getFeatureTypeName(getTargetTypeDefinition(typeCell));
+	}
 
+	private static TypeDefinition getTargetTypeDefinition(final Cell typeCell) {
 		final ListMultimap<String, ? extends Entity> targetEntities = typeCell.getTarget();
 		if (targetEntities == null || targetEntities.size() == 0) {
 			throw new IllegalStateException("No target type has been specified.");
 		}
 		final Entity targetType = targetEntities.values().iterator().next();
-		final TypeDefinition targetTypeDefinition = targetType.getDefinition().getType();
-		final XmlElements constraints = targetTypeDefinition.getConstraint(XmlElements.class);
-		if (constraints == null || constraints.getElements().size() == 0) {
-			throw new IllegalStateException("No constraint has been specified.");
-		}
-		else if (constraints.getElements().size() > 1) {
-			throw new IllegalStateException("More than one constraint has been specified.");
-		}
-		return constraints.getElements().iterator().next().getName();
+		return targetType.getDefinition().getType();
 	}
 
 }
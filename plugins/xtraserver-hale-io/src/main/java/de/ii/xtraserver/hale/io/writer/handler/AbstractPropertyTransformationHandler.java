@@ -15,6 +15,9 @@
 
 package de.ii.xtraserver.hale.io.writer.handler;
 
+import de.ii.xtraserver.hale.io.jfr.CellTransformationEvent;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex.CellHints;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.interactive_instruments.xtraserver.config.api.Hints;
 import de.interactive_instruments.xtraserver.config.api.MappingValueBuilder.ValueDefault;
@@ -23,15 +26,10 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
 
-import org.apache.ws.commons.schema.XmlSchemaAppInfo;
-import org.w3c.dom.Node;
-
 import com.google.common.collect.ListMultimap;
 
 import de.interactive_instruments.xtraserver.config.api.MappingValue;
@@ -40,10 +38,7 @@ import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.ChildContext;
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
-import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
-import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
-import eu.esdihumboldt.hale.io.xsd.constraint.XmlAppInfo;
 import eu.esdihumboldt.hale.io.xsd.constraint.XmlAttributeFlag;
 
 /**
@@ -107,85 +102,49 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
 	 */
 	private MappingValue ensureAssociationTarget(final Cell propertyCell,
 			final MappingValue lastValue) {
-		final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
-		if (targetProperty.getDefinition().getDefinition().getConstraint(Reference.class)
-				.isReference()) {
-			final String associationTargetRef = getTargetFromSchema(targetProperty);
-			if (associationTargetRef != null) {
-				return new MappingValueBuilder().reference()
-						.referencedFeatureType(associationTargetRef)
-						.qualifiedTargetPath(lastValue.getQualifiedTargetPath())
-						.value(lastValue.getValue()).build();
-			}
+		final Optional<String> associationTargetRef = mappingContext
+				.getAssociationTarget(propertyCell);
+		if (associationTargetRef.isPresent()) {
+			return new MappingValueBuilder().reference()
+					.referencedFeatureType(associationTargetRef.get())
+					.qualifiedTargetPath(lastValue.getQualifiedTargetPath())
+					.value(lastValue.getValue()).build();
 		}
 
 		return lastValue;
 	}
 
 	private MappingValue checkNotesForTransformationHints(Cell propertyCell, MappingValue mappingValue) {
-		Optional<ValueDefault> valueBuilder = Optional.empty();
+		final CellHints hints = mappingContext.getTransformationHints(propertyCell);
+		final Optional<Priority> priority = hints.getPriority();
 
-		if (propertyCell.getPriority() != Priority.NORMAL) {
-      if (!valueBuilder.isPresent()) {
-        valueBuilder = Optional.of(new MappingValueBuilder().copyOf(mappingValue));
-			}
-			valueBuilder.get().transformationHint(Hints.PRIORITY,
-					String.valueOf(propertyCell.getPriority().getPriorityNumber()));
+		if (!priority.isPresent() && hints.getXtraServerHints().isEmpty()) {
+			return mappingValue;
 		}
 
-		if (propertyCell.getDocumentation().containsKey(null)) {
-			List<String> docs = propertyCell.getDocumentation().get(null);
-
-			if (!docs.isEmpty() && docs.get(0).contains("{{XTRASERVER:")) {
-				if (!valueBuilder.isPresent()) {
-					valueBuilder = Optional.of(new MappingValueBuilder().copyOf(mappingValue));
-				}
-
-				Matcher matcher = Pattern.compile("\\{\\{XTRASERVER:(\\w+)(?:=(.+?))?}}")
-						.matcher(docs.get(0));
+		final ValueDefault valueBuilder = new MappingValueBuilder().copyOf(mappingValue);
+		priority.ifPresent(p -> valueBuilder.transformationHint(Hints.PRIORITY,
+				String.valueOf(p.getPriorityNumber())));
+		hints.getXtraServerHints().forEach(valueBuilder::transformationHint);
 
-				while (matcher.find()) {
-					valueBuilder.get().transformationHint(matcher.group(1), matcher.group(2) != null ? matcher.group(2) : "true");
-				}
-			}
-		}
-
-		return valueBuilder.isPresent() ? valueBuilder.get().build() : mappingValue;
+		return valueBuilder.build();
 	}
 
-	/**
-	 * Find the association target from the AppInfo annotation in the XSD
-	 * 
-	 * @param targetProperty target property to analyze
-	 * @return association target as String
-	 */
-	private String getTargetFromSchema(final Property targetProperty) {
-		if (targetProperty.getDefinition().getPropertyPath().isEmpty()) {
-			return null;
-		}
-		int refElemIndex = Math.max(0, targetProperty.getDefinition().getPropertyPath().size() - 2);
-		final ChildDefinition<?> firstChild = targetProperty.getDefinition().getPropertyPath()
-				.get(refElemIndex).getChild();
-		if (!(firstChild instanceof PropertyDefinition)) {
-			return null;
-		}
-		final XmlAppInfo appInfoAnnotation = ((PropertyDefinition) firstChild)
-				.getConstraint(XmlAppInfo.class);
-
-		for (final XmlSchemaAppInfo appInfo : appInfoAnnotation.getAppInfos()) {
-			for (int i = 0; i < appInfo.getMarkup().getLength(); i++) {
-				final Node item = appInfo.getMarkup().item(i);
-				if ("targetElement".equals(item.getNodeName())) {
-					final String target = item.getTextContent();
-					return target;
-				}
+	@Override
+	public final MappingValue handle(final Cell propertyCell, String providerId) {
+		final CellTransformationEvent event = FlightRecorder.AVAILABLE
+				? CellTransformationEvent.start(MappingContext.EXPORTER, this)
+				: null;
+		try {
+			return handleCell(propertyCell);
+		} finally {
+			if (event != null) {
+				event.end(propertyCell, mappingContext.getFeatureTypeName());
 			}
 		}
-		return null;
 	}
 
-	@Override
-	public final MappingValue handle(final Cell propertyCell, String providerId) {
+	private MappingValue handleCell(final Cell propertyCell) {
 		final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
 		final Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
 
@@ -16,12 +16,18 @@
 package de.ii.xtraserver.hale.io.writer.handler;
 
 import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * Abstract Factory for creating Type and Property Transformation Handlers
  * 
+ * The handlers are bound to the mapping context of the factory, which holds
+ * the state of the currently processed feature type. A factory must therefore
+ * only be used by one thread at a time, parallel generation creates one
+ * factory per feature type context.
+ * 
  * @param <T> TransformationHandler
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
@@ -35,7 +41,7 @@ public abstract class AbstractTransformationHandlerFactory<T extends Transformat
 	protected AbstractTransformationHandlerFactory(final IOReporter reporter,
 			final Map<String, T> handlers) {
 		this.reporter = reporter;
-		this.handlers = handlers;
+		this.handlers = Collections.unmodifiableMap(handlers);
 	}
 
 	/**
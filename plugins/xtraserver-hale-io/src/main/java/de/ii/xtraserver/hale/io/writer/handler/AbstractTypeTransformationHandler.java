@@ -16,6 +16,9 @@
 package de.ii.xtraserver.hale.io.writer.handler;
 
 import de.ii.xtraserver.hale.io.compatibility.XtraServerCompatibilityMode;
+import de.ii.xtraserver.hale.io.jfr.CellTransformationEvent;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import java.util.Collection;
 
 import javax.xml.namespace.QName;
@@ -39,7 +42,6 @@ import eu.esdihumboldt.hale.common.filter.AbstractGeotoolsFilter;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.constraint.type.PrimaryKey;
 import eu.esdihumboldt.hale.io.jdbc.constraints.DatabaseTable;
-import eu.esdihumboldt.hale.io.xsd.constraint.XmlElements;
 
 /**
  * Abstract Type Transformation Handler
@@ -55,20 +57,8 @@ abstract class AbstractTypeTransformationHandler implements TypeTransformationHa
 	}
 
 	protected QName getFeatureTypeName(final Cell cell) {
-		final ListMultimap<String, ? extends Entity> targetEntities = cell.getTarget();
-		if (targetEntities == null || targetEntities.size() == 0) {
-			throw new IllegalStateException("No target type has been specified.");
-		}
-		final Entity targetType = targetEntities.values().iterator().next();
-		final TypeDefinition targetTypeDefinition = targetType.getDefinition().getType();
-		final XmlElements constraints = targetTypeDefinition.getConstraint(XmlElements.class);
-		if (constraints == null || constraints.getElements().size() == 0) {
-			throw new IllegalStateException("No constraint has been specified.");
-		}
-		else if (constraints.getElements().size() > 1) {
-			throw new IllegalStateException("More than one constraint has been specified.");
-		}
-		return constraints.getElements().iterator().next().getName();
+		return XtraServerMappingUtils.getFeatureTypeName(cell,
+				mappingContext.getTargetSchemaIndex());
 	}
 
 	protected String getPrimaryKey(final TypeDefinition definition) {
@@ -124,6 +114,19 @@ abstract class AbstractTypeTransformationHandler implements TypeTransformationHa
 
 	@Override
 	public final FeatureTypeMapping handle(final Cell cell, String providerId) {
+		final CellTransformationEvent event = FlightRecorder.AVAILABLE
+				? CellTransformationEvent.start(MappingContext.EXPORTER, this)
+				: null;
+		try {
+			return handleCell(cell);
+		} finally {
+			if (event != null) {
+				event.end(cell, mappingContext.getFeatureTypeName());
+			}
+		}
+	}
+
+	private FeatureTypeMapping handleCell(final Cell cell) {
 		mappingContext.addNextFeatureTypeMapping(getFeatureTypeName(cell));
 
 		final ListMultimap<String, ? extends Entity> sourceEntities = cell.getSource();
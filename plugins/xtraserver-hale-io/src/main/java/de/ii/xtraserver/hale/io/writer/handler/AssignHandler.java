@@ -65,7 +65,7 @@ class AssignHandler extends AbstractPropertyTransformationHandler {
 		if (valueParams.isEmpty()) {
 			throw new IllegalArgumentException("Value for Assign is not set");
 		}
-		final String value = valueParams.get(0).getStringRepresentation();
+		final String value = mappingContext.getResolvedParameter(propertyCell, PARAMETER_VALUE);
 
 		final List<QName> path = buildPath(targetProperty.getDefinition().getPropertyPath());
 
@@ -82,7 +82,7 @@ class AssignHandler extends AbstractPropertyTransformationHandler {
 		}
 
 		final ValueDefault mappingValue = new MappingValueBuilder().constant()
-				.qualifiedTargetPath(path).value(mappingContext.resolveProjectVars(value))
+				.qualifiedTargetPath(path).value(value)
 				.significantForEmptiness(
 						!propertyCell.getTransformationIdentifier().equals(AssignFunction.ID_BOUND));
 
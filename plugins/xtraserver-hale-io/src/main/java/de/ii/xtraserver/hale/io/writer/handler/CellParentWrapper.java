@@ -17,8 +17,13 @@ package de.ii.xtraserver.hale.io.writer.handler;
 
 import static eu.esdihumboldt.hale.common.align.model.functions.JoinFunction.PARAMETER_JOIN;
 
+import de.ii.xtraserver.hale.io.writer.ProjectVariableTemplates;
+import de.ii.xtraserver.hale.io.writer.TargetSchemaIndex;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import com.google.common.collect.ListMultimap;
@@ -37,12 +42,27 @@ import eu.esdihumboldt.hale.io.jdbc.constraints.DatabaseTable;
 /**
  * Parameter decorator, that provides access to the parent cell
  * 
+ * <p>
+ * The wrapper also holds the analysis of the property cell that does not
+ * depend on the export format: the source and target property, the table
+ * name, the association target and the parameters with replaced project
+ * variables. Each is resolved once, so that a wrapper can be passed to the
+ * handlers of several export formats. A wrapper is only used by one thread at
+ * a time.
+ * </p>
+ * 
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
 public class CellParentWrapper implements Cell {
 
 	private final Cell wrappedCell;
 	private final Cell parentTypeCell;
+	private String tableName;
+	private boolean propertiesResolved;
+	private Property sourceProperty;
+	private Property targetProperty;
+	private Optional<String> associationTarget;
+	private final Map<String, Optional<String>> resolvedParameters = new HashMap<>();
 
 	/**
 	 * Constructor.
@@ -93,12 +113,109 @@ public class CellParentWrapper implements Cell {
 	/**
 	 * Returns the table name of the property cell or the parent type cell. If
 	 * the source of the alignment is not a database schema, the name of the
-	 * type is returned.
+	 * type is returned. The name is resolved once, so that a wrapper can be
+	 * passed to the handlers of several export formats.
 	 * 
 	 * @return table name
 	 */
 	public String getTableName() {
-		final Property sourceProperty = XtraServerMappingUtils.getSourceProperty(wrappedCell);
+		if (tableName == null) {
+			tableName = resolveTableName();
+		}
+		return tableName;
+	}
+
+	/**
+	 * Returns the first source entity of the property cell, see
+	 * {@link XtraServerMappingUtils#getSourceProperty(Cell)}
+	 * 
+	 * @return source property or null
+	 */
+	public Property getSourceProperty() {
+		resolveProperties();
+		return sourceProperty;
+	}
+
+	/**
+	 * Returns the first target entity of the property cell, see
+	 * {@link XtraServerMappingUtils#getTargetProperty(Cell)}
+	 * 
+	 * @return target property or null
+	 */
+	public Property getTargetProperty() {
+		resolveProperties();
+		return targetProperty;
+	}
+
+	private void resolveProperties() {
+		if (!propertiesResolved) {
+			sourceProperty = XtraServerMappingUtils.getSourceProperty(wrappedCell);
+			targetProperty = XtraServerMappingUtils.getTargetProperty(wrappedCell);
+			propertiesResolved = true;
+		}
+	}
+
+	/**
+	 * Returns the association target of the target property that is found in
+	 * the target schema.
+	 * 
+	 * @param targetSchemaIndex the metadata of the target schema, the same for
+	 *            every call
+	 * @return association target or empty if the target property is not a
+	 *         reference
+	 */
+	public Optional<String> getAssociationTarget(final TargetSchemaIndex targetSchemaIndex) {
+		if (associationTarget == null) {
+			associationTarget = getTargetProperty() != null
+					? targetSchemaIndex.getAssociationTarget(getTargetProperty())
+					: Optional.empty();
+		}
+		return associationTarget;
+	}
+
+	/**
+	 * Returns the first value of a transformation parameter with replaced
+	 * project variables.
+	 * 
+	 * @param name the parameter name
+	 * @param projectVariableTemplates the project variables, the same for every
+	 *            call
+	 * @return the resolved value or null if the parameter is not set
+	 */
+	public String getResolvedParameter(final String name,
+			final ProjectVariableTemplates projectVariableTemplates) {
+		return resolvedParameters.computeIfAbsent(name,
+				key -> Optional.ofNullable(
+						resolveParameter(wrappedCell, key, projectVariableTemplates)))
+				.orElse(null);
+	}
+
+	/**
+	 * Returns the first value of a transformation parameter of a cell with
+	 * replaced project variables, without remembering the result.
+	 * 
+	 * @param cell the cell
+	 * @param name the parameter name
+	 * @param projectVariableTemplates the project variables
+	 * @return the resolved value or null if the parameter is not set
+	 */
+	public static String resolveParameter(final Cell cell, final String name,
+			final ProjectVariableTemplates projectVariableTemplates) {
+		final ListMultimap<String, ParameterValue> parameters = cell
+				.getTransformationParameters();
+		if (parameters == null) {
+			return null;
+		}
+		final List<ParameterValue> values = parameters.get(name);
+		if (values.isEmpty()) {
+			return null;
+		}
+		final String value = values.get(0).getStringRepresentation();
+		return value != null ? projectVariableTemplates.resolve(value) : null;
+	}
+
+	private String resolveTableName() {
+		final Property sourceProperty = getSourceProperty();
 		if (sourceProperty != null) {
 			final DatabaseTable table = sourceProperty.getDefinition().getDefinition()
 					.getParentType().getConstraint(DatabaseTable.class);
@@ -17,7 +17,6 @@ package de.ii.xtraserver.hale.io.writer.handler;
 
 import com.google.common.base.Strings;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -34,9 +33,6 @@ import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingFunction;
-import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingUtil;
-import eu.esdihumboldt.hale.common.core.io.Value;
-import eu.esdihumboldt.hale.common.core.service.ServiceManager;
 import eu.esdihumboldt.hale.common.lookup.LookupTable;
 
 /**
@@ -81,16 +77,12 @@ class ClassificationMappingHandler extends AbstractPropertyTransformationHandler
 				.getTransformationParameters();
 
 		// Assign DB codes and values from the lookup table
-		final LookupTable lookup = ClassificationMappingUtil.getClassificationLookup(parameters,
-				new ServiceManager(ServiceManager.SCOPE_PROJECT));
+		final LookupTable lookup = mappingContext.getLookupTableCache().getLookupTable(parameters);
 		if (lookup != null) {
-			final Map<Value, Value> valueMap = lookup.asMap();
-			final Iterator<Value> it = valueMap.keySet().iterator();
-			while (it.hasNext()) {
-				final Value sourceValue = it.next();
-				final String targetValueStr = '\'' + mappingContext.resolveProjectVars(valueMap.get(sourceValue).as(String.class))
-						+ '\'';
-				String sourceValueStr = sourceValue.as(String.class);
+			for (final Map.Entry<String, String> entry : mappingContext.getLookupTableCache()
+					.getEntries(lookup).entrySet()) {
+				final String targetValueStr = '\'' + entry.getValue() + '\'';
+				String sourceValueStr = entry.getKey();
 				sourceValueStr = "true".equals(sourceValueStr) ? "TRUE" : sourceValueStr;
 				sourceValueStr = "false".equals(sourceValueStr) ? "FALSE" : sourceValueStr;
 
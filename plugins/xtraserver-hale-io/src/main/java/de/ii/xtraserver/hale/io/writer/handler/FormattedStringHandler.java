@@ -64,7 +64,7 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
 		}
 		final String pattern = patterns.get(0).as(String.class);
 		final StringBuilder formattedStr = new StringBuilder(
-				mappingContext.resolveProjectVars(pattern));
+				mappingContext.getResolvedParameter(propertyCell, "pattern"));
 		final int patternLength = formattedStr.length();
 
 		if (propertyCell.getSource() != null && propertyCell.getSource().asMap().get("var") != null
@@ -15,14 +15,12 @@
 
 package de.ii.xtraserver.hale.io.writer.handler;
 
-import static eu.esdihumboldt.hale.common.align.model.functions.JoinFunction.PARAMETER_JOIN;
-
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import de.ii.xtraserver.hale.io.writer.JoinChain;
 import de.interactive_instruments.xtraserver.config.api.FeatureTypeMapping;
 import de.interactive_instruments.xtraserver.config.api.MappingJoin;
 import de.interactive_instruments.xtraserver.config.api.MappingJoin.Condition;
@@ -31,10 +29,7 @@ import de.interactive_instruments.xtraserver.config.api.MappingTableBuilder;
 import eu.esdihumboldt.hale.common.align.model.AlignmentUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Entity;
-import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.functions.JoinFunction;
-import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter;
-import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter.JoinCondition;
 import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
 
 /**
@@ -55,20 +50,13 @@ class JoinHandler extends AbstractTypeTransformationHandler {
 	public void doHandle(final Collection<? extends Entity> sourceTypes, final Entity targetType,
 			final Cell typeCell) {
 
-		for (final ParameterValue transParam : typeCell.getTransformationParameters()
-				.get(PARAMETER_JOIN)) {
-
-			final JoinParameter joinParameter = transParam.as(JoinParameter.class);
-			final String validation = joinParameter.validate();
-			if (validation != null) {
-				throw new IllegalArgumentException("Join parameter invalid: " + validation);
-			}
+		for (final JoinChain joinChain : mappingContext.getAlignmentIndex()
+				.getJoinChains(typeCell)) {
 
 			final MappingTableBuilder baseTable = createTableIfAbsent(
-					joinParameter.getTypes().iterator().next());
+					joinChain.getTypes().iterator().next());
 
-			final List<Condition> sortedConditions = transformSortedConditions(joinParameter,
-					sourceTypes);
+			final List<Condition> sortedConditions = transformConditions(joinChain, sourceTypes);
 
 			// TODO: add nested joined tables to merged tables
 
@@ -88,10 +76,8 @@ class JoinHandler extends AbstractTypeTransformationHandler {
 								return join.build();
 							}).collect(Collectors.toList());
 
-					joins.forEach(joinPath -> {
-						mappingContext.getTable(joinPath.getTargetTable())
-								.ifPresent(targetTable -> targetTable.joinPath(joinPath));
-					});
+					joins.forEach(joinPath -> mappingContext
+							.addJoinPathToTable(joinPath.getTargetTable(), joinPath));
 
 					nextSourceTables.addAll(joins.stream().map(st -> st.getTargetTable())
 							.collect(Collectors.toList()));
@@ -102,26 +88,17 @@ class JoinHandler extends AbstractTypeTransformationHandler {
 	}
 
 	/**
-	 * Transform and sort hale Join Condition Set into Join Conditions that are
+	 * Transform the sorted hale Join Conditions into Join Conditions that are
 	 * attached to multiple XtraServer Join objects
 	 * 
-	 * @param joinParameter hale conditions
+	 * @param joinChain hale conditions
 	 * @param sourceTypes source types from cell with primary keys
 	 * @return sorted joins
 	 */
-	private List<Condition> transformSortedConditions(final JoinParameter joinParameter,
+	private List<Condition> transformConditions(final JoinChain joinChain,
 			final Collection<? extends Entity> sourceTypes) {
 
-		return joinParameter.getConditions().stream().sorted(new Comparator<JoinCondition>() {
-
-			@Override
-			public int compare(JoinCondition o1, JoinCondition o2) {
-				TypeEntityDefinition o1Type = AlignmentUtil.getTypeEntity(o1.joinProperty);
-				TypeEntityDefinition o2Type = AlignmentUtil.getTypeEntity(o2.joinProperty);
-				return joinParameter.getTypes().indexOf(o1Type)
-						- joinParameter.getTypes().indexOf(o2Type);
-			}
-		}).map(condition -> {
+		return joinChain.getSortedConditions().stream().map(condition -> {
 			final TypeEntityDefinition baseType = AlignmentUtil
 					.getTypeEntity(condition.baseProperty);
 
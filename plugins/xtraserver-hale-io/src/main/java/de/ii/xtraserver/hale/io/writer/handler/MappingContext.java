@@ -28,31 +28,42 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.function.Predicate;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
+import de.ii.xtraserver.hale.io.jfr.MappingBuildEvent;
+import de.ii.xtraserver.hale.io.writer.AlignmentAnalysis;
+import de.ii.xtraserver.hale.io.writer.AlignmentIndex;
+import de.ii.xtraserver.hale.io.writer.LookupTableCache;
+import de.ii.xtraserver.hale.io.writer.ProjectVariableTemplates;
+import de.ii.xtraserver.hale.io.writer.TargetSchemaIndex;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex.CellHints;
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.interactive_instruments.xtraserver.config.api.FeatureTypeMapping;
 import de.interactive_instruments.xtraserver.config.api.FeatureTypeMappingBuilder;
+import de.interactive_instruments.xtraserver.config.api.MappingJoin;
 import de.interactive_instruments.xtraserver.config.api.MappingTable;
 import de.interactive_instruments.xtraserver.config.api.MappingTableBuilder;
-import de.interactive_instruments.xtraserver.config.api.MappingTableBuilder.MappingTableDraft;
 import de.interactive_instruments.xtraserver.config.api.MappingValue;
 import de.interactive_instruments.xtraserver.config.api.XtraServerMapping;
 import de.interactive_instruments.xtraserver.config.api.XtraServerMappingBuilder;
-import de.interactive_instruments.xtraserver.config.transformer.XtraServerMappingTransformer;
 import eu.esdihumboldt.hale.common.align.model.Alignment;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.ChildContext;
 import eu.esdihumboldt.hale.common.align.model.Property;
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
 import eu.esdihumboldt.hale.common.core.io.Value;
 import eu.esdihumboldt.hale.common.core.io.project.ProjectInfo;
+import eu.esdihumboldt.hale.common.core.io.report.IOMessage;
 import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.core.io.report.impl.DefaultIOReporter;
+import eu.esdihumboldt.hale.common.core.io.supplier.Locatable;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.Schema;
 import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
@@ -66,20 +77,31 @@ import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
  */
 public final class MappingContext {
 
+  static final String EXPORTER = "XtraServer Mapping";
   static final String PROPERTY_ADV_MODELLART = "ADV_MODELLART";
   static final String PROPERTY_INSPIRE_NAMESPACE = "INSPIRE_NAMESPACE";
+  static final String PROPERTY_PARALLELISM = AlignmentAnalysis.PROPERTY_PARALLELISM;
+  static final String PROPERTY_STREAMING = "XTRASERVER_STREAMING";
+  static final String PROPERTY_TRANSFORMER_STAGES = "XTRASERVER_TRANSFORMER_STAGES";
   static final ImmutableList<QName> EMPTY_PATH = ImmutableList.of(new QName("__EMPTY__"));
 
   private final Alignment alignment;
   private final Map<String, Value> transformationProperties;
-  private static final Pattern projectVarPattern = Pattern.compile("\\{\\{project:([^}]+)\\}\\}");
 
   private final Map<String, FeatureTypeMappingBuilder> featureTypeMappings = new LinkedHashMap<>();
   private FeatureTypeMappingBuilder currentFeatureTypeMapping;
   private String currentFeatureTypeMappingName;
-  private final Map<String, MappingTableBuilder> currentMappingTables = new LinkedHashMap<>();
+  private final Map<String, MappingTableState> currentMappingTables = new LinkedHashMap<>();
   private final Set<String> missingAssociationTargets = new TreeSet<String>();
   private final URI applicationSchemaUri;
+  private final TargetSchemaIndex targetSchemaIndex;
+  private final AlignmentIndex alignmentIndex;
+  private final TransformationHintIndex transformationHintIndex;
+  private final ProjectVariableTemplates projectVariableTemplates;
+  private final LookupTableCache lookupTableCache;
+  private final MappingTransformerPipeline transformerPipeline;
+  private final int parallelism;
+  private ProgressIndicator progress;
   private final ProjectInfo projectInfo;
   private final URI projectLocation;
   private final IOReporter reporter;
@@ -101,6 +123,35 @@ public final class MappingContext {
       final ProjectInfo projectInfo,
       final URI projectLocation,
       final IOReporter reporter) {
+    this(
+        alignment,
+        schemaspace,
+        transformationProperties,
+        projectInfo,
+        projectLocation,
+        reporter,
+        new AlignmentAnalysis(alignment, schemaspace, transformationProperties, reporter));
+  }
+
+  /**
+   * Constructor that uses an existing analysis of the alignment. Only the first schema is used
+   *
+   * @param alignment the Alignment with all cells
+   * @param schemaspace the target schema
+   * @param transformationProperties Properties used in transformations
+   * @param projectInfo project info
+   * @param projectLocation project file
+   * @param reporter reporter
+   * @param analysis the analysis of the alignment, may be shared with other exports
+   */
+  public MappingContext(
+      final Alignment alignment,
+      final SchemaSpace schemaspace,
+      final Map<String, Value> transformationProperties,
+      final ProjectInfo projectInfo,
+      final URI projectLocation,
+      final IOReporter reporter,
+      final AlignmentAnalysis analysis) {
     this.alignment = Objects.requireNonNull(alignment);
     this.transformationProperties = Objects.requireNonNull(transformationProperties);
 
@@ -111,9 +162,118 @@ public final class MappingContext {
     }
     final Schema schema = it.next();
     this.applicationSchemaUri = schema.getLocation();
+    this.targetSchemaIndex = analysis.getTargetSchemaIndex();
     this.projectInfo = projectInfo;
     this.projectLocation = projectLocation;
     this.reporter = reporter;
+    this.alignmentIndex = analysis.getAlignmentIndex();
+    this.transformationHintIndex = analysis.getTransformationHintIndex();
+    this.projectVariableTemplates = analysis.getProjectVariableTemplates();
+    this.lookupTableCache = analysis.getLookupTableCache();
+    this.parallelism = analysis.getParallelism();
+    this.transformerPipeline =
+        MappingTransformerPipeline.create(
+            getTransformationProperty(PROPERTY_TRANSFORMER_STAGES), reporter);
+  }
+
+  private MappingContext(final MappingContext parent, final IOReporter reporter) {
+    this.alignment = parent.alignment;
+    this.transformationProperties = parent.transformationProperties;
+    this.applicationSchemaUri = parent.applicationSchemaUri;
+    this.targetSchemaIndex = parent.targetSchemaIndex;
+    this.alignmentIndex = parent.alignmentIndex;
+    this.transformationHintIndex = parent.transformationHintIndex;
+    this.projectVariableTemplates = parent.projectVariableTemplates;
+    this.lookupTableCache = parent.lookupTableCache;
+    this.transformerPipeline = parent.transformerPipeline;
+    this.parallelism = parent.parallelism;
+    this.progress = parent.progress;
+    this.projectInfo = parent.projectInfo;
+    this.projectLocation = parent.projectLocation;
+    this.reporter = reporter;
+  }
+
+  /**
+   * Create an empty context for the isolated processing of the type cells of one feature type,
+   * e.g. in a worker thread. The new context shares the alignment, the project properties and
+   * the schema with this context, but collects its messages in a separate reporter. Its
+   * FeatureTypeMappings are added to this context with {@link
+   * #mergeFeatureTypeContext(MappingContext)}.
+   *
+   * @return new mapping context
+   */
+  public MappingContext createFeatureTypeContext() {
+    return new MappingContext(
+        this,
+        new FeatureTypeReporter(
+            reporter.getTarget(), reporter.getTaskName(), reporter.getTaskType()));
+  }
+
+  /**
+   * Add the FeatureTypeMappings, the missing association targets and the messages of a context
+   * that was created with {@link #createFeatureTypeContext()}. Feature types that are already
+   * known to this context are replaced, so the feature type contexts have to be disjoint and
+   * merged in alignment order to get the same result as a sequential run.
+   *
+   * @param featureTypeContext the feature type context
+   */
+  public void mergeFeatureTypeContext(final MappingContext featureTypeContext) {
+    buildAndClearCurrentTables();
+    featureTypeContext.buildAndClearCurrentTables();
+
+    this.featureTypeMappings.putAll(featureTypeContext.featureTypeMappings);
+    mergeFeatureTypeReport(featureTypeContext);
+    // the current mapping belongs to the merged context, the next type cell starts a new one
+    this.currentFeatureTypeMapping = null;
+    this.currentFeatureTypeMappingName = null;
+  }
+
+  /**
+   * Add only the missing association targets and the messages of a context that was created with
+   * {@link #createFeatureTypeContext()}, e.g. after its mapping was written to the output.
+   *
+   * @param featureTypeContext the feature type context
+   */
+  public void mergeFeatureTypeReport(final MappingContext featureTypeContext) {
+    this.missingAssociationTargets.addAll(featureTypeContext.missingAssociationTargets);
+
+    ((FeatureTypeReporter) featureTypeContext.reporter).replay(reporter);
+  }
+
+  /**
+   * Returns the number of threads that are used to generate the FeatureTypeMappings, as set with
+   * the project variable {@value #PROPERTY_PARALLELISM}. The value is either a number or 'auto'
+   * for the number of available processors. Without the variable the mapping is generated
+   * sequentially.
+   *
+   * @return the number of threads, 1 for sequential generation
+   * @see AlignmentAnalysis#getParallelism()
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns true if the project variable {@value #PROPERTY_STREAMING} is set to 'true'. In this
+   * case the mapping is written feature type by feature type, instead of building the complete
+   * mapping in memory.
+   *
+   * @return true if the mapping shall be written in streaming mode
+   */
+  public boolean isStreamingOutput() {
+    final Value value = getTransformationProperty(PROPERTY_STREAMING);
+    return !value.isEmpty() && Boolean.parseBoolean(value.as(String.class).trim());
+  }
+
+  /**
+   * Returns the selected transformer stages that need the FeatureTypeMappings of all feature
+   * types. The feature type by feature type export of {@value #PROPERTY_STREAMING} and the
+   * incremental export would change the mapping if any of them is selected.
+   *
+   * @return the names of the stages, empty if the mapping can be transformed per feature type
+   */
+  public List<String> getCrossFeatureTypeStages() {
+    return transformerPipeline.getCrossFeatureTypeStages();
   }
 
   /**
@@ -139,11 +299,13 @@ public final class MappingContext {
   }
 
   void addCurrentMappingTable(final String tableName, final MappingTableBuilder mappingTable) {
-    this.currentMappingTables.put(tableName, mappingTable);
+    this.currentMappingTables.put(tableName, new MappingTableState(mappingTable));
   }
 
   Collection<MappingTableBuilder> getCurrentMappingTables() {
-    return this.currentMappingTables.values();
+    return this.currentMappingTables.values().stream()
+        .map(MappingTableState::getBuilder)
+        .collect(Collectors.toList());
   }
 
   void buildAndClearCurrentTables() {
@@ -155,34 +317,29 @@ public final class MappingContext {
     this.currentMappingTables
         .values()
         .forEach(
-            tableBuilder -> {
-              if (tableBuilder
-                  .buildDraft()
-                  .getQualifiedTargetPath()
-                  .equals(EMPTY_PATH)) {
-                tableBuilder.qualifiedTargetPath(ImmutableList.of());
+            tableState -> {
+              if (tableState.getTargetPath().equals(EMPTY_PATH)) {
+                tableState.targetPath(ImmutableList.of());
               }
             });
 
     // connect joining tables
     Lists.reverse(Lists.newArrayList(this.currentMappingTables.values())).stream()
-        .filter(isJoinTable())
-        .map(MappingTableBuilder::build)
+        .filter(MappingTableState::isJoinTable)
         .forEach(
-            table -> {
-              if (this.currentMappingTables.containsKey(
-                  table.getJoinPaths().iterator().next().getSourceTable())) {
-                this.currentMappingTables
-                    .get(table.getJoinPaths().iterator().next().getSourceTable())
-                    .joiningTable(table);
+            tableState -> {
+              final MappingTableState sourceTable =
+                  this.currentMappingTables.get(tableState.getJoinSourceTable());
+              if (sourceTable != null) {
+                sourceTable.getBuilder().joiningTable(tableState.getBuilder().build());
               }
             });
 
     final Optional<MappingTable> primaryTable =
         this.currentMappingTables.values().stream()
-            .map(MappingTableBuilder::build)
-            .filter(table -> table.isPrimary())
-            .findFirst();
+            .filter(MappingTableState::isPrimary)
+            .findFirst()
+            .map(tableState -> tableState.getBuilder().build());
 
     if (primaryTable.isPresent()) {
       this.currentFeatureTypeMapping.primaryTable(primaryTable.get());
@@ -191,67 +348,53 @@ public final class MappingContext {
     this.currentMappingTables.clear();
   }
 
-  private Predicate<MappingTableBuilder> isValidJoinTable() {
-    return tableBuilder ->
-        tableBuilder.buildDraft().isJoined()
-            && tableBuilder.buildDraft().getAllValuesStream().findFirst().isPresent()
-            && tableBuilder
-                .buildDraft()
-                .getAllValuesStream()
-                .allMatch(
-                    value ->
-                        value
-                            .getQualifiedTargetPath()
-                            .get(0)
-                            .equals(tableBuilder.buildDraft().getQualifiedTargetPath().get(0)));
-  }
-
-  private Predicate<MappingTableBuilder> isInvalidJoinTableWithoutTarget() {
-    return tableBuilder ->
-        !tableBuilder.buildDraft().getJoinPaths().isEmpty()
-            && tableBuilder.buildDraft().getAllValuesStream().findFirst().isPresent()
-            && (tableBuilder.buildDraft().getQualifiedTargetPath().isEmpty()
-                || tableBuilder
-                    .buildDraft()
-                    .getAllValuesStream()
-                    .anyMatch(
-                        value ->
-                            !value
-                                .getQualifiedTargetPath()
-                                .get(0)
-                                .equals(
-                                    tableBuilder.buildDraft().getQualifiedTargetPath().get(0))));
-  }
-
-  private Predicate<MappingTableBuilder> isJoinTable() {
-    return tableBuilder ->
-        (tableBuilder.buildDraft().isJoined()
-                && tableBuilder.buildDraft().getAllValuesStream().findFirst().isPresent()
-                && tableBuilder
-                    .buildDraft()
-                    .getAllValuesStream()
-                    .allMatch(
-                        value ->
-                            value
-                                .getQualifiedTargetPath()
-                                .get(0)
-                                .equals(tableBuilder.buildDraft().getQualifiedTargetPath().get(0))))
-            || (!tableBuilder.buildDraft().getJoinPaths().isEmpty()
-                && tableBuilder.buildDraft().getAllValuesStream().findFirst().isPresent()
-                && (tableBuilder.buildDraft().getQualifiedTargetPath().isEmpty()
-                    || tableBuilder
-                        .buildDraft()
-                        .getAllValuesStream()
-                        .anyMatch(
-                            value ->
-                                !value
-                                    .getQualifiedTargetPath()
-                                    .get(0)
-                                    .equals(
-                                        tableBuilder
-                                            .buildDraft()
-                                            .getQualifiedTargetPath()
-                                            .get(0)))));
+  /**
+   * Set the progress indicator that is used to report the transformer stages and to check for
+   * cancellation in {@link #getMapping()}. Contexts created with {@link
+   * #createFeatureTypeContext()} afterwards use the same progress indicator.
+   *
+   * @param progress the progress indicator, may be null
+   */
+  public void setProgressIndicator(final ProgressIndicator progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Returns the cached metadata of the target schema, which is shared by all contexts of an
+   * export.
+   *
+   * @return target schema index
+   */
+  public TargetSchemaIndex getTargetSchemaIndex() {
+    return targetSchemaIndex;
+  }
+
+  /**
+   * Returns the grouped and sorted cells of the alignment, which are shared by all contexts of an
+   * export.
+   *
+   * @return alignment index
+   */
+  public AlignmentIndex getAlignmentIndex() {
+    return alignmentIndex;
+  }
+
+  /**
+   * Returns the resolved lookup tables of the classification mappings, which are shared by all
+   * contexts of an export.
+   *
+   * @return lookup table cache
+   */
+  public LookupTableCache getLookupTableCache() {
+    return lookupTableCache;
+  }
+
+  /**
+   * @param cell the cell
+   * @return the transformation hints from the documentation of the cell
+   */
+  public CellHints getTransformationHints(final Cell cell) {
+    return this.transformationHintIndex.get(cell);
   }
 
   /**
@@ -272,7 +415,12 @@ public final class MappingContext {
     return this.missingAssociationTargets;
   }
 
-  void addMissingAssociationTarget(final String associationTarget) {
+  /**
+   * Add a property path for which no association target could be found in the schema.
+   *
+   * @param associationTarget property path
+   */
+  public void addMissingAssociationTarget(final String associationTarget) {
     this.missingAssociationTargets.add(associationTarget);
   }
 
@@ -291,16 +439,30 @@ public final class MappingContext {
    * @return MappingTable
    */
   Optional<MappingTableBuilder> getTable(String tableName) {
-    return Optional.ofNullable(currentMappingTables.get(tableName));
+    return Optional.ofNullable(currentMappingTables.get(tableName))
+        .map(MappingTableState::getBuilder);
+  }
+
+  /**
+   * Add a join path to a table of the current FeatureTypeMapping, if the table exists
+   *
+   * @param tableName Mapping Table name
+   * @param joinPath the join path
+   */
+  void addJoinPathToTable(final String tableName, final MappingJoin joinPath) {
+    final MappingTableState tableState = currentMappingTables.get(tableName);
+    if (tableState != null) {
+      tableState.joinPath(joinPath);
+    }
   }
 
   void addValueMappingToTable(
       final Property target, final MappingValue value, final String tableName) {
 
-    final MappingTableBuilder tableBuilder =
-        getTable(tableName)
-            .orElseThrow(() -> new IllegalArgumentException("Table " + tableName + " not found"));
-    final MappingTableDraft tableDraft = tableBuilder.buildDraft();
+    final MappingTableState tableState = currentMappingTables.get(tableName);
+    if (tableState == null) {
+      throw new IllegalArgumentException("Table " + tableName + " not found");
+    }
 
     // if joinPaths and no target path and multiple, set target path ->
     // joined table
@@ -308,12 +470,12 @@ public final class MappingContext {
     // merged table
     // ignore merged tables in JaxbWriter, transform to virtual tables in
     // transformer
-    if (!tableDraft.getJoinPaths().isEmpty() && target.getDefinition().getPropertyPath() != null) {
+    if (tableState.hasJoinPaths() && target.getDefinition().getPropertyPath() != null) {
       // Target is set in value mapping, check if the property is multiple
       // and the
       // target must be added to the table
 
-      boolean alreadyHasTargetPath = !tableDraft.getQualifiedTargetPath().isEmpty();
+      boolean alreadyHasTargetPath = !tableState.getTargetPath().isEmpty();
       List<QName> targetPath = new ArrayList<>();
       boolean multiple = false;
       for (final Iterator<ChildContext> it = target.getDefinition().getPropertyPath().iterator();
@@ -325,13 +487,13 @@ public final class MappingContext {
           final Cardinality cardinality = property.getConstraint(Cardinality.class);
           if (cardinality.mayOccurMultipleTimes()) {
 
-            if (!alreadyHasTargetPath && tableDraft.getValues().isEmpty()) {
-              tableBuilder.qualifiedTargetPath(targetPath);
+            if (!alreadyHasTargetPath && !tableState.hasValues()) {
+              tableState.targetPath(targetPath);
             }
             //TODO: transformation hint
-            if (alreadyHasTargetPath && !targetPath.equals(tableDraft.getQualifiedTargetPath())) {
-              tableBuilder.qualifiedTargetPath(EMPTY_PATH);
-              tableBuilder.transformationHint(HINT_MULTI_JOIN, "true");
+            if (alreadyHasTargetPath && !targetPath.equals(tableState.getTargetPath())) {
+              tableState.targetPath(EMPTY_PATH);
+              tableState.getBuilder().transformationHint(HINT_MULTI_JOIN, "true");
             }
             multiple = true;
             break;
@@ -339,26 +501,22 @@ public final class MappingContext {
         }
       }
       if (!multiple && alreadyHasTargetPath) {
-        tableBuilder.qualifiedTargetPath(EMPTY_PATH);
+        tableState.targetPath(EMPTY_PATH);
       }
       // set target path for connection table
       if (multiple && !targetPath.isEmpty()) {
-        String connectionTable = tableDraft.getJoinPaths().iterator().next().getSourceTable();
-        final Optional<MappingTableBuilder> tableBuilder2 = getTable(connectionTable);
-        if (tableBuilder2.isPresent()) {
-          final MappingTableDraft tableDraft2 = tableBuilder2.get().buildDraft();
-          if (tableDraft2.getQualifiedTargetPath().isEmpty()
-              && tableDraft2.getValues().isEmpty()
-              && !tableDraft2.getJoinPaths().isEmpty()) {
-            tableBuilder2.get().qualifiedTargetPath(targetPath);
-          }
+        final MappingTableState connectionTable =
+            currentMappingTables.get(tableState.getJoinSourceTable());
+        if (connectionTable != null
+            && connectionTable.getTargetPath().isEmpty()
+            && !connectionTable.hasValues()
+            && connectionTable.hasJoinPaths()) {
+          connectionTable.targetPath(targetPath);
         }
       }
-    } else if(target.getDefinition().getPropertyPath() == null){
-      boolean br = true;
     }
 
-    tableBuilder.value(value);
+    tableState.value(value);
   }
 
   IOReporter getReporter() {
@@ -369,10 +527,10 @@ public final class MappingContext {
    * Return the property cells for a type cell
    *
    * @param typeCell the type cell
-   * @return the property cells associated with type cell
+   * @return the property cells associated with type cell, sorted by priority
    */
   Collection<? extends Cell> getPropertyCells(final Cell typeCell) {
-    return this.alignment.getPropertyCells(typeCell);
+    return this.alignmentIndex.getPropertyCells(typeCell);
   }
 
   /**
@@ -382,8 +540,46 @@ public final class MappingContext {
    * @return XtraServerMapping containing all FeatureTypeMappings
    */
   public XtraServerMapping getMapping() {
+    final MappingBuildEvent event =
+        FlightRecorder.AVAILABLE ? MappingBuildEvent.start(EXPORTER) : null;
+    XtraServerMapping mapping = null;
+    try {
+      mapping = buildMapping();
+      return mapping;
+    } finally {
+      if (event != null) {
+        event.end(mapping != null ? mapping.getFeatureTypeMappings().size() : 0);
+      }
+    }
+  }
+
+  private XtraServerMapping buildMapping() {
     buildAndClearCurrentTables();
 
+    final XtraServerMappingBuilder xtraServerMappingBuilder = createMappingBuilder();
+
+    featureTypeMappings.values().stream()
+        .map(FeatureTypeMappingBuilder::build)
+        .forEach(xtraServerMappingBuilder::featureTypeMapping);
+
+    return transformerPipeline.transform(
+        xtraServerMappingBuilder.build(), this.applicationSchemaUri, progress);
+  }
+
+  /**
+   * Create a Mapping with the description of the Mappings of this context that only contains the
+   * given FeatureTypeMapping. The transformer stages are not applied.
+   *
+   * @param featureTypeMapping a transformed FeatureTypeMapping
+   * @return XtraServerMapping containing the FeatureTypeMapping
+   */
+  public XtraServerMapping createFeatureTypeMapping(final FeatureTypeMapping featureTypeMapping) {
+    final XtraServerMappingBuilder xtraServerMappingBuilder = createMappingBuilder();
+    xtraServerMappingBuilder.featureTypeMapping(featureTypeMapping);
+    return xtraServerMappingBuilder.build();
+  }
+
+  private XtraServerMappingBuilder createMappingBuilder() {
     final XtraServerMappingBuilder xtraServerMappingBuilder = new XtraServerMappingBuilder();
 
     xtraServerMappingBuilder.description(
@@ -391,26 +587,16 @@ public final class MappingContext {
             "\n  Source:\n    - hale %s\n    - %s\n",
             projectInfo.getHaleVersion(),
             projectLocation != null ? projectLocation : projectInfo.getName()));
+    return xtraServerMappingBuilder;
+  }
 
-    featureTypeMappings.values().stream()
-        .map(FeatureTypeMappingBuilder::build)
-        .forEach(xtraServerMappingBuilder::featureTypeMapping);
-
-    XtraServerMapping fannedOutmapping =
-        XtraServerMappingTransformer.forMapping(xtraServerMappingBuilder.build())
-            .applySchemaInfo(this.applicationSchemaUri)
-            .fanOutInheritance()
-            .ensureRelationNavigability()
-            .fixMultiplicity()
-            .virtualTables()
-            .applyChoicePredicates()
-            .cloneColumns()
-            .joinTypes()
-            .multiJoins()
-            .cleanNilChildren()
-            .transform();
-
-    return fannedOutmapping;
+  /**
+   * Report the accumulated time, allocations and counts of the transformer stages of all
+   * Mappings that were created with {@link #getMapping()} by this context and the contexts that
+   * were created with {@link #createFeatureTypeContext()}.
+   */
+  public void reportTransformerStatistics() {
+    transformerPipeline.report(reporter);
   }
 
   /**
@@ -421,21 +607,104 @@ public final class MappingContext {
    *     'PROJECT_VARIABLE_<VARIABLE_NAME>_NOT_SET'
    */
   public String resolveProjectVars(final String str) {
-    final Matcher m = projectVarPattern.matcher(str);
-    String repStr = str;
-    while (m.find()) {
-      final String varName = m.group(1);
-      final Value val = transformationProperties.get(varName);
-      final String replacement;
-      if (val != null && !val.isEmpty()) {
-        replacement = val.as(String.class);
-      } else {
-        replacement = "PROJECT_VARIABLE_" + varName + "_NOT_SET";
+    return projectVariableTemplates.resolve(str);
+  }
+
+  /**
+   * Return the first value of a transformation parameter of a property cell with replaced project
+   * variables. The value of a {@link CellParentWrapper} is resolved once and shared with the other
+   * export formats.
+   *
+   * @param propertyCell the property cell
+   * @param name the parameter name
+   * @return the resolved value or null if the parameter is not set
+   */
+  public String getResolvedParameter(final Cell propertyCell, final String name) {
+    if (propertyCell instanceof CellParentWrapper) {
+      return ((CellParentWrapper) propertyCell).getResolvedParameter(name, projectVariableTemplates);
+    }
+    return CellParentWrapper.resolveParameter(propertyCell, name, projectVariableTemplates);
+  }
+
+  /**
+   * Return the association target of the target property of a property cell that is found in the
+   * target schema. The association target of a {@link CellParentWrapper} is resolved once and
+   * shared with the other export formats.
+   *
+   * @param propertyCell the property cell
+   * @return association target or empty if the target property is not a reference
+   */
+  public Optional<String> getAssociationTarget(final Cell propertyCell) {
+    if (propertyCell instanceof CellParentWrapper) {
+      return ((CellParentWrapper) propertyCell).getAssociationTarget(targetSchemaIndex);
+    }
+    final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
+    return targetProperty != null
+        ? targetSchemaIndex.getAssociationTarget(targetProperty)
+        : Optional.empty();
+  }
+
+  /**
+   * Collects the messages of a feature type context and remembers the order in which they were
+   * reported, so that they are passed on to the main reporter in the same order as in a sequential
+   * run.
+   */
+  private static final class FeatureTypeReporter extends DefaultIOReporter {
+
+    private enum Level {
+      ERROR,
+      WARN,
+      INFO
+    }
+
+    private final List<Level> levels = new ArrayList<>();
+    private final List<IOMessage> messages = new ArrayList<>();
+
+    FeatureTypeReporter(final Locatable target, final String taskName, final String taskType) {
+      super(target, taskName, taskType, false);
+    }
+
+    @Override
+    public void error(final IOMessage message) {
+      super.error(message);
+      record(Level.ERROR, message);
+    }
+
+    @Override
+    public void warn(final IOMessage message) {
+      super.warn(message);
+      record(Level.WARN, message);
+    }
+
+    @Override
+    public void info(final IOMessage message) {
+      super.info(message);
+      record(Level.INFO, message);
+    }
+
+    private synchronized void record(final Level level, final IOMessage message) {
+      levels.add(level);
+      messages.add(message);
+    }
+
+    /**
+     * Pass the messages on to another reporter, in the order they were reported.
+     *
+     * @param target the reporter
+     */
+    synchronized void replay(final IOReporter target) {
+      for (int i = 0; i < messages.size(); i++) {
+        switch (levels.get(i)) {
+          case ERROR:
+            target.error(messages.get(i));
+            break;
+          case WARN:
+            target.warn(messages.get(i));
+            break;
+          default:
+            target.info(messages.get(i));
+        }
       }
-      repStr =
-          repStr.replaceAll(
-              "\\{\\{project:" + varName + "\\}\\}", Matcher.quoteReplacement(replacement));
     }
-    return repStr;
   }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer.handler;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import com.google.common.collect.ImmutableList;
+
+import de.interactive_instruments.xtraserver.config.api.MappingJoin;
+import de.interactive_instruments.xtraserver.config.api.MappingTableBuilder;
+import de.interactive_instruments.xtraserver.config.api.MappingValue;
+
+/**
+ * Wraps a {@link MappingTableBuilder} of the currently processed FeatureTypeMapping and keeps
+ * track of the table properties that are needed to classify the table as primary, joined or
+ * merged table while values and join paths are added. This avoids building drafts of the table
+ * for every added value.
+ *
+ * <p>All modifications of the target path, the join paths and the values of the table have to be
+ * made through this class.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class MappingTableState {
+
+  private final MappingTableBuilder builder;
+  private List<QName> targetPath = ImmutableList.of();
+  private String joinSourceTable;
+  private int valueCount;
+  // first segments of the target paths of all values, null for an empty target path
+  private final Set<QName> valueTargetRoots = new LinkedHashSet<>();
+
+  MappingTableState(final MappingTableBuilder builder) {
+    this.builder = builder;
+  }
+
+  MappingTableBuilder getBuilder() {
+    return builder;
+  }
+
+  List<QName> getTargetPath() {
+    return targetPath;
+  }
+
+  void targetPath(final List<QName> targetPath) {
+    this.targetPath = ImmutableList.copyOf(targetPath);
+    builder.qualifiedTargetPath(targetPath);
+  }
+
+  void joinPath(final MappingJoin joinPath) {
+    if (this.joinSourceTable == null) {
+      this.joinSourceTable = joinPath.getSourceTable();
+    }
+    builder.joinPath(joinPath);
+  }
+
+  void value(final MappingValue value) {
+    final List<QName> valueTargetPath = value.getQualifiedTargetPath();
+    valueTargetRoots.add(valueTargetPath.isEmpty() ? null : valueTargetPath.get(0));
+    valueCount++;
+    builder.value(value);
+  }
+
+  /**
+   * @return the source table of the first join path, null if the table has no join paths
+   */
+  String getJoinSourceTable() {
+    return joinSourceTable;
+  }
+
+  boolean hasJoinPaths() {
+    return joinSourceTable != null;
+  }
+
+  boolean hasValues() {
+    return valueCount > 0;
+  }
+
+  boolean isPrimary() {
+    return !hasJoinPaths();
+  }
+
+  boolean isJoined() {
+    return hasJoinPaths() && !targetPath.isEmpty();
+  }
+
+  /**
+   * @return true if the table is joined and all values are children of the first target path
+   *     segment of the table
+   */
+  boolean isValidJoinTable() {
+    return isJoined() && hasValues() && valuesShareTargetRoot();
+  }
+
+  /**
+   * @return true if the table has join paths and values, but no target path or values that are
+   *     not children of the first target path segment of the table
+   */
+  boolean isInvalidJoinTableWithoutTarget() {
+    return hasJoinPaths() && hasValues() && (targetPath.isEmpty() || !valuesShareTargetRoot());
+  }
+
+  boolean isJoinTable() {
+    return isValidJoinTable() || isInvalidJoinTableWithoutTarget();
+  }
+
+  private boolean valuesShareTargetRoot() {
+    return valueTargetRoots.size() == 1 && valueTargetRoots.contains(targetPath.get(0));
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer.handler;
+
+import com.google.common.collect.ImmutableList;
+import de.ii.xtraserver.hale.io.CanceledException;
+import de.interactive_instruments.xtraserver.config.api.FeatureTypeMapping;
+import de.interactive_instruments.xtraserver.config.api.MappingTable;
+import de.interactive_instruments.xtraserver.config.api.XtraServerMapping;
+import de.interactive_instruments.xtraserver.config.transformer.XtraServerMappingTransformer;
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs the stages of the {@link XtraServerMappingTransformer} chain one after the other and
+ * records the wall time, the allocated bytes of the current thread and the number of feature
+ * types, tables and values before and after every stage. The statistics are accumulated over all
+ * transformed mappings, e.g. for every feature type in streaming mode, and reported with {@link
+ * #report(IOReporter)}.
+ *
+ * <p>The schema info is applied once per mapping, its cost is reported separately and not included
+ * in the figures of the stages. Every stage then runs on its own transformer for the materialized
+ * result of the previous stage, so each stage is executed exactly once and only its own work is
+ * measured.
+ *
+ * <p>The stages and their order can be selected with the project variable {@value
+ * MappingContext#PROPERTY_TRANSFORMER_STAGES}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class MappingTransformerPipeline {
+
+  /**
+   * The stages of the transformer chain in their default order. Stages that read the
+   * FeatureTypeMappings of other feature types, e.g. of super types or association targets, give
+   * different results if they only see one feature type at a time.
+   */
+  enum Stage {
+    FAN_OUT_INHERITANCE(XtraServerMappingTransformer::fanOutInheritance, true),
+    ENSURE_RELATION_NAVIGABILITY(
+        XtraServerMappingTransformer::ensureRelationNavigability, true),
+    FIX_MULTIPLICITY(XtraServerMappingTransformer::fixMultiplicity, false),
+    VIRTUAL_TABLES(XtraServerMappingTransformer::virtualTables, false),
+    APPLY_CHOICE_PREDICATES(XtraServerMappingTransformer::applyChoicePredicates, false),
+    CLONE_COLUMNS(XtraServerMappingTransformer::cloneColumns, false),
+    JOIN_TYPES(XtraServerMappingTransformer::joinTypes, true),
+    MULTI_JOINS(XtraServerMappingTransformer::multiJoins, true),
+    CLEAN_NIL_CHILDREN(XtraServerMappingTransformer::cleanNilChildren, false);
+
+    private final UnaryOperator<XtraServerMappingTransformer> transformer;
+    private final boolean crossFeatureType;
+
+    Stage(
+        final UnaryOperator<XtraServerMappingTransformer> transformer,
+        final boolean crossFeatureType) {
+      this.transformer = transformer;
+      this.crossFeatureType = crossFeatureType;
+    }
+
+    /**
+     * Find a stage by its name, either as enum constant (FAN_OUT_INHERITANCE) or as name of the
+     * transformer method (fanOutInheritance).
+     */
+    static Stage byName(final String name) {
+      final String normalizedName = normalize(name);
+      for (final Stage stage : values()) {
+        if (normalize(stage.name()).equals(normalizedName)) {
+          return stage;
+        }
+      }
+      return null;
+    }
+
+    /** @return the stage name in the readable form, e.g. "fan out inheritance" */
+    String getLabel() {
+      return name().replace('_', ' ').toLowerCase(Locale.ENGLISH);
+    }
+
+    /** @return the name of the transformer method, e.g. "fanOutInheritance" */
+    String getMethodName() {
+      final StringBuilder name = new StringBuilder();
+      for (final String word : name().toLowerCase(Locale.ENGLISH).split("_")) {
+        name.append(
+            name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+      }
+      return name.toString();
+    }
+
+    private static String normalize(final String name) {
+      return name.replace("_", "").toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+  private final List<Stage> stages;
+  private final Map<Stage, StageStatistics> statistics = new EnumMap<>(Stage.class);
+  private final SchemaInfoStatistics schemaInfoStatistics = new SchemaInfoStatistics();
+
+  private MappingTransformerPipeline(final List<Stage> stages) {
+    this.stages = ImmutableList.copyOf(stages);
+  }
+
+  /**
+   * Create a pipeline from the value of the project variable {@value
+   * MappingContext#PROPERTY_TRANSFORMER_STAGES}, a comma separated list of stage names. Listed
+   * stages are executed in the given order, all others are skipped. Stages prefixed with '-' are
+   * removed from the default order, if no other stages are listed.
+   *
+   * @param value the value of the project variable, may be empty
+   * @param reporter reporter for unknown stage names
+   * @return the pipeline
+   */
+  static MappingTransformerPipeline create(final Value value, final IOReporter reporter) {
+    if (value == null || value.isEmpty()) {
+      return new MappingTransformerPipeline(Arrays.asList(Stage.values()));
+    }
+
+    final Set<Stage> selected = new LinkedHashSet<>();
+    final Set<Stage> disabled = new LinkedHashSet<>();
+    for (final String entry : value.as(String.class).split(",")) {
+      final String name = entry.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      final boolean disable = name.startsWith("-");
+      final Stage stage = Stage.byName(disable ? name.substring(1).trim() : name);
+      if (stage == null) {
+        reporter.warn(
+            "Unknown transformer stage \"{0}\" in project variable {1} is ignored, known stages"
+                + " are {2}",
+            name,
+            MappingContext.PROPERTY_TRANSFORMER_STAGES,
+            Arrays.toString(Stage.values()));
+      } else if (disable) {
+        disabled.add(stage);
+      } else {
+        selected.add(stage);
+      }
+    }
+
+    final List<Stage> stages =
+        new ArrayList<>(selected.isEmpty() ? Arrays.asList(Stage.values()) : selected);
+    stages.removeAll(disabled);
+    if (stages.size() != Stage.values().length || !selected.isEmpty()) {
+      reporter.info(
+          "Transformer stages from project variable {0}: {1}",
+          MappingContext.PROPERTY_TRANSFORMER_STAGES,
+          stages);
+    }
+    return new MappingTransformerPipeline(stages);
+  }
+
+  /**
+   * Apply the schema info and the selected stages to a mapping.
+   *
+   * @param mapping the mapping
+   * @param applicationSchemaUri the target schema
+   * @param progress progress indicator for the current stage, may be null
+   * @return the transformed mapping
+   * @throws CanceledException if the export was canceled before a stage
+   */
+  XtraServerMapping transform(
+      final XtraServerMapping mapping,
+      final URI applicationSchemaUri,
+      final ProgressIndicator progress) {
+    CanceledException.checkCanceled(progress);
+    if (progress != null) {
+      progress.setCurrentTask("Post-processing mapping: applying schema info");
+    }
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    XtraServerMapping result =
+        XtraServerMappingTransformer.forMapping(mapping)
+            .applySchemaInfo(applicationSchemaUri)
+            .transform();
+    schemaInfoStatistics.add(
+        System.nanoTime() - start,
+        ALLOCATION_SUPPORTED ? allocatedBytes() - allocatedBefore : -1);
+
+    Counts before = Counts.of(result);
+    for (final Stage stage : stages) {
+      CanceledException.checkCanceled(progress);
+      if (progress != null) {
+        progress.setCurrentTask("Post-processing mapping: " + stage.getLabel());
+      }
+      allocatedBefore = allocatedBytes();
+      start = System.nanoTime();
+
+      result =
+          stage.transformer.apply(XtraServerMappingTransformer.forMapping(result)).transform();
+
+      final long nanos = System.nanoTime() - start;
+      final long allocated = ALLOCATION_SUPPORTED ? allocatedBytes() - allocatedBefore : -1;
+      final Counts after = Counts.of(result);
+      getStatistics(stage).add(nanos, allocated, before, after);
+      before = after;
+    }
+    return result;
+  }
+
+  /**
+   * @return the selected stages that need the FeatureTypeMappings of all feature types, as names
+   *     of the transformer methods
+   */
+  List<String> getCrossFeatureTypeStages() {
+    final List<String> names = new ArrayList<>();
+    for (final Stage stage : stages) {
+      if (stage.crossFeatureType) {
+        names.add(stage.getMethodName());
+      }
+    }
+    return names;
+  }
+
+  private synchronized StageStatistics getStatistics(final Stage stage) {
+    return statistics.computeIfAbsent(stage, s -> new StageStatistics());
+  }
+
+  /**
+   * Write the accumulated statistics of every stage that was executed as info message.
+   *
+   * @param reporter the reporter
+   */
+  synchronized void report(final IOReporter reporter) {
+    schemaInfoStatistics.report(reporter);
+    for (final Map.Entry<Stage, StageStatistics> entry : statistics.entrySet()) {
+      entry.getValue().report(entry.getKey(), reporter);
+    }
+  }
+
+  private static boolean isAllocationSupported() {
+    try {
+      if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+        final com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+      }
+    } catch (final LinkageError | UnsupportedOperationException e) {
+      // not a HotSpot compatible VM or package not wired in the OSGi container
+    }
+    return false;
+  }
+
+  private static long allocatedBytes() {
+    if (!ALLOCATION_SUPPORTED) {
+      return 0;
+    }
+    return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static final class Counts {
+
+    private final int featureTypes;
+    private final int tables;
+    private final int values;
+
+    private Counts(final int featureTypes, final int tables, final int values) {
+      this.featureTypes = featureTypes;
+      this.tables = tables;
+      this.values = values;
+    }
+
+    static Counts of(final XtraServerMapping mapping) {
+      int featureTypes = 0;
+      final int[] tablesAndValues = new int[2];
+      for (final FeatureTypeMapping featureTypeMapping : mapping.getFeatureTypeMappings()) {
+        featureTypes++;
+        for (final MappingTable table : featureTypeMapping.getPrimaryTables()) {
+          countTable(table, tablesAndValues);
+        }
+      }
+      return new Counts(featureTypes, tablesAndValues[0], tablesAndValues[1]);
+    }
+
+    private static void countTable(final MappingTable table, final int[] tablesAndValues) {
+      tablesAndValues[0]++;
+      tablesAndValues[1] += table.getValues().size();
+      for (final MappingTable joiningTable : table.getJoiningTables()) {
+        countTable(joiningTable, tablesAndValues);
+      }
+    }
+  }
+
+  private static final class SchemaInfoStatistics {
+
+    private int runs;
+    private long nanos;
+    private long allocatedBytes;
+
+    synchronized void add(final long nanos, final long allocatedBytes) {
+      this.runs++;
+      this.nanos += nanos;
+      this.allocatedBytes = allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+    }
+
+    synchronized void report(final IOReporter reporter) {
+      if (runs == 0) {
+        return;
+      }
+      reporter.info(
+          "Transformer schema info: {0} run(s), {1} ms, {2} allocated",
+          String.valueOf(runs),
+          String.valueOf(nanos / 1_000_000),
+          allocatedBytes < 0 ? "n/a" : String.valueOf(allocatedBytes / 1024) + " KiB");
+    }
+  }
+
+  private static final class StageStatistics {
+
+    private int runs;
+    private long nanos;
+    private long allocatedBytes;
+    private long featureTypesBefore;
+    private long featureTypesAfter;
+    private long tablesBefore;
+    private long tablesAfter;
+    private long valuesBefore;
+    private long valuesAfter;
+
+    synchronized void add(
+        final long nanos, final long allocatedBytes, final Counts before, final Counts after) {
+      this.runs++;
+      this.nanos += nanos;
+      this.allocatedBytes = allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+      this.featureTypesBefore += before.featureTypes;
+      this.featureTypesAfter += after.featureTypes;
+      this.tablesBefore += before.tables;
+      this.tablesAfter += after.tables;
+      this.valuesBefore += before.values;
+      this.valuesAfter += after.values;
+    }
+
+    synchronized void report(final Stage stage, final IOReporter reporter) {
+      reporter.info(
+          "Transformer stage {0}: {1} run(s), {2} ms, {3} allocated, feature types {4} -> {5},"
+              + " tables {6} -> {7}, values {8} -> {9}",
+          stage,
+          String.valueOf(runs),
+          String.valueOf(nanos / 1_000_000),
+          allocatedBytes < 0 ? "n/a" : String.valueOf(allocatedBytes / 1024) + " KiB",
+          String.valueOf(featureTypesBefore),
+          String.valueOf(featureTypesAfter),
+          String.valueOf(tablesBefore),
+          String.valueOf(tablesAfter),
+          String.valueOf(valuesBefore),
+          String.valueOf(valuesAfter));
+    }
+  }
+}
@@ -20,12 +20,10 @@ import java.util.Optional;
 
 import javax.xml.namespace.QName;
 
-import com.google.common.collect.ListMultimap;
 
 import de.interactive_instruments.xtraserver.config.api.MappingValue;
 import de.interactive_instruments.xtraserver.config.api.MappingValueBuilder;
 import eu.esdihumboldt.hale.common.align.model.Cell;
-import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.align.model.functions.RenameFunction;
 
@@ -49,15 +47,12 @@ class SqlExpressionHandler extends AbstractPropertyTransformationHandler {
 	public Optional<MappingValue> doHandle(final Cell propertyCell, final Property targetProperty) {
 
 		// Assign expression value from parameters
-		final ListMultimap<String, ParameterValue> parameters = propertyCell
-				.getTransformationParameters();
-		final List<ParameterValue> valueParams = parameters.get(PARAMETER_VALUE);
-		final String value = valueParams.get(0).getStringRepresentation();
+		final String value = mappingContext.getResolvedParameter(propertyCell, PARAMETER_VALUE);
 
 		final List<QName> path = buildPath(targetProperty.getDefinition().getPropertyPath());
 
 		final MappingValue mappingValue = new MappingValueBuilder().expression()
-				.qualifiedTargetPath(path).value(mappingContext.resolveProjectVars(value)).build();
+				.qualifiedTargetPath(path).value(value).build();
 
 		return Optional.of(mappingValue);
 	}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import de.ii.ldproxy.cfg.LdproxyCfgWriter;
+import de.ii.xtraserver.hale.io.CanceledException;
+import eu.esdihumboldt.hale.common.core.io.ProgressIndicator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes the entities and values of the configuration store with ldproxy-cfg, so the location of
+ * every entry is the one of the ldproxy-cfg version in use.
+ *
+ * <p>With more than one thread, every worker thread writes its entries with its own {@link
+ * LdproxyCfgWriter} to a staging store, no writer is used by two threads. The staging stores are
+ * then copied to the store one after the other. Every entry is a file of its own, so the store
+ * does not depend on the order in which the tasks complete.
+ *
+ * <p>Additional files are placed next to the provider entity. Its location is the file that
+ * ldproxy-cfg creates when the provider entity is written.
+ */
+final class ConfigurationStoreSerializer {
+
+  /** Writes an entity or a value to the store. */
+  @FunctionalInterface
+  interface EntryWriter {
+
+    void write(LdproxyCfgWriter ldproxyCfg) throws IOException;
+  }
+
+  /** Writes an additional file. */
+  @FunctionalInterface
+  interface FileSerializer {
+
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private final LdproxyCfgWriter ldproxyCfg;
+  private final Path dataDir;
+  private final EntryWriter provider;
+  private final List<EntryWriter> entries = new ArrayList<>();
+  private final Map<String, FileSerializer> providerFiles = new LinkedHashMap<>();
+
+  /**
+   * @param ldproxyCfg the writer of the configuration store
+   * @param dataDir the root directory of the configuration store
+   * @param provider writes the provider entity
+   */
+  ConfigurationStoreSerializer(
+      final LdproxyCfgWriter ldproxyCfg, final Path dataDir, final EntryWriter provider) {
+    this.ldproxyCfg = ldproxyCfg;
+    this.dataDir = dataDir;
+    this.provider = provider;
+  }
+
+  /**
+   * Add an entity or a value of the store.
+   *
+   * @param writer writes the entry with the given ldproxy-cfg writer
+   */
+  void add(final EntryWriter writer) {
+    entries.add(writer);
+  }
+
+  /**
+   * Add a file next to the provider entity.
+   *
+   * @param fileName the file name
+   * @param serializer writes the file
+   */
+  void addProviderFile(final String fileName, final FileSerializer serializer) {
+    if (providerFiles.putIfAbsent(fileName, serializer) != null) {
+      throw new IllegalArgumentException("Duplicate configuration store entry: " + fileName);
+    }
+  }
+
+  /**
+   * Write all entries to the store.
+   *
+   * @param parallelism the maximum number of entries that are written at the same time
+   * @param progress the progress indicator, checked for cancellation between entries
+   * @throws IOException if an entry cannot be written
+   * @throws IllegalStateException if two entries have the same location or the file of the
+   *     provider entity cannot be determined
+   * @throws CanceledException if the export was canceled
+   */
+  void write(final int parallelism, final ProgressIndicator progress) throws IOException {
+    final int threads = Math.min(parallelism, entries.size() + 1);
+    final Path providerFile;
+    if (threads <= 1) {
+      providerFile = getProviderFile(writeEntry(ldproxyCfg, dataDir, provider));
+      for (final EntryWriter entry : entries) {
+        CanceledException.checkCanceled(progress);
+        entry.write(ldproxyCfg);
+      }
+    } else {
+      providerFile = writeStaged(threads, progress);
+    }
+
+    for (final Map.Entry<String, FileSerializer> file : providerFiles.entrySet()) {
+      try (OutputStream out =
+          Files.newOutputStream(providerFile.resolveSibling(file.getKey()))) {
+        file.getValue().writeTo(out);
+      }
+    }
+  }
+
+  private Path writeStaged(final int threads, final ProgressIndicator progress)
+      throws IOException {
+    final Path stagingRoot =
+        Files.createTempDirectory(dataDir.toAbsolutePath().getParent(), "staging");
+    final AtomicInteger stagingStores = new AtomicInteger();
+    final List<StagingStore> workerStores = Collections.synchronizedList(new ArrayList<>());
+    final ThreadLocal<StagingStore> workerStore =
+        ThreadLocal.withInitial(
+            () -> {
+              try {
+                final StagingStore store =
+                    StagingStore.create(
+                        stagingRoot.resolve("" + stagingStores.incrementAndGet()));
+                workerStores.add(store);
+                return store;
+              } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              final Thread thread = new Thread(runnable, "config-serializer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      // the provider gets a store of its own, so its file is the only new one
+      final StagingStore providerStore =
+          StagingStore.create(stagingRoot.resolve("" + stagingStores.incrementAndGet()));
+      final Future<Set<Path>> providerResult =
+          executor.submit(() -> writeEntry(providerStore.writer, providerStore.dir, provider));
+      final List<Future<?>> results = new ArrayList<>(entries.size());
+      for (final EntryWriter entry : entries) {
+        results.add(
+            executor.submit(
+                () -> {
+                  final StagingStore store = workerStore.get();
+                  entry.write(store.writer);
+                  return null;
+                }));
+      }
+      final Set<Path> providerEntries = getResult(providerResult);
+      for (final Future<?> result : results) {
+        CanceledException.checkCanceled(progress);
+        getResult(result);
+      }
+      executor.shutdown();
+
+      final Set<Path> copied = new HashSet<>();
+      providerStore.copyTo(dataDir, copied);
+      final List<StagingStore> stores = new ArrayList<>(workerStores);
+      for (final StagingStore store : stores) {
+        CanceledException.checkCanceled(progress);
+        store.copyTo(dataDir, copied);
+      }
+      return dataDir.resolve(
+          providerStore.dir.relativize(getProviderFile(providerEntries)).toString());
+    } finally {
+      executor.shutdownNow();
+      deleteRecursively(stagingRoot);
+    }
+  }
+
+  /** @return the files that were created by the entry */
+  private static Set<Path> writeEntry(
+      final LdproxyCfgWriter writer, final Path dir, final EntryWriter entry) throws IOException {
+    final Set<Path> before = listFiles(dir);
+    entry.write(writer);
+    final Set<Path> created = listFiles(dir);
+    created.removeAll(before);
+    return created;
+  }
+
+  private static Path getProviderFile(final Set<Path> created) {
+    final List<Path> entities =
+        created.stream()
+            .filter(file -> file.getFileName().toString().endsWith(".yml"))
+            .collect(Collectors.toList());
+    if (entities.size() != 1) {
+      throw new IllegalStateException(
+          "The file of the provider entity cannot be determined, ldproxy-cfg created " + created);
+    }
+    return entities.get(0);
+  }
+
+  private static Set<Path> listFiles(final Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      return paths.filter(Files::isRegularFile).collect(Collectors.toCollection(HashSet::new));
+    }
+  }
+
+  private static void deleteRecursively(final Path dir) throws IOException {
+    final List<Path> paths;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      paths = walk.sorted(Collections.reverseOrder()).collect(Collectors.toList());
+    }
+    for (final Path path : paths) {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  private static <T> T getResult(final Future<T> result) throws IOException {
+    try {
+      return result.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Serialization of the configuration was interrupted", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /** A store with its own writer that is only used by one thread. */
+  private static final class StagingStore {
+
+    private final Path dir;
+    private final LdproxyCfgWriter writer;
+    // files that the writer creates on its own, they are already in the store
+    private final Set<Path> initialFiles;
+
+    private StagingStore(final Path dir, final LdproxyCfgWriter writer) throws IOException {
+      this.dir = dir;
+      this.writer = writer;
+      this.initialFiles = listFiles(dir);
+    }
+
+    static StagingStore create(final Path dir) throws IOException {
+      return new StagingStore(dir, LdproxyCfgWriter.create(Files.createDirectories(dir)));
+    }
+
+    void copyTo(final Path target, final Set<Path> copied) throws IOException {
+      final List<Path> files = new ArrayList<>(listFiles(dir));
+      files.removeAll(initialFiles);
+      Collections.sort(files);
+      for (final Path file : files) {
+        final Path relativePath = dir.relativize(file);
+        if (!copied.add(relativePath)) {
+          throw new IllegalStateException(
+              "Duplicate configuration store entry: " + relativePath);
+        }
+        final Path targetFile = target.resolve(relativePath.toString());
+        Files.createDirectories(targetFile.getParent());
+        Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import eu.esdihumboldt.hale.common.schema.model.Definition;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the INSPIRE documentation facets of schema definitions. The description of every
+ * definition is parsed once on first access with {@link XtraServerWebApiUtil#parseDescription},
+ * the facets that are used for labels and descriptions are kept per definition for the export.
+ */
+public final class DocumentationFacets {
+
+  private static final Facets NONE = new Facets(null, null);
+
+  private final Map<Definition<?>, Facets> facets = new ConcurrentHashMap<>();
+
+  /**
+   * @param definition a type or property definition
+   * @return the documentation facets from the description of the definition
+   */
+  public Facets get(final Definition<?> definition) {
+    return facets.computeIfAbsent(definition, DocumentationFacets::parse);
+  }
+
+  private static Facets parse(final Definition<?> definition) {
+    final Map<String, String> parsed =
+        XtraServerWebApiUtil.parseDescription(definition.getDescription());
+    if (parsed.isEmpty()) {
+      return NONE;
+    }
+    return new Facets(parsed.get("name"), parsed.get("definition"));
+  }
+
+  /** The facets of a single definition. */
+  public static final class Facets {
+
+    private final String name;
+    private final String definition;
+
+    private Facets(final String name, final String definition) {
+      this.name = name;
+      this.definition = definition;
+    }
+
+    /**
+     * @return the 'name' facet
+     */
+    public Optional<String> getName() {
+      return Optional.ofNullable(name);
+    }
+
+    /**
+     * @return the 'definition' facet
+     */
+    public Optional<String> getDefinition() {
+      return Optional.ofNullable(definition);
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import de.ii.xtraplatform.features.domain.FeatureProviderDataV2;
+import de.ii.xtraplatform.features.domain.FeatureSchema;
+import de.ii.xtraplatform.features.domain.SchemaBase.Type;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.Entity;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import eu.esdihumboldt.hale.common.schema.model.constraint.property.Unique;
+import eu.esdihumboldt.hale.common.schema.model.constraint.type.PrimaryKey;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+import org.geotools.data.DataUtilities;
+import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.filter.text.ecql.ECQL;
+
+/**
+ * Suggests indexes of the source database for the queries of a feature provider. The columns are
+ * taken from the source paths of the provider: the columns of every join, the sort key and the
+ * filter attributes of the main tables, and the geometry columns. Columns that are primary keys or
+ * unique according to the constraints of the source schema, as read by the hale JDBC schema
+ * reader, are skipped, since PostgreSQL already has an index for them.
+ *
+ * <p>The suggestions are written as a PostgreSQL script with a <code>CREATE INDEX IF NOT
+ * EXISTS</code> statement per index, each preceded by comments with the reasons for the index. The
+ * index is named <code>idx_table_column</code>. If that name is truncated to the identifier length
+ * limit or is the same for several indexes, e.g. for tables that only differ in case, a hash of
+ * table, column and method is appended, so no statement is skipped because of a name collision.
+ */
+final class IndexAdvisor {
+
+  /** Project variable that enables the index script. */
+  static final String PROPERTY_INDEXES = "XTRASERVER_WEBAPI_INDEXES";
+
+  private static final Pattern MAIN_TABLE = Pattern.compile("^/(\\w+)((?:\\{.*})?)$");
+  private static final Pattern FLAG = Pattern.compile("\\{(\\w+)=(.*?)}(?=\\{\\w+=|$)");
+  private static final Pattern JOIN = Pattern.compile("^\\[(\\w+)=(\\w+)](\\w+)(?:\\{[^}]*})*/?");
+  private static final Pattern COLUMN = Pattern.compile("^\\w+$");
+  private static final Pattern PLAIN_IDENTIFIER = Pattern.compile("^[a-z_][a-z0-9_$]*$");
+  private static final int MAX_IDENTIFIER_LENGTH = 63;
+  // "_" and eight hex digits
+  private static final int HASH_SUFFIX_LENGTH = 9;
+
+  private final Map<String, TypeDefinition> sourceTables;
+  // sorted by table, column and method for a stable script
+  private final Map<String, Index> indexes = new TreeMap<>();
+  private final Set<String> skipped = new HashSet<>();
+
+  /**
+   * @param sourceTables the source types by table name, used to skip key columns
+   */
+  IndexAdvisor(final Map<String, TypeDefinition> sourceTables) {
+    this.sourceTables = sourceTables;
+  }
+
+  /**
+   * @param projectProperties project transformation properties
+   * @return true if the index script is enabled with the project variable {@value
+   *     #PROPERTY_INDEXES}
+   */
+  static boolean isEnabled(final Map<String, Value> projectProperties) {
+    final Value value = projectProperties.get(PROPERTY_INDEXES);
+    return value != null
+        && !value.isEmpty()
+        && Boolean.parseBoolean(value.as(String.class).trim());
+  }
+
+  /**
+   * Collect the source types of the type cells of an alignment.
+   *
+   * @param typeCells the type cells
+   * @return the source types by table name, the first type wins for equal table names
+   */
+  static Map<String, TypeDefinition> getSourceTables(final Collection<List<Cell>> typeCells) {
+    final Map<String, TypeDefinition> tables = new HashMap<>();
+    for (final List<Cell> cells : typeCells) {
+      for (final Cell cell : cells) {
+        if (cell.getSource() == null) {
+          continue;
+        }
+        for (final Entity entity : cell.getSource().values()) {
+          final TypeDefinition type = entity.getDefinition().getType();
+          tables.putIfAbsent(type.getName().getLocalPart(), type);
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * Collect the index candidates of all feature types of a provider.
+   *
+   * @param providerData the provider
+   */
+  void addProvider(final FeatureProviderDataV2 providerData) {
+    for (final FeatureSchema type : providerData.getTypes().values()) {
+      addSchema(type, type.getName(), null);
+    }
+  }
+
+  private void addSchema(final FeatureSchema schema, final String featureType, String table) {
+    for (final String sourcePath : getSourcePaths(schema)) {
+      final Matcher mainTable = MAIN_TABLE.matcher(sourcePath);
+      if (mainTable.matches()) {
+        table = mainTable.group(1);
+        addFlags(featureType, table, mainTable.group(2));
+      } else if (table != null) {
+        addPath(featureType, table, sourcePath, schema.getType() == Type.GEOMETRY);
+      }
+    }
+
+    // the properties of an object are relative to the last table of its source path
+    final String objectTable =
+        schema.getSourcePath().isPresent() && table != null
+            ? lastTable(table, schema.getSourcePath().get())
+            : table;
+    for (final FeatureSchema property : schema.getProperties()) {
+      addSchema(property, featureType, objectTable);
+    }
+    for (final FeatureSchema member : schema.getConcat()) {
+      addSchema(member, featureType, objectTable);
+    }
+    for (final FeatureSchema member : schema.getCoalesce()) {
+      addSchema(member, featureType, objectTable);
+    }
+  }
+
+  private static List<String> getSourcePaths(final FeatureSchema schema) {
+    if (schema.getSourcePath().isPresent()) {
+      final List<String> sourcePaths = new ArrayList<>(schema.getSourcePaths());
+      if (!sourcePaths.contains(schema.getSourcePath().get())) {
+        sourcePaths.add(schema.getSourcePath().get());
+      }
+      return sourcePaths;
+    }
+    return schema.getSourcePaths();
+  }
+
+  private void addFlags(final String featureType, final String table, final String flags) {
+    final Matcher flag = FLAG.matcher(flags);
+    while (flag.find()) {
+      if ("sortKey".equals(flag.group(1))) {
+        add(table, flag.group(2), false, "sort key of feature type " + featureType);
+      } else if ("filter".equals(flag.group(1))) {
+        for (final String attribute : getFilterAttributes(flag.group(2))) {
+          add(table, attribute, false, "filter of feature type " + featureType);
+        }
+      }
+    }
+  }
+
+  private static Set<String> getFilterAttributes(final String cql) {
+    try {
+      final Set<String> attributes = new LinkedHashSet<>();
+      for (final String name : DataUtilities.attributeNames(ECQL.toFilter(cql))) {
+        if (COLUMN.matcher(name).matches()) {
+          attributes.add(name);
+        }
+      }
+      return attributes;
+    } catch (final CQLException e) {
+      return Set.of();
+    }
+  }
+
+  private void addPath(
+      final String featureType,
+      final String startTable,
+      final String sourcePath,
+      final boolean geometry) {
+    String table = startTable;
+    String rest = sourcePath;
+    Matcher join = JOIN.matcher(rest);
+    while (join.find()) {
+      final String joinTable = join.group(3);
+      final String reason =
+          "join " + table + "." + join.group(1) + " = " + joinTable + "." + join.group(2)
+              + " of feature type " + featureType;
+      add(table, join.group(1), false, reason);
+      add(joinTable, join.group(2), false, reason);
+      table = joinTable;
+      rest = rest.substring(join.end());
+      join = JOIN.matcher(rest);
+    }
+    if (geometry && COLUMN.matcher(rest).matches()) {
+      add(table, rest, true, "geometry of feature type " + featureType);
+    }
+  }
+
+  private static String lastTable(final String startTable, final String sourcePath) {
+    String table = startTable;
+    String rest = sourcePath;
+    Matcher join = JOIN.matcher(rest);
+    while (join.find()) {
+      table = join.group(3);
+      rest = rest.substring(join.end());
+      join = JOIN.matcher(rest);
+    }
+    return table;
+  }
+
+  private void add(
+      final String table, final String column, final boolean spatial, final String reason) {
+    final String key = table + "\u0000" + column + "\u0000" + spatial;
+    final Index index = indexes.get(key);
+    if (index != null) {
+      index.reasons.add(reason);
+      return;
+    }
+    if (!spatial && (skipped.contains(table + "\u0000" + column) || isKey(table, column))) {
+      skipped.add(table + "\u0000" + column);
+      return;
+    }
+    final Index created = new Index(table, column, spatial);
+    created.reasons.add(reason);
+    indexes.put(key, created);
+  }
+
+  /** @return true if the column is the primary key or unique in the source schema */
+  private boolean isKey(final String table, final String column) {
+    final TypeDefinition type = sourceTables.get(table);
+    if (type == null) {
+      return false;
+    }
+    final PrimaryKey primaryKey = type.getConstraint(PrimaryKey.class);
+    if (primaryKey != null
+        && primaryKey.getPrimaryKeyPath() != null
+        && primaryKey.getPrimaryKeyPath().size() == 1
+        && column.equals(primaryKey.getPrimaryKeyPath().get(0).getLocalPart())) {
+      return true;
+    }
+    for (final ChildDefinition<?> child : type.getChildren()) {
+      final QName name = child.getName();
+      if (column.equals(name.getLocalPart()) && child.asProperty() != null) {
+        return child.asProperty().getConstraint(Unique.class).isEnabled();
+      }
+    }
+    return false;
+  }
+
+  /** @return the number of suggested indexes */
+  int size() {
+    return indexes.size();
+  }
+
+  /** @return the number of distinct columns that were skipped as key columns */
+  int getSkipped() {
+    return skipped.size();
+  }
+
+  /**
+   * Write the index script.
+   *
+   * @param providerId the provider id
+   * @param out the target stream
+   * @throws IOException if writing fails
+   */
+  void write(final String providerId, final OutputStream out) throws IOException {
+    final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    writer.write("-- Suggested indexes for the queries of the feature provider " + providerId);
+    writer.write("\n-- Primary key and unique columns of the source schema are omitted.\n");
+    final Map<String, Integer> nameCounts = new HashMap<>();
+    for (final Index index : indexes.values()) {
+      nameCounts.merge(index.getPlainName(), 1, Integer::sum);
+    }
+    for (final Index index : indexes.values()) {
+      writer.write('\n');
+      for (final String reason : index.reasons) {
+        writer.write("-- " + reason + "\n");
+      }
+      writer.write(index.toSql(nameCounts.get(index.getPlainName()) > 1));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  private static String quote(final String identifier) {
+    return PLAIN_IDENTIFIER.matcher(identifier).matches()
+        ? identifier
+        : "\"" + identifier.replace("\"", "\"\"") + "\"";
+  }
+
+  private static final class Index {
+
+    private final String table;
+    private final String column;
+    private final boolean spatial;
+    private final Set<String> reasons = new LinkedHashSet<>();
+
+    private Index(final String table, final String column, final boolean spatial) {
+      this.table = table;
+      this.column = column;
+      this.spatial = spatial;
+    }
+
+    /** @return the readable name of the index, not necessarily unique */
+    String getPlainName() {
+      return ("idx_" + table + "_" + column + (spatial ? "_gist" : "")).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @param ambiguous true if other indexes have the same plain name
+     * @return the statement that creates the index
+     */
+    String toSql(final boolean ambiguous) {
+      String name = getPlainName();
+      if (ambiguous || name.length() > MAX_IDENTIFIER_LENGTH) {
+        final String hash =
+            String.format(
+                "_%08x", (table + "\u0000" + column + "\u0000" + spatial).hashCode());
+        name =
+            name.substring(0, Math.min(name.length(), MAX_IDENTIFIER_LENGTH - HASH_SUFFIX_LENGTH))
+                + hash;
+      }
+      return "CREATE INDEX IF NOT EXISTS "
+          + quote(name)
+          + " ON "
+          + quote(table)
+          + (spatial ? " USING gist (" : " (")
+          + quote(column)
+          + ");";
+    }
+  }
+}
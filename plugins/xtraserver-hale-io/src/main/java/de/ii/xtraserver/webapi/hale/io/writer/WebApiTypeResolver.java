@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import de.ii.xtraplatform.features.domain.SchemaBase;
+import eu.esdihumboldt.hale.common.core.io.Value;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.xml.namespace.QName;
+
+/**
+ * Resolves the XtraServer Web API property type of schema types. The mapping is read from the
+ * bundled type map and can be extended per project with a type map file that is set with the
+ * project variable {@value #PROPERTY_TYPE_MAP}. Resolved types are memoized per export, types
+ * without a mapping are reported once and mapped to {@link SchemaBase.Type#STRING}.
+ *
+ * <p>A type map has one mapping per line in the form <code>name = TYPE</code>, lines starting with
+ * '#' are comments. Local names apply to types in the XSD and GML namespaces, types in other
+ * namespaces are given as <code>{namespace}localName</code>. Types without a mapping inherit the
+ * mapping of their super type.
+ */
+public final class WebApiTypeResolver {
+
+  /** Project variable with the location of the project type map file. */
+  public static final String PROPERTY_TYPE_MAP = "XTRASERVER_WEBAPI_TYPE_MAP";
+
+  static final String BUNDLED_TYPE_MAP = "webapi-type-map.txt";
+
+  private final Map<String, SchemaBase.Type> typeMap;
+  private final Map<TypeDefinition, SchemaBase.Type> resolvedTypes = new HashMap<>();
+  private final Set<QName> missingTypes = new HashSet<>();
+  private final IOReporter reporter;
+
+  /**
+   * @param projectProperties project transformation properties
+   * @param projectLocation project file, relative type map locations are resolved against it,
+   *     may be null
+   * @param reporter reporter for unmapped types and type map problems
+   */
+  public WebApiTypeResolver(
+      final Map<String, Value> projectProperties,
+      final URI projectLocation,
+      final IOReporter reporter) {
+    this.reporter = reporter;
+    this.typeMap = new HashMap<>(XtraServerWebApiUtil.xsdToTypeMap);
+
+    final Value location = projectProperties.get(PROPERTY_TYPE_MAP);
+    if (location != null && !location.isEmpty()) {
+      final String typeMapLocation = location.as(String.class).trim();
+      final List<String> problems = new ArrayList<>();
+      try (final InputStream in =
+          resolve(typeMapLocation, projectLocation).toURL().openStream()) {
+        final Map<String, SchemaBase.Type> projectTypeMap = readTypeMap(in, problems);
+        typeMap.putAll(projectTypeMap);
+        reporter.info(
+            "{0} type mapping(s) read from type map {1}", projectTypeMap.size(), typeMapLocation);
+      } catch (final IOException | RuntimeException e) {
+        reporter.warn(
+            "Type map {0} from project variable {1} could not be read, only the bundled type"
+                + " mappings are used: {2}",
+            typeMapLocation,
+            PROPERTY_TYPE_MAP,
+            e.getMessage());
+      }
+      for (final String problem : problems) {
+        reporter.warn("Type map {0}: {1}", typeMapLocation, problem);
+      }
+    }
+  }
+
+  /**
+   * Return the Web API type of a schema type.
+   *
+   * @param td the schema type
+   * @return the mapped type, {@link SchemaBase.Type#STRING} if the type has no mapping
+   */
+  public synchronized SchemaBase.Type resolve(final TypeDefinition td) {
+    final SchemaBase.Type resolved = resolvedTypes.get(td);
+    if (resolved != null) {
+      return resolved;
+    }
+    final SchemaBase.Type type = lookup(td);
+    resolvedTypes.put(td, type);
+    return type;
+  }
+
+  private SchemaBase.Type lookup(final TypeDefinition td) {
+    final QName name = td.getName();
+    final SchemaBase.Type qualified = typeMap.get(name.toString());
+    if (qualified != null) {
+      return qualified;
+    }
+
+    final String namespace = name.getNamespaceURI();
+    final boolean gml = namespace.startsWith(XtraServerWebApiUtil.GML_NS_URI_PREFIX);
+    if (gml || namespace.equalsIgnoreCase(XtraServerWebApiUtil.XSD_NS_URI_PREFIX)) {
+      final SchemaBase.Type type = typeMap.get(name.getLocalPart());
+      if (type != null) {
+        return type;
+      }
+      return missing(gml ? "GML type" : "XSD type", name);
+    }
+
+    if (td.getSuperType() != null) {
+      return resolve(td.getSuperType());
+    }
+    return missing("type", name);
+  }
+
+  private SchemaBase.Type missing(final String kind, final QName name) {
+    if (missingTypes.add(name)) {
+      reporter.warn(
+          "No Web API type mapping for {0} {1}, STRING is used. Mappings can be added with a"
+              + " type map file in project variable {2}.",
+          kind,
+          name.getLocalPart(),
+          PROPERTY_TYPE_MAP);
+    }
+    return SchemaBase.Type.STRING;
+  }
+
+  /**
+   * Return the location of the type map of the project variable {@value #PROPERTY_TYPE_MAP}.
+   *
+   * @param projectProperties project transformation properties
+   * @param projectLocation project file, relative type map locations are resolved against it, may
+   *     be null
+   * @return the resolved location or empty if the variable is not set
+   */
+  public static Optional<URI> getTypeMapLocation(
+      final Map<String, Value> projectProperties, final URI projectLocation) {
+    final Value location = projectProperties.get(PROPERTY_TYPE_MAP);
+    if (location == null || location.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(resolve(location.as(String.class).trim(), projectLocation));
+  }
+
+  /** Resolve a URI or a file path, relative paths are resolved against the project file. */
+  private static URI resolve(final String location, final URI projectLocation) {
+    if (location.contains("://") || location.startsWith("file:")) {
+      return URI.create(location);
+    }
+    final Path path = Paths.get(location);
+    if (path.isAbsolute() || projectLocation == null) {
+      return path.toAbsolutePath().toUri();
+    }
+    if ("file".equalsIgnoreCase(projectLocation.getScheme())) {
+      return Paths.get(projectLocation).resolveSibling(path).toUri();
+    }
+    return projectLocation.resolve(location.replace('\\', '/'));
+  }
+
+  /**
+   * Read the type map that is bundled with the plugin.
+   *
+   * @return the bundled type mappings
+   * @throws IllegalStateException if the bundled type map is missing or invalid
+   */
+  static Map<String, SchemaBase.Type> readBundledTypeMap() {
+    try (final InputStream in = WebApiTypeResolver.class.getResourceAsStream(BUNDLED_TYPE_MAP)) {
+      if (in == null) {
+        throw new IllegalStateException("Bundled type map " + BUNDLED_TYPE_MAP + " not found");
+      }
+      final List<String> problems = new ArrayList<>();
+      final Map<String, SchemaBase.Type> typeMap = readTypeMap(in, problems);
+      if (!problems.isEmpty()) {
+        throw new IllegalStateException(
+            "Bundled type map " + BUNDLED_TYPE_MAP + " is invalid: " + problems);
+      }
+      return typeMap;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Read a type map. Invalid lines are skipped and described in the problem list.
+   *
+   * @param in the type map
+   * @param problems receives the descriptions of invalid lines
+   * @return the type mappings in the order of the file
+   * @throws IOException if the type map cannot be read
+   */
+  static Map<String, SchemaBase.Type> readTypeMap(
+      final InputStream in, final List<String> problems) throws IOException {
+    final Map<String, SchemaBase.Type> typeMap = new HashMap<>();
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      // namespaces may contain '=', the type never does
+      final int separator = line.lastIndexOf('=');
+      if (separator <= 0) {
+        problems.add("line " + lineNumber + " is not in the form 'name = TYPE'");
+        continue;
+      }
+      final String name = line.substring(0, separator).trim();
+      final String type = line.substring(separator + 1).trim();
+      try {
+        typeMap.put(name, SchemaBase.Type.valueOf(type.toUpperCase(Locale.ENGLISH)));
+      } catch (final IllegalArgumentException e) {
+        problems.add("line " + lineNumber + " has the unknown type '" + type + "'");
+      }
+    }
+    return typeMap;
+  }
+}
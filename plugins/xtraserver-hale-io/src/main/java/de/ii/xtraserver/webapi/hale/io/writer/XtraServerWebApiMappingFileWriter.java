@@ -16,6 +16,8 @@
 package de.ii.xtraserver.webapi.hale.io.writer;
 
 import com.google.common.io.Files;
+import de.ii.xtraserver.hale.io.CanceledException;
+import de.ii.xtraserver.hale.io.writer.IncrementalExportCache;
 import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
 import eu.esdihumboldt.hale.common.align.io.impl.AbstractAlignmentWriter;
 import eu.esdihumboldt.hale.common.core.io.IOProviderConfigurationException;
@@ -36,16 +38,16 @@ public class XtraServerWebApiMappingFileWriter extends AbstractAlignmentWriter {
 
   private static final String WRITER_TYPE_NAME = "XtraServer Web API Provider Exporter";
 
-  static final String CONTENT_TYPE_MAPPING = "de.ii.xtraserver.webapi.hale.io.mapping.yaml";
+  public static final String CONTENT_TYPE_MAPPING = "de.ii.xtraserver.webapi.hale.io.mapping.yaml";
 
-  static final String CONTENT_TYPE_ARCHIVE = "de.ii.xtraserver.webapi.hale.io.mapping.archive";
+  public static final String CONTENT_TYPE_ARCHIVE = "de.ii.xtraserver.webapi.hale.io.mapping.archive";
 
   /**
    * @see eu.esdihumboldt.hale.common.core.io.IOProvider#isCancelable()
    */
   @Override
   public boolean isCancelable() {
-    return false;
+    return true;
   }
 
   /**
@@ -106,12 +108,22 @@ public class XtraServerWebApiMappingFileWriter extends AbstractAlignmentWriter {
         return reporter;
       }
 
-      final XtraServerWebApiMappingGenerator generator = new XtraServerWebApiMappingGenerator(
+      try (final XtraServerWebApiMappingGenerator generator = new XtraServerWebApiMappingGenerator(
           getAlignment(), getTargetSchema(), progress,
           Collections.unmodifiableMap(projectProperties), getProjectInfo(),
-          getProjectLocation(), reporter);
+          getProjectLocation(), reporter)) {
 
-      generator.generate(reporter, out, providerId, getContentType().getId().equals(CONTENT_TYPE_MAPPING));
+        final IncrementalExportCache cache = IncrementalExportCache.create(
+            getContentType().getId(), getTarget().getLocation(), generator.getAnalysis(),
+            getTargetSchema(), projectProperties, getProjectLocation(), reporter).orElse(null);
+        generator.setCache(cache);
+
+        generator.generate(reporter, out, providerId, getContentType().getId().equals(CONTENT_TYPE_MAPPING));
+
+        if (cache != null) {
+          cache.finish(reporter);
+        }
+      }
 
       progress.advance(1);
     } catch (final UnsupportedTransformationException e) {
@@ -119,6 +131,10 @@ public class XtraServerWebApiMappingFileWriter extends AbstractAlignmentWriter {
           + "'  is not supported. Make sure that the XtraServer compatibility mode is enabled.");
       reporter.setSuccess(false);
       return reporter;
+    } catch (final CanceledException e) {
+      reporter.error("The export was canceled");
+      reporter.setSuccess(false);
+      return reporter;
     }
 
     progress.end();
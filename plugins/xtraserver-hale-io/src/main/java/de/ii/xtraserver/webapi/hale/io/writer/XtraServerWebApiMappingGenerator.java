@@ -15,17 +15,30 @@
 
 package de.ii.xtraserver.webapi.hale.io.writer;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
 import de.ii.ldproxy.cfg.LdproxyCfgWriter;
 import de.ii.ogcapi.features.geojson.domain.ImmutableGeoJsonConfiguration;
 import de.ii.ogcapi.foundation.domain.FeatureTypeConfigurationOgcApi;
 import de.ii.ogcapi.foundation.domain.ImmutableFeatureTypeConfigurationOgcApi;
 import de.ii.ogcapi.foundation.domain.ImmutableOgcApiDataV2;
+import de.ii.ogcapi.foundation.domain.OgcApiDataV2;
 import de.ii.xtraplatform.codelists.domain.Codelist;
 import de.ii.xtraplatform.features.domain.FeatureProviderDataV2;
 import de.ii.xtraplatform.features.domain.FeatureSchema;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
+import de.ii.xtraplatform.features.domain.SchemaConstraints;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraplatform.features.domain.transform.PropertyTransformation;
+import de.ii.xtraserver.hale.io.CanceledException;
+import de.ii.xtraserver.hale.io.writer.AlignmentAnalysis;
+import de.ii.xtraserver.hale.io.writer.AlignmentIndex;
+import de.ii.xtraserver.hale.io.writer.IncrementalExportCache;
+import de.ii.xtraserver.hale.io.writer.ParallelZipWriter;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
 import de.ii.xtraserver.hale.io.writer.handler.UnsupportedTransformationException;
@@ -45,30 +58,45 @@ import eu.esdihumboldt.hale.common.filter.AbstractGeotoolsFilter;
 import eu.esdihumboldt.hale.common.schema.model.Schema;
 import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.xml.namespace.QName;
 import org.apache.commons.lang3.StringUtils;
 import org.geotools.filter.text.cql2.CQLException;
 import org.geotools.filter.text.ecql.ECQL;
 import org.opengis.filter.Filter;
 
-/** Translates an Alignment to a XtraServer Web API Mapping. */
-public class XtraServerWebApiMappingGenerator {
+/**
+ * Translates an Alignment to a XtraServer Web API Mapping. The configuration store is kept in an
+ * in-memory file system, which is released by {@link #close()}.
+ */
+public class XtraServerWebApiMappingGenerator implements Closeable {
+
+  private static final ObjectMapper CACHE_MAPPER =
+      new ObjectMapper()
+          .findAndRegisterModules()
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
-  private final Alignment alignment;
+  private final AlignmentAnalysis analysis;
+  private final AlignmentIndex alignmentIndex;
+  private final FileSystem fileSystem;
+  private final Path dataDir;
   private final LdproxyCfgWriter ldproxyCfg;
   private final MappingContext mappingContext;
   private final TypeTransformationHandlerFactory typeHandlerFactory;
   private final PropertyTransformationHandlerFactory propertyHandlerFactory;
   private final ProgressIndicator progress;
   private final String inspireSchemaName;
+  private final boolean writeIndexes;
+  private IncrementalExportCache cache;
 
   /**
    * Constructor
@@ -90,9 +118,47 @@ public class XtraServerWebApiMappingGenerator {
       final URI projectLocation,
       final IOReporter reporter)
       throws IOException {
+    this(
+        alignment,
+        targetSchemaSpace,
+        progress,
+        projectProperties,
+        projectInfo,
+        projectLocation,
+        reporter,
+        new AlignmentAnalysis(alignment, targetSchemaSpace, projectProperties, reporter));
+    /* total work units for the progress indicator (+1 for writing the file)*/
+    progress.begin(
+        "Translating hale alignment to XtraServer Mapping file",
+        alignmentIndex.getTotalWorkUnits() + 1);
+  }
 
-    this.alignment = alignment;
-    Path dataDir = createTempDataDir();
+  /**
+   * Constructor that uses an existing analysis of the alignment. The progress indicator is not
+   * started, the caller begins it with its own total work units.
+   *
+   * @param alignment the Alignment with all cells
+   * @param targetSchemaSpace the target schema
+   * @param progress Progress indicator
+   * @param projectProperties project transformation properties
+   * @param projectInfo project info
+   * @param projectLocation project file
+   * @param reporter reporter
+   * @param analysis the analysis of the alignment, may be shared with other exports
+   */
+  public XtraServerWebApiMappingGenerator(
+      final Alignment alignment,
+      final SchemaSpace targetSchemaSpace,
+      final ProgressIndicator progress,
+      final Map<String, Value> projectProperties,
+      final ProjectInfo projectInfo,
+      final URI projectLocation,
+      final IOReporter reporter,
+      final AlignmentAnalysis analysis)
+      throws IOException {
+
+    this.fileSystem = Jimfs.newFileSystem(Configuration.unix());
+    this.dataDir = Files.createDirectories(fileSystem.getPath("/ldproxy-cfg"));
     this.ldproxyCfg = LdproxyCfgWriter.create(dataDir);
     this.mappingContext =
         new MappingContext(
@@ -102,17 +168,13 @@ public class XtraServerWebApiMappingGenerator {
             projectInfo,
             projectLocation,
             reporter,
-            ldproxyCfg);
+            ldproxyCfg,
+            analysis);
     this.typeHandlerFactory = TypeTransformationHandler.createFactory(mappingContext);
     this.propertyHandlerFactory = PropertyTransformationHandler.createFactory(mappingContext);
 
-    /* Calculate the total work units for the progress indicator (+1 for
-    writing the file)*/
-    int c = 1;
-    for (final Cell typeCell : this.alignment.getActiveTypeCells()) {
-      c += this.alignment.getPropertyCells(typeCell).size() + 1;
-    }
-    progress.begin("Translating hale alignment to XtraServer Mapping file", c);
+    this.analysis = analysis;
+    this.alignmentIndex = analysis.getAlignmentIndex();
     this.progress = progress;
 
     String inspireSchemaNameTmp = null;
@@ -136,6 +198,22 @@ public class XtraServerWebApiMappingGenerator {
       }
     }
     this.inspireSchemaName = inspireSchemaNameTmp;
+    this.writeIndexes = IndexAdvisor.isEnabled(projectProperties);
+  }
+
+  /** @return the analysis of the alignment that is used by this generator */
+  public AlignmentAnalysis getAnalysis() {
+    return analysis;
+  }
+
+  /**
+   * Use an export cache, feature types with unchanged type cells are then taken from the cache
+   * without processing their cells.
+   *
+   * @param cache the export cache, null to disable caching
+   */
+  public void setCache(final IncrementalExportCache cache) {
+    this.cache = cache;
   }
 
   /**
@@ -145,6 +223,7 @@ public class XtraServerWebApiMappingGenerator {
    * @param providerId
    * @throws UnsupportedTransformationException if the transformation of types or properties is not
    *     supported
+   * @throws CanceledException if the export was canceled
    */
   public void generate(
       final IOReporter reporter,
@@ -153,153 +232,396 @@ public class XtraServerWebApiMappingGenerator {
       boolean onlyProviderFile)
       throws UnsupportedTransformationException, IOException {
 
-    Map<QName, List<Cell>> sortedTypeCells =
-        this.alignment.getActiveTypeCells().stream()
-            .collect(
-                Collectors.groupingBy(
-                    XtraServerMappingUtils::getFeatureTypeName,
-                    LinkedHashMap::new,
-                    Collectors.collectingAndThen(
-                        Collectors.toList(),
-                        cells ->
-                            cells.stream()
-                                .sorted(Comparator.comparing(Cell::getPriority))
-                                .collect(Collectors.toList()))));
-
-    for (final QName featureTypeQName : sortedTypeCells.keySet()) {
-      for (final Cell typeCell : sortedTypeCells.get(featureTypeQName)) {
-        /* Create FeatureTypeMapping from the type cells. The Mapping tables
-        are created and added by the Type Handlers*/
-        this.progress.setCurrentTask("Transforming type");
-
-        final TypeTransformationHandler typeHandler =
-            typeHandlerFactory.create(typeCell.getTransformationIdentifier());
-
-        if (Objects.isNull(typeHandler)) {
-          this.progress.advance(this.alignment.getPropertyCells(typeCell).size());
-          continue;
-        }
-        // TODO - FUTURE WORK - multiple mappings per feature type currently not supported
-        /*if (this.mappingContext.getFeatureTypeMappings().containsKey(featureTypeQName.toString())) {
-          mappingContext
-              .getReporter()
-              .warn(
-                  "Multiple mappings with the same target type are currently not supported. Only the first mapping for Feature Type {0} was created.",
-                  featureTypeQName.getLocalPart());
-          this.progress.advance(this.alignment.getPropertyCells(typeCell).size());
-          continue;
-        }*/
-        // PROCESSING
-
-        ImmutableFeatureSchema.Builder typeBuilder = typeHandler.handle(typeCell, providerId);
-        this.progress.setCurrentTask(
-            "Mapping values for Feature Type " + mappingContext.getFeatureTypeName());
-
-        List<? extends Cell> sortedPropertyCells =
-            this.alignment.getPropertyCells(typeCell).stream()
-                .sorted(Comparator.comparing(Cell::getPriority))
-                .collect(Collectors.toList());
-
-        // Add MappingValues from the type cell's property cells
-        for (final Cell propertyCell : sortedPropertyCells) {
-          final PropertyTransformationHandler propertyHandler =
-              propertyHandlerFactory.create(propertyCell.getTransformationIdentifier());
-          if (propertyHandler != null) {
-            propertyHandler.handle(new CellParentWrapper(typeCell, propertyCell), providerId);
-          }
-          this.progress.advance(1);
-        }
+    for (final Map.Entry<Object, List<Cell>> featureType :
+        alignmentIndex.getSortedTypeCellsByFeatureType().entrySet()) {
+      CanceledException.checkCanceled(this.progress);
+      final List<Cell> typeCells = featureType.getValue();
+      // type cells without valid target raise the error of the schema lookup
+      final QName featureTypeQName =
+          featureType.getKey() instanceof QName
+              ? (QName) featureType.getKey()
+              : XtraServerMappingUtils.getFeatureTypeName(
+                  typeCells.get(0), mappingContext.getTargetSchemaIndex());
+      final String fingerprint = cache != null ? cache.fingerprint(typeCells) : null;
+      if (cache != null && restoreFromCache(featureTypeQName, fingerprint)) {
+        this.progress.advance(alignmentIndex.getWorkUnits(typeCells));
+        continue;
+      }
+      mappingContext.clearAddedCodeListIds();
 
-        // POSTPROCESSING
-
-        if (typeBuilder != null) {
-          EntityDefinition mainEntityDefinition = this.mappingContext.getMainEntityDefinition();
-          TypeDefinition mainTypeDefinition = mainEntityDefinition.getType();
-          String mainTableName = mainTypeDefinition.getName().getLocalPart();
-          String sourcePath = "/" + mainTableName;
-
-          // primary key is currently not used
-          //            String primaryKey =
-          // TypeTransformationHandler.getPrimaryKey(mainTypeDefinition);
-          //            if(StringUtils.isNotBlank(primaryKey)) {
-          //              sourcePath += "{primaryKey="+primaryKey+"}";
-          //            }
-          if (this.mappingContext.getMainSortKeyField() != null) {
-            sourcePath += "{sortKey=" + this.mappingContext.getMainSortKeyField() + "}";
-          }
-          if (mainEntityDefinition.getFilter() != null) {
-            try {
-              // TODO - Filter auf DB-Spalten noch nicht möglich? Remove-Transformation nutzen?
-              AbstractGeotoolsFilter filter =
-                  (AbstractGeotoolsFilter) mainEntityDefinition.getFilter();
-              Filter qualifiedFilter = ECQL.toFilter(filter.getFilterTerm());
-              // Praktisch - die Namen der im Filter genutzten Attribute kann man einfach finden
-              //                String[] attNamesInFilter =
-              // DataUtilities.attributeNames(qualifiedFilter);
-              sourcePath += "{filter=" + ECQL.toCQL(qualifiedFilter) + "}";
-            } catch (ClassCastException | CQLException e) {
-              // ignore
-            }
-          }
+      for (final Cell typeCell : typeCells) {
+        handleTypeCell(typeCell, alignmentIndex.getPropertyCells(typeCell), providerId, true);
+      }
+
+      if (cache != null) {
+        storeInCache(featureTypeQName, fingerprint);
+      }
+    }
+
+    write(out, providerId, onlyProviderFile);
+  }
+
+  /**
+   * Processes a type cell and its property cells. This is the entry point for exporters that walk
+   * the alignment themselves and feed the same cells to several generators, the progress is then
+   * reported by the caller.
+   *
+   * @param typeCell the type cell
+   * @param propertyCells the property cells of the type cell in processing order
+   * @param providerId the provider id
+   * @throws UnsupportedTransformationException if the transformation of types or properties is not
+   *     supported
+   * @throws CanceledException if the export was canceled
+   */
+  public void handleTypeCell(
+      final Cell typeCell, final List<CellParentWrapper> propertyCells, final String providerId)
+      throws UnsupportedTransformationException {
+    handleTypeCell(typeCell, propertyCells, providerId, false);
+  }
+
+  private void handleTypeCell(
+      final Cell typeCell,
+      final List<CellParentWrapper> propertyCells,
+      final String providerId,
+      final boolean reportProgress)
+      throws UnsupportedTransformationException {
+    CanceledException.checkCanceled(this.progress);
+    /* Create FeatureTypeMapping from the type cells. The Mapping tables
+    are created and added by the Type Handlers*/
+    if (reportProgress) {
+      this.progress.setCurrentTask("Transforming type");
+    }
+
+    final TypeTransformationHandler typeHandler =
+        typeHandlerFactory.create(typeCell.getTransformationIdentifier());
+
+    if (Objects.isNull(typeHandler)) {
+      if (reportProgress) {
+        this.progress.advance(propertyCells.size());
+      }
+      return;
+    }
+    // TODO - FUTURE WORK - multiple mappings per feature type currently not supported
+    /*if (this.mappingContext.getFeatureTypeMappings().containsKey(featureTypeQName.toString())) {
+      mappingContext
+          .getReporter()
+          .warn(
+              "Multiple mappings with the same target type are currently not supported. Only the first mapping for Feature Type {0} was created.",
+              featureTypeQName.getLocalPart());
+      this.progress.advance(alignmentIndex.getPropertyCells(typeCell).size());
+      continue;
+    }*/
+    // PROCESSING
+
+    ImmutableFeatureSchema.Builder typeBuilder = typeHandler.handle(typeCell, providerId);
+    if (reportProgress) {
+      this.progress.setCurrentTask(
+          "Mapping values for Feature Type " + mappingContext.getFeatureTypeName());
+    }
 
-          typeBuilder.sourcePath(sourcePath);
+    // Add MappingValues from the type cell's property cells
+    for (final CellParentWrapper propertyCell : propertyCells) {
+      final PropertyTransformationHandler propertyHandler =
+          propertyHandlerFactory.create(propertyCell.getTransformationIdentifier());
+      if (propertyHandler != null) {
+        propertyHandler.handle(propertyCell, providerId);
+      }
+      if (reportProgress) {
+        this.progress.advance(1);
+      }
+    }
+
+    // POSTPROCESSING
+
+    if (typeBuilder != null) {
+      EntityDefinition mainEntityDefinition = this.mappingContext.getMainEntityDefinition();
+      TypeDefinition mainTypeDefinition = mainEntityDefinition.getType();
+      String mainTableName = mainTypeDefinition.getName().getLocalPart();
+      String sourcePath = "/" + mainTableName;
+
+      // primary key is currently not used
+      //            String primaryKey =
+      // TypeTransformationHandler.getPrimaryKey(mainTypeDefinition);
+      //            if(StringUtils.isNotBlank(primaryKey)) {
+      //              sourcePath += "{primaryKey="+primaryKey+"}";
+      //            }
+      if (this.mappingContext.getMainSortKeyField() != null) {
+        sourcePath += "{sortKey=" + this.mappingContext.getMainSortKeyField() + "}";
+      }
+      if (mainEntityDefinition.getFilter() != null) {
+        try {
+          // TODO - Filter auf DB-Spalten noch nicht möglich? Remove-Transformation nutzen?
+          AbstractGeotoolsFilter filter = (AbstractGeotoolsFilter) mainEntityDefinition.getFilter();
+          Filter qualifiedFilter = ECQL.toFilter(filter.getFilterTerm());
+          // Praktisch - die Namen der im Filter genutzten Attribute kann man einfach finden
+          //                String[] attNamesInFilter =
+          // DataUtilities.attributeNames(qualifiedFilter);
+          sourcePath += "{filter=" + ECQL.toCQL(qualifiedFilter) + "}";
+        } catch (ClassCastException | CQLException e) {
+          // ignore
         }
       }
+
+      typeBuilder.sourcePath(sourcePath);
     }
+  }
 
+  /**
+   * Writes the provider configuration of all processed type cells, either as single provider file
+   * or as zipped configuration store with the API and the code lists. The entities and code lists
+   * of the store are written concurrently, see {@link ConfigurationStoreSerializer}, and the
+   * store is compressed with a {@link ParallelZipWriter}.
+   *
+   * @param out the target stream
+   * @param providerId the provider id
+   * @param onlyProviderFile true to only write the provider file
+   * @throws IOException if writing fails
+   * @throws CanceledException if the export was canceled
+   */
+  public void write(final OutputStream out, final String providerId, boolean onlyProviderFile)
+      throws IOException {
+    CanceledException.checkCanceled(this.progress);
+    this.progress.setCurrentTask("Creating provider configuration");
     FeatureProviderDataV2 providerData = mappingContext.getProviderData(providerId);
+    CanceledException.checkCanceled(this.progress);
 
     if (onlyProviderFile) {
+      if (writeIndexes) {
+        mappingContext
+            .getReporter()
+            .warn(
+                "The index script of project variable {0} is only written to the configuration"
+                    + " archive",
+                IndexAdvisor.PROPERTY_INDEXES);
+      }
       ldproxyCfg.writeEntity(providerData, out);
     } else {
+      try (final ParallelZipWriter zip = new ParallelZipWriter(out, getParallelism())) {
+        writeStore(providerData, providerId, zip, "");
+        zip.finish();
+      }
+    }
+  }
 
-      ldproxyCfg.writeEntity(providerData);
-
-      ImmutableOgcApiDataV2.Builder apiBuilder = ldproxyCfg.builder().entity().api();
-      apiBuilder.id(providerData.getId()).entityStorageVersion(2).serviceType("OGC_API");
-      apiBuilder.label(
-          "${"
-              + providerId
-              + ".service.label:-INSPIRE "
-              + (StringUtils.isNotBlank(this.inspireSchemaName)
-                  ? this.inspireSchemaName
-                  : providerId)
-              + "}");
-
-      // Konfigurieren der Abflachung
-      ImmutableGeoJsonConfiguration.Builder gjBuilder =
-          ldproxyCfg.builder().ogcApiExtension().geoJson();
-      List<PropertyTransformation> geoJsonApiTransformations = new ArrayList<>();
-      ImmutablePropertyTransformation.Builder flattenTrfBuilder =
-          new ImmutablePropertyTransformation.Builder();
-      flattenTrfBuilder.flatten("_");
-      geoJsonApiTransformations.add(flattenTrfBuilder.build());
-      gjBuilder.putTransformations("*", geoJsonApiTransformations);
-      apiBuilder.addExtensions(gjBuilder.build());
-
-      // create service collections (with id, label and description per provider type)
-      SortedMap<String, FeatureTypeConfigurationOgcApi> serviceCollDefsMap = new TreeMap<>();
-      for (FeatureSchema providerType : providerData.getTypes().values()) {
-        ImmutableFeatureTypeConfigurationOgcApi.Builder serviceCollDefBuilder =
-            new ImmutableFeatureTypeConfigurationOgcApi.Builder()
-                .id(providerType.getName())
-                .description(providerType.getDescription());
-        if (providerType.getLabel().isPresent()) {
-          serviceCollDefBuilder.label(providerType.getLabel().get());
-        }
-        serviceCollDefsMap.put(providerType.getName(), serviceCollDefBuilder.build());
+  /**
+   * Writes the zipped configuration store of all processed type cells to an archive that also
+   * contains other entries.
+   *
+   * @param zip the archive
+   * @param directory the directory of the store entries in the archive, e.g. "webapi/"
+   * @param providerId the provider id
+   * @throws IOException if writing fails
+   * @throws CanceledException if the export was canceled
+   */
+  public void write(final ParallelZipWriter zip, final String directory, final String providerId)
+      throws IOException {
+    CanceledException.checkCanceled(this.progress);
+    this.progress.setCurrentTask("Creating provider configuration");
+    final FeatureProviderDataV2 providerData = mappingContext.getProviderData(providerId);
+    writeStore(providerData, providerId, zip, directory);
+  }
+
+  private void writeStore(
+      final FeatureProviderDataV2 providerData,
+      final String providerId,
+      final ParallelZipWriter zip,
+      final String directory)
+      throws IOException {
+    CanceledException.checkCanceled(this.progress);
+    final ConfigurationStoreSerializer store =
+        new ConfigurationStoreSerializer(
+            ldproxyCfg, dataDir, writer -> writer.writeEntity(providerData));
+    if (writeIndexes) {
+      addIndexScript(store, providerData);
+    }
+
+    ImmutableOgcApiDataV2.Builder apiBuilder = ldproxyCfg.builder().entity().api();
+    apiBuilder.id(providerData.getId()).entityStorageVersion(2).serviceType("OGC_API");
+    apiBuilder.label(
+        "${"
+            + providerId
+            + ".service.label:-INSPIRE "
+            + (StringUtils.isNotBlank(this.inspireSchemaName)
+                ? this.inspireSchemaName
+                : providerId)
+            + "}");
+
+    // Konfigurieren der Abflachung
+    ImmutableGeoJsonConfiguration.Builder gjBuilder =
+        ldproxyCfg.builder().ogcApiExtension().geoJson();
+    List<PropertyTransformation> geoJsonApiTransformations = new ArrayList<>();
+    ImmutablePropertyTransformation.Builder flattenTrfBuilder =
+        new ImmutablePropertyTransformation.Builder();
+    flattenTrfBuilder.flatten("_");
+    geoJsonApiTransformations.add(flattenTrfBuilder.build());
+    gjBuilder.putTransformations("*", geoJsonApiTransformations);
+    apiBuilder.addExtensions(gjBuilder.build());
+
+    // create service collections (with id, label and description per provider type)
+    SortedMap<String, FeatureTypeConfigurationOgcApi> serviceCollDefsMap = new TreeMap<>();
+    for (FeatureSchema providerType : providerData.getTypes().values()) {
+      ImmutableFeatureTypeConfigurationOgcApi.Builder serviceCollDefBuilder =
+          new ImmutableFeatureTypeConfigurationOgcApi.Builder()
+              .id(providerType.getName())
+              .description(providerType.getDescription());
+      if (providerType.getLabel().isPresent()) {
+        serviceCollDefBuilder.label(providerType.getLabel().get());
+      }
+      serviceCollDefsMap.put(providerType.getName(), serviceCollDefBuilder.build());
+    }
+    apiBuilder.collections(serviceCollDefsMap);
+
+    final OgcApiDataV2 apiData = apiBuilder.build();
+    store.add(writer -> writer.writeEntity(apiData));
+
+    // write codelist entities stored in the mapping context
+    Map<String, Codelist> codelists = mappingContext.getCodeLists();
+    for (Map.Entry<String, Codelist> codelist : codelists.entrySet()) {
+      store.add(writer -> writer.writeValue(codelist.getValue(), codelist.getKey()));
+    }
+
+    CanceledException.checkCanceled(this.progress);
+    this.progress.setCurrentTask("Serializing configuration");
+    store.write(getParallelism(), this.progress);
+
+    CanceledException.checkCanceled(this.progress);
+    this.progress.setCurrentTask("Writing configuration archive");
+    final List<Path> files;
+    try (Stream<Path> paths = Files.walk(dataDir)) {
+      files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    for (final Path file : files) {
+      final StringBuilder name = new StringBuilder(directory);
+      for (final Path segment : dataDir.relativize(file)) {
+        name.append(segment).append('/');
       }
-      apiBuilder.collections(serviceCollDefsMap);
+      name.setLength(name.length() - 1);
+      zip.add(name.toString(), () -> Files.newInputStream(file));
+    }
+  }
+
+  private int getParallelism() {
+    return mappingContext.getParallelism();
+  }
+
+  private void addIndexScript(
+      final ConfigurationStoreSerializer store, final FeatureProviderDataV2 providerData) {
+    final IndexAdvisor advisor =
+        new IndexAdvisor(
+            IndexAdvisor.getSourceTables(
+                alignmentIndex.getSortedTypeCellsByFeatureType().values()));
+    advisor.addProvider(providerData);
+    store.addProviderFile(
+        providerData.getId() + ".indexes.sql",
+        buffer -> advisor.write(providerData.getId(), buffer));
+    mappingContext
+        .getReporter()
+        .info(
+            "{0} index(es) suggested in {1}.indexes.sql, {2} key column(s) skipped",
+            String.valueOf(advisor.size()),
+            providerData.getId(),
+            String.valueOf(advisor.getSkipped()));
+  }
+
+  private boolean restoreFromCache(final QName featureTypeQName, final String fingerprint) {
+    final Optional<byte[]> entry = cache.read(fingerprint);
+    if (entry.isEmpty()) {
+      return false;
+    }
+    try {
+      final JsonNode json = CACHE_MAPPER.readTree(entry.get());
+      final Map<String, Codelist> codeLists = new LinkedHashMap<>();
+      final Iterator<Map.Entry<String, JsonNode>> it = json.get("codelists").fields();
+      while (it.hasNext()) {
+        final Map.Entry<String, JsonNode> codeList = it.next();
+        codeLists.put(
+            codeList.getKey(), CACHE_MAPPER.treeToValue(codeList.getValue(), Codelist.class));
+      }
+      if (json.hasNonNull("schema")) {
+        final FeatureSchema featureSchema =
+            CACHE_MAPPER.treeToValue(json.get("schema"), FeatureSchema.class);
+        mappingContext
+            .getFeatureTypeMappings()
+            .put(
+                featureTypeQName.toString(),
+                new ImmutableFeatureSchema.Builder().from(featureSchema));
+      }
+      codeLists.forEach(mappingContext::addCodeList);
+      this.progress.setCurrentTask("Reusing cached Feature Type " + featureTypeQName.getLocalPart());
+      return true;
+    } catch (IOException | RuntimeException e) {
+      // the entry is replaced by a newly generated one
+      return false;
+    }
+  }
 
-      ldproxyCfg.writeEntity(apiBuilder.build());
+  /**
+   * Stores the feature schema and all code lists that are used by a feature type, i.e. the code
+   * lists that were added while processing its cells and the code lists that are referenced by its
+   * schema, so that the entry is complete even if another feature type created a shared code
+   * list. Entries are only stored if they can be restored without loss.
+   */
+  private void storeInCache(final QName featureTypeQName, final String fingerprint) {
+    final ObjectNode json = CACHE_MAPPER.createObjectNode();
+    try {
+      final Set<String> codeListIds = new LinkedHashSet<>(mappingContext.getAddedCodeListIds());
+      final ImmutableFeatureSchema.Builder typeBuilder =
+          mappingContext.getFeatureTypeMappings().get(featureTypeQName.toString());
+      if (typeBuilder != null) {
+        final FeatureSchema featureSchema = typeBuilder.build();
+        final JsonNode schemaJson = CACHE_MAPPER.valueToTree(featureSchema);
+        if (!featureSchema.equals(CACHE_MAPPER.treeToValue(schemaJson, FeatureSchema.class))) {
+          reportNotCached(featureTypeQName, "the feature schema does not survive serialization");
+          return;
+        }
+        json.set("schema", schemaJson);
+        collectCodeListIds(featureSchema, codeListIds);
+      }
 
-      // write codelist entities stored in the mapping context
-      Map<String, Codelist> codelists = mappingContext.getCodeLists();
-      for (String id : codelists.keySet()) {
-        ldproxyCfg.writeValue(codelists.get(id), id);
+      final ObjectNode codeListsJson = json.putObject("codelists");
+      for (final String id : codeListIds) {
+        final Codelist codeList = mappingContext.getCodeLists().get(id);
+        if (codeList == null) {
+          continue;
+        }
+        final JsonNode codeListJson = CACHE_MAPPER.valueToTree(codeList);
+        if (!codeList.equals(CACHE_MAPPER.treeToValue(codeListJson, Codelist.class))) {
+          reportNotCached(
+              featureTypeQName, "code list " + id + " does not survive serialization");
+          return;
+        }
+        codeListsJson.set(id, codeListJson);
       }
 
-      ldproxyCfg.writeZippedStore(out);
+      cache.write(fingerprint, CACHE_MAPPER.writeValueAsBytes(json));
+    } catch (IOException | RuntimeException e) {
+      reportNotCached(featureTypeQName, e.getMessage());
+    }
+  }
+
+  private void reportNotCached(final QName featureTypeQName, final String reason) {
+    mappingContext
+        .getReporter()
+        .warn(
+            "Feature Type {0} could not be stored in the export cache: {1}",
+            featureTypeQName.getLocalPart(),
+            reason);
+  }
+
+  /** Collects the ids of the code lists that are referenced by a schema and its properties. */
+  private static void collectCodeListIds(final FeatureSchema schema, final Set<String> ids) {
+    for (final PropertyTransformation transformation : schema.getTransformations()) {
+      transformation.getCodelist().ifPresent(ids::add);
+    }
+    schema.getConstraints().flatMap(SchemaConstraints::getCodelist).ifPresent(ids::add);
+    for (final FeatureSchema property : schema.getProperties()) {
+      collectCodeListIds(property, ids);
+    }
+    for (final FeatureSchema member : schema.getConcat()) {
+      collectCodeListIds(member, ids);
+    }
+    for (final FeatureSchema member : schema.getCoalesce()) {
+      collectCodeListIds(member, ids);
     }
   }
 
@@ -312,23 +634,9 @@ public class XtraServerWebApiMappingGenerator {
   //    return this.mappingContext.getMissingAssociationTargets();
   //  }
 
-  private Path createTempDataDir() throws IOException {
-    Path dataDir = Files.createTempDirectory("ldproxy-cfg");
-
-    Runtime.getRuntime()
-        .addShutdownHook(
-            new Thread(
-                () -> {
-                  try {
-                    java.nio.file.Files.walk(dataDir)
-                        .sorted(Comparator.reverseOrder())
-                        .map(Path::toFile)
-                        .forEach(File::delete);
-                  } catch (IOException e) {
-                    // ignore
-                  }
-                }));
-
-    return dataDir;
+  /** Releases the in-memory file system of the configuration store. */
+  @Override
+  public void close() throws IOException {
+    fileSystem.close();
   }
 }
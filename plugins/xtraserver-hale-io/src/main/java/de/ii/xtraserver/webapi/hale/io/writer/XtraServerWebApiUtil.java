@@ -37,45 +37,24 @@ public class XtraServerWebApiUtil {
 
     public static final String XSD_NS_URI_PREFIX = "http://www.w3.org/2001/XMLSchema";
 
-    public static final Map<String,SchemaBase.Type> xsdToTypeMap = new HashMap<String,SchemaBase.Type>() { {
-
-        put("anyURI", SchemaBase.Type.STRING);
-        put("boolean", SchemaBase.Type.BOOLEAN);
-        put("CodeWithAuthorityType", SchemaBase.Type.STRING);
-        put("date", SchemaBase.Type.DATE);
-        put("dateTime", SchemaBase.Type.DATETIME);
-        put("decimal", SchemaBase.Type.FLOAT);
-        put("double", SchemaBase.Type.FLOAT);
-        put("ID", SchemaBase.Type.STRING);
-        put("integer", SchemaBase.Type.INTEGER);
-        put("string", SchemaBase.Type.STRING);
-        put("UomIdentifier", SchemaBase.Type.STRING);
-
-        // GML Geometry types
-        put("CurvePropertyType", SchemaBase.Type.GEOMETRY);
-        put("GeometryPropertyType", SchemaBase.Type.GEOMETRY);
-        put("MultiCurvePropertyType", SchemaBase.Type.GEOMETRY);
-        put("MultiGeometryPropertyType", SchemaBase.Type.GEOMETRY);
-        put("MultiPointPropertyType", SchemaBase.Type.GEOMETRY);
-        put("MultiSurfacePropertyType", SchemaBase.Type.GEOMETRY);
-        put("PointPropertyType", SchemaBase.Type.GEOMETRY);
-        put("GeometricPrimitivePropertyType", SchemaBase.Type.GEOMETRY);
-        put("SurfacePropertyType", SchemaBase.Type.GEOMETRY);
-
-        // GML Measure types
-        put("AngleType", SchemaBase.Type.FLOAT);
-        put("AreaType", SchemaBase.Type.FLOAT);
-        put("GridLengthType", SchemaBase.Type.FLOAT);
-        put("LengthType", SchemaBase.Type.FLOAT);
-        put("MeasureType", SchemaBase.Type.FLOAT);
-        put("ScaleType", SchemaBase.Type.FLOAT);
-        put("SpeedType", SchemaBase.Type.FLOAT);
-        put("TimeType", SchemaBase.Type.FLOAT);
-        put("VolumeType", SchemaBase.Type.FLOAT);
-    }
+    private static final Pattern INSPIRE_DOC_FACET_PATTERN =
+            Pattern.compile("\\s*--\\s*(\\w+)\\s*--\\s*(.+)(?!--)");
 
-    };
+    /**
+     * The bundled mapping of XSD and GML types to Web API types, see {@link WebApiTypeResolver}
+     */
+    public static final Map<String,SchemaBase.Type> xsdToTypeMap =
+            WebApiTypeResolver.readBundledTypeMap();
 
+    /**
+     * Returns the Web API type of a schema type from the bundled type mappings. Exports use the
+     * memoizing {@link WebApiTypeResolver} of their mapping context instead, which also considers
+     * the project type map and reports every unmapped type only once.
+     *
+     * @param td the schema type
+     * @param reporter reporter for unmapped types
+     * @return the mapped type, STRING if the type has no mapping
+     */
     public static SchemaBase.Type getWebApiType(TypeDefinition td, IOReporter reporter) {
 
         // SchemaBase.Type
@@ -123,9 +102,7 @@ public class XtraServerWebApiUtil {
         Map<String, String> result = new HashMap<>();
 
         if (StringUtils.isNotBlank(description)) {
-            String separatorRegex = "\\s*--\\s*(\\w+)\\s*--\\s*(.+)(?!--)";
-            Pattern inspireDocFacetPattern = Pattern.compile(separatorRegex);
-            Matcher m = inspireDocFacetPattern.matcher(description.trim());
+            Matcher m = INSPIRE_DOC_FACET_PATTERN.matcher(description.trim());
             while (m.find()) {
                 result.put(m.group(1).toLowerCase(Locale.ENGLISH),m.group(2).trim());
             }
@@ -20,24 +20,20 @@ import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema.Builder;
 import de.ii.xtraplatform.features.domain.SchemaBase;
 import de.ii.xtraplatform.features.domain.SchemaBase.Role;
+import de.ii.xtraserver.hale.io.jfr.CellTransformationEvent;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex.CellHints;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.*;
 import eu.esdihumboldt.hale.common.schema.model.ChildDefinition;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import eu.esdihumboldt.hale.common.schema.model.constraint.property.Cardinality;
-import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
 import eu.esdihumboldt.hale.common.schema.model.impl.DefaultGroupPropertyDefinition;
-import eu.esdihumboldt.hale.io.xsd.constraint.XmlAppInfo;
 import eu.esdihumboldt.hale.io.xsd.constraint.XmlAttributeFlag;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import org.apache.ws.commons.schema.XmlSchemaAppInfo;
-import org.w3c.dom.Node;
 
 /** Abstract Property Transformation Handler */
 abstract class AbstractPropertyTransformationHandler implements PropertyTransformationHandler {
@@ -123,76 +119,7 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
    * @return association target
    */
   protected Optional<String> getAssociationTarget(final Cell propertyCell) {
-    final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
-    if (targetProperty
-        .getDefinition()
-        .getDefinition()
-        .getConstraint(Reference.class)
-        .isReference()) {
-      final String associationTargetRef = getTargetFromSchema(targetProperty);
-      if (associationTargetRef != null) {
-        return Optional.of(associationTargetRef);
-      }
-    }
-
-    return Optional.empty();
-  }
-
-  /**
-   * Find the association target from the AppInfo annotation in the XSD
-   *
-   * @param targetProperty target property to analyze
-   * @return association target as String
-   */
-  protected String getTargetFromSchema(final Property targetProperty) {
-    if (targetProperty.getDefinition().getPropertyPath().isEmpty()) {
-      return null;
-    }
-    int refElemIndex = Math.max(0, targetProperty.getDefinition().getPropertyPath().size() - 2);
-    final ChildDefinition<?> firstChild =
-        targetProperty.getDefinition().getPropertyPath().get(refElemIndex).getChild();
-    if (!(firstChild instanceof PropertyDefinition)) {
-      return null;
-    }
-    final XmlAppInfo appInfoAnnotation =
-        ((PropertyDefinition) firstChild).getConstraint(XmlAppInfo.class);
-
-    for (final XmlSchemaAppInfo appInfo : appInfoAnnotation.getAppInfos()) {
-      for (int i = 0; i < appInfo.getMarkup().getLength(); i++) {
-        final Node item = appInfo.getMarkup().item(i);
-        if ("targetElement".equals(item.getNodeName())) {
-          final String target = item.getTextContent();
-          return target;
-        }
-      }
-    }
-    return null;
-  }
-
-  private Map<String, String> checkNotesForTransformationHints(Cell propertyCell) {
-    Map<String, String> hints = new HashMap<>();
-
-    if (propertyCell.getDocumentation().containsKey(null)) {
-      List<String> docs = propertyCell.getDocumentation().get(null);
-
-      if (!docs.isEmpty() && docs.get(0).contains("{{XTRASERVER:")) {
-        Matcher matcher =
-            Pattern.compile("\\{\\{XTRASERVER:(\\w+)(?:=(.+?))?}}").matcher(docs.get(0));
-
-        while (matcher.find()) {
-          hints.put(matcher.group(1), matcher.group(2) != null ? matcher.group(2) : "true");
-        }
-      }
-      if (!docs.isEmpty() && docs.get(0).contains("{{XSWA:")) {
-        Matcher matcher = Pattern.compile("\\{\\{XSWA:(\\w+)(?:=(.+?))?}}").matcher(docs.get(0));
-
-        while (matcher.find()) {
-          hints.put(matcher.group(1), matcher.group(2) != null ? matcher.group(2) : "true");
-        }
-      }
-    }
-
-    return hints;
+    return mappingContext.getAssociationTarget(propertyCell);
   }
 
   /**
@@ -203,6 +130,20 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
    */
   @Override
   public final ImmutableFeatureSchema.Builder handle(final Cell propertyCell, String providerId) {
+    final CellTransformationEvent event =
+        FlightRecorder.AVAILABLE
+            ? CellTransformationEvent.start(MappingContext.EXPORTER, this)
+            : null;
+    try {
+      return handleCell(propertyCell, providerId);
+    } finally {
+      if (event != null) {
+        event.end(propertyCell, mappingContext.getFeatureTypeName());
+      }
+    }
+  }
+
+  private ImmutableFeatureSchema.Builder handleCell(final Cell propertyCell, String providerId) {
 
     final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
     final Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
@@ -279,6 +220,7 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
       Cell propertyCell, Property targetProperty, Optional<String> refType) {
 
     ImmutableFeatureSchema.Builder typeBuilder = mappingContext.getFeatureBuilder();
+    final FeatureSchemaShadow shadow = mappingContext.getFeatureSchemaShadow();
 
     List<ChildContext> propertyPath = targetProperty.getDefinition().getPropertyPath();
 
@@ -291,7 +233,7 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
         .append(this.mappingContext.getFeatureTypeName().toLowerCase(Locale.ENGLISH))
         .append(".");
 
-    Map<String, String> transformationHints = checkNotesForTransformationHints(propertyCell);
+    final CellHints transformationHints = mappingContext.getTransformationHints(propertyCell);
 
     ImmutableFeatureSchema.Builder firstObjectBuilder = null;
 
@@ -334,37 +276,38 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
 
         if (propMap.containsKey(pName)) {
           boolean isCoalesceOrConcat =
-              transformationHints.containsKey("CHOICE")
+              transformationHints.isChoice()
                   || isMultiValuedPropertyPerSchemaDefinition(pd);
 
           if (i == propertyPath.size() - 1 && isCoalesceOrConcat) {
             ImmutableFeatureSchema.Builder prevBuilder = propMap.get(pName);
-            ImmutableFeatureSchema prev = prevBuilder.build();
             propertyBuilder = new ImmutableFeatureSchema.Builder();
 
             boolean isCoalesce =
-                transformationHints.containsKey("CHOICE")
+                transformationHints.isChoice()
                     || !isMultiValuedPropertyPerSchemaDefinition(pd);
 
             if (isCoalesce) {
-              if (prev.getCoalesce().isEmpty()) {
+              if (!shadow.isCoalesce(prevBuilder)) {
                 ImmutableFeatureSchema.Builder coalesce =
                     new ImmutableFeatureSchema.Builder()
                         .name(pName)
-                        .type(prev.getType())
                         .addAllCoalesceBuilders(prevBuilder, propertyBuilder);
+                shadow.type(coalesce, shadow.getType(prevBuilder));
+                shadow.setCoalesce(coalesce);
                 propMap.put(pName, coalesce);
               } else {
                 prevBuilder.addAllCoalesceBuilders(propertyBuilder);
               }
             } else {
-              if (prev.getConcat().isEmpty()) {
+              if (!shadow.isConcat(prevBuilder)) {
                 ImmutableFeatureSchema.Builder concat =
                     new ImmutableFeatureSchema.Builder()
                         .name(pName)
-                        .type(SchemaBase.Type.VALUE_ARRAY)
-                        .valueType(prev.getType())
+                        .valueType(shadow.getType(prevBuilder))
                         .addAllConcatBuilders(prevBuilder, propertyBuilder);
+                shadow.type(concat, SchemaBase.Type.VALUE_ARRAY);
+                shadow.setConcat(concat);
                 propMap.put(pName, concat);
               } else {
                 prevBuilder.addAllConcatBuilders(propertyBuilder);
@@ -399,10 +342,10 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
            * flags contained in mapping notes.
            */
           if (pName.equalsIgnoreCase("beginLifespanVersion")) {
-            propertyBuilder.role(Role.PRIMARY_INTERVAL_START);
+            shadow.role(propertyBuilder, Role.PRIMARY_INTERVAL_START);
           }
           if (pName.equalsIgnoreCase("endLifespanVersion")) {
-            propertyBuilder.role(Role.PRIMARY_INTERVAL_END);
+            shadow.role(propertyBuilder, Role.PRIMARY_INTERVAL_END);
           }
 
           // cases in which second-to-last property was just created
@@ -411,18 +354,20 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
             // still within the path, create object / object array
             Cardinality card = pd.getConstraint(Cardinality.class);
             if (card != null && card.getMaxOccurs() != 1) {
-              propertyBuilder.type(
+              shadow.type(
+                  propertyBuilder,
                   refType.isPresent()
                       ? SchemaBase.Type.FEATURE_REF_ARRAY
                       : SchemaBase.Type.OBJECT_ARRAY);
             } else {
-              propertyBuilder.type(
+              shadow.type(
+                  propertyBuilder,
                   refType.isPresent() ? SchemaBase.Type.FEATURE_REF : SchemaBase.Type.OBJECT);
             }
 
             propertyBuilder.refType(refType);
             propertyBuilder.embed(
-                transformationHints.containsKey("EMBED")
+                transformationHints.isEmbed()
                     ? Optional.of(SchemaBase.Embed.ALWAYS)
                     : Optional.empty());
 
@@ -471,14 +416,11 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
    */
   private String labelValue(PropertyDefinition pd, String propertyPath) {
 
-    Map<String, String> documentationFacets =
-        XtraServerWebApiUtil.parseDescription(pd.getDescription());
-
-    String result = "${" + propertyPath + "label:-";
-    result += documentationFacets.getOrDefault("name", pd.getName().getLocalPart());
-    result += "}";
-
-    return result;
+    return "${"
+        + propertyPath
+        + "label:-"
+        + mappingContext.getDocumentationFacets(pd).getName().orElse(pd.getName().getLocalPart())
+        + "}";
   }
 
   /**
@@ -489,16 +431,11 @@ abstract class AbstractPropertyTransformationHandler implements PropertyTransfor
    */
   private String descriptionValue(PropertyDefinition pd, String propertyPath) {
 
-    Map<String, String> documentationFacets =
-        XtraServerWebApiUtil.parseDescription(pd.getDescription());
-
-    String result = "${" + propertyPath + "description:-";
-    if (documentationFacets.containsKey("definition")) {
-      result += documentationFacets.get("definition");
-    }
-    result += "}";
-
-    return result;
+    return "${"
+        + propertyPath
+        + "description:-"
+        + mappingContext.getDocumentationFacets(pd).getDefinition().orElse("")
+        + "}";
   }
 
   /**
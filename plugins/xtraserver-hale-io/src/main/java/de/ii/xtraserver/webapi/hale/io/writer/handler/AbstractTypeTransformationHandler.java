@@ -18,13 +18,14 @@ package de.ii.xtraserver.webapi.hale.io.writer.handler;
 import com.google.common.collect.ListMultimap;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
 import de.ii.xtraserver.hale.io.compatibility.XtraServerCompatibilityMode;
+import de.ii.xtraserver.hale.io.jfr.CellTransformationEvent;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
+import de.ii.xtraserver.webapi.hale.io.writer.DocumentationFacets.Facets;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Entity;
 import java.util.Collection;
 import java.util.Locale;
-import java.util.Map;
 import javax.xml.namespace.QName;
 import org.geotools.filter.FilterFactoryImpl;
 import org.geotools.filter.visitor.DuplicatingFilterVisitor;
@@ -53,8 +54,22 @@ public abstract class AbstractTypeTransformationHandler implements TypeTransform
 
 	@Override
 	public final ImmutableFeatureSchema.Builder handle(final Cell cell, String providerId) {
+		final CellTransformationEvent event = FlightRecorder.AVAILABLE
+				? CellTransformationEvent.start(MappingContext.EXPORTER, this)
+				: null;
+		try {
+			return handleCell(cell, providerId);
+		} finally {
+			if (event != null) {
+				event.end(cell, mappingContext.getFeatureTypeName());
+			}
+		}
+	}
+
+	private ImmutableFeatureSchema.Builder handleCell(final Cell cell, String providerId) {
 
-		QName featureTypeName = XtraServerMappingUtils.getFeatureTypeName(cell);
+		QName featureTypeName = XtraServerMappingUtils.getFeatureTypeName(cell,
+				mappingContext.getTargetSchemaIndex());
 		ImmutableFeatureSchema.Builder typeBuilder = mappingContext.addNextFeatureSchema(featureTypeName);
 
 		final ListMultimap<String, ? extends Entity> sourceEntities = cell.getSource();
@@ -76,47 +91,36 @@ public abstract class AbstractTypeTransformationHandler implements TypeTransform
 
 		doHandle(sourceTypes, targetType, cell);
 
-		String schemaDescription = targetType.getDefinition().getType().getDescription();
-		String label = labelValue(schemaDescription, featureTypeName.getLocalPart());
+		Facets documentationFacets = mappingContext
+				.getDocumentationFacets(targetType.getDefinition().getType());
+		String label = labelValue(documentationFacets, featureTypeName.getLocalPart());
 		typeBuilder.label(label);
-		String description = descriptionValue(schemaDescription, featureTypeName.getLocalPart());
+		String description = descriptionValue(documentationFacets, featureTypeName.getLocalPart());
 		typeBuilder.description(description);
 
 		return typeBuilder;
 	}
 
 	/**
-	 * @param schemaDescription documentation as defined in the (target) type schema
+	 * @param documentationFacets documentation facets of the (target) type schema
 	 * @param schemaTypeName name of the XML element that represents the (target) type
 	 * @return the value to use for the label within the provider configuration
 	 */
-	private String labelValue(String schemaDescription, String schemaTypeName) {
-
-		Map<String, String> documentationFacets = XtraServerWebApiUtil.parseDescription(schemaDescription);
-
-		String result = "${"+schemaTypeName.toLowerCase(Locale.ENGLISH)+".label:-";
-		result += documentationFacets.getOrDefault("name", schemaTypeName);
-		result += "}";
+	private String labelValue(Facets documentationFacets, String schemaTypeName) {
 
-		return result;
+		return "${" + schemaTypeName.toLowerCase(Locale.ENGLISH) + ".label:-"
+				+ documentationFacets.getName().orElse(schemaTypeName) + "}";
 	}
 
 	/**
-	 * @param schemaDescription documentation as defined in the (target) type schema
+	 * @param documentationFacets documentation facets of the (target) type schema
 	 * @param schemaTypeName name of the XML element that represents the (target) type
-	 * @return the value to use for the label within the provider configuration
+	 * @return the value to use for the description within the provider configuration
 	 */
-	private String descriptionValue(String schemaDescription, String schemaTypeName) {
-
-		Map<String, String> documentationFacets = XtraServerWebApiUtil.parseDescription(schemaDescription);
-
-		String result = "${"+schemaTypeName.toLowerCase(Locale.ENGLISH)+".description:-";
-		if(documentationFacets.containsKey("definition")) {
-			result += documentationFacets.get("definition");
-		}
-		result += "}";
+	private String descriptionValue(Facets documentationFacets, String schemaTypeName) {
 
-		return result;
+		return "${" + schemaTypeName.toLowerCase(Locale.ENGLISH) + ".description:-"
+				+ documentationFacets.getDefinition().orElse("") + "}";
 	}
 
 	public abstract void doHandle(final Collection<? extends Entity> sourceTypes,
@@ -17,20 +17,16 @@ package de.ii.xtraserver.webapi.hale.io.writer.handler;
 
 import static eu.esdihumboldt.hale.common.align.model.functions.AssignFunction.PARAMETER_VALUE;
 
-import com.google.common.collect.ListMultimap;
 import de.ii.xtraplatform.features.domain.FeatureSchema;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
 import de.ii.xtraplatform.features.domain.SchemaBase;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraserver.hale.io.writer.handler.TransformationHandler;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
-import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.align.model.functions.AssignFunction;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
-import java.util.List;
 import java.util.Optional;
 
 /** Transforms the {@link AssignFunction} to a {@link FeatureSchema} */
@@ -59,11 +55,10 @@ class AssignHandler extends AbstractPropertyTransformationHandler {
     }
 
     // Assign constant value from parameters
-    final ListMultimap<String, ParameterValue> parameters =
-        propertyCell.getTransformationParameters();
-    final List<ParameterValue> valueParams = parameters.get(PARAMETER_VALUE);
-    String value = valueParams.get(0).getStringRepresentation();
-    value = mappingContext.resolveProjectVars(value);
+    String value = mappingContext.getResolvedParameter(propertyCell, PARAMETER_VALUE);
+    if (value == null) {
+      throw new IllegalArgumentException("Value for Assign is not set");
+    }
     value = reformatVariable(value, providerId);
 
     /*
@@ -91,6 +86,7 @@ class AssignHandler extends AbstractPropertyTransformationHandler {
     // property creation only after ignore-checks (see above):
     ImmutableFeatureSchema.Builder propertyBuilder =
         buildPropertyPath(propertyCell, targetProperty);
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     if (isGmlUomProperty(pdTgtLast)) {
 
@@ -100,14 +96,12 @@ class AssignHandler extends AbstractPropertyTransformationHandler {
 
       propertyBuilder.constantValue(value);
 
-      SchemaBase.Type baseType =
-          XtraServerWebApiUtil.getWebApiType(
-              pdTgtLast.getPropertyType(), this.mappingContext.getReporter());
+      SchemaBase.Type baseType = this.mappingContext.getWebApiType(pdTgtLast.getPropertyType());
       if (isMultiValuedPropertyPerSchemaDefinition(pdTgtLast)) {
-        propertyBuilder.type(Type.VALUE_ARRAY);
+        shadow.type(propertyBuilder, Type.VALUE_ARRAY);
         propertyBuilder.valueType(baseType);
       } else {
-        propertyBuilder.type(baseType);
+        shadow.type(propertyBuilder, baseType);
       }
     }
 
@@ -24,14 +24,10 @@ import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.ii.xtraserver.hale.io.writer.handler.TransformationHandler;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingFunction;
-import eu.esdihumboldt.hale.common.align.model.functions.ClassificationMappingUtil;
-import eu.esdihumboldt.hale.common.core.io.Value;
-import eu.esdihumboldt.hale.common.core.service.ServiceManager;
 import eu.esdihumboldt.hale.common.lookup.LookupTable;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
@@ -64,23 +60,13 @@ class ClassificationMappingHandler extends AbstractPropertyTransformationHandler
         .getTransformationParameters();
 
     // Assign DB codes and values from the lookup table
-    final LookupTable lookup = ClassificationMappingUtil.getClassificationLookup(parameters,
-        new ServiceManager(ServiceManager.SCOPE_PROJECT));
+    final LookupTable lookup = mappingContext.getLookupTableCache().getLookupTable(parameters);
 
     if (lookup != null) {
 
-      final SortedMap<String, String> codeMappings = new TreeMap<>();
-      final Map<Value, Value> valueMap = lookup.asMap();
-
-      for (Value sourceValue : valueMap.keySet()) {
-        final String targetValueStr = mappingContext.resolveProjectVars(
-            valueMap.get(sourceValue).as(String.class));
-        String sourceValueStr = sourceValue.as(String.class);
-        // TODO - do we need any specific mapping here?
-//				sourceValueStr = "true".equals(sourceValueStr) ? "t" : sourceValueStr;
-//				sourceValueStr = "false".equals(sourceValueStr) ? "f" : sourceValueStr;
-        codeMappings.put(sourceValueStr, targetValueStr);
-      }
+      // TODO - do we need any specific mapping of boolean source values here?
+      final SortedMap<String, String> codeMappings =
+          new TreeMap<>(mappingContext.getLookupTableCache().getEntries(lookup));
 
       Optional<String> fallbackValue = Optional.empty();
       boolean nullifyFallback = false;
@@ -133,6 +119,7 @@ class ClassificationMappingHandler extends AbstractPropertyTransformationHandler
 //      fallbackValue.ifPresent(s -> System.out.println("fallback: " + s));
 
       ImmutableFeatureSchema.Builder propertyBuilder = buildPropertyPath(propertyCell, targetProperty);
+      final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
       Optional<String> joinSourcePath = this.mappingContext.computeJoinSourcePath(
           sourceProperty.getDefinition());
@@ -140,14 +127,14 @@ class ClassificationMappingHandler extends AbstractPropertyTransformationHandler
           .getDefinition());
       if (joinSourcePath.isPresent()) {
         if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-          this.mappingContext.getFirstObjectBuilder(targetProperty)
-              .sourcePath(joinSourcePath.get());
-          propertyBuilder.sourcePath(sourcePath);
+          shadow.sourcePath(
+              this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
+          shadow.sourcePath(propertyBuilder, sourcePath);
         } else {
-          propertyBuilder.sourcePath(joinSourcePath.get() + "/" + sourcePath);
+          shadow.sourcePath(propertyBuilder, joinSourcePath.get() + "/" + sourcePath);
         }
       } else {
-        propertyBuilder.sourcePath(sourcePath);
+        shadow.sourcePath(propertyBuilder, sourcePath);
       }
 
       /*ImmutablePropertyTransformation.Builder codelistTrfBuilder = new ImmutablePropertyTransformation.Builder();
@@ -168,13 +155,12 @@ class ClassificationMappingHandler extends AbstractPropertyTransformationHandler
         propertyBuilder.addAllTransformationsBuilders(nullifyTrfBuilder);
       }
 
-      SchemaBase.Type baseType = XtraServerWebApiUtil.getWebApiType(td,
-          this.mappingContext.getReporter());
+      SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
       if (isMultiValuedPropertyPerSchemaDefinition(targetPd)) {
-        propertyBuilder.type(Type.VALUE_ARRAY);
+        shadow.type(propertyBuilder, Type.VALUE_ARRAY);
         propertyBuilder.valueType(baseType);
       } else {
-        propertyBuilder.type(baseType);
+        shadow.type(propertyBuilder, baseType);
       }
 /*
       // create actual codelist entity with ldproxyCfg
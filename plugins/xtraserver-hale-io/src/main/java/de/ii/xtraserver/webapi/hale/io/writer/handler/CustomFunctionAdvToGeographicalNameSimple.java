@@ -47,6 +47,7 @@ class CustomFunctionAdvToGeographicalNameSimple extends FormattedStringHandler {
     String featureTypeNameLowerCase = mappingContext.getFeatureTypeName()
         .toLowerCase(Locale.ENGLISH);
     ImmutableFeatureSchema.Builder propertyBuilder = new ImmutableFeatureSchema.Builder();
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
     String pName = "name_deu";
     propertyBuilder.name(pName);
     String documentationVariableFacetPrefix = "${" + featureTypeNameLowerCase + "." + pName;
@@ -63,12 +64,12 @@ class CustomFunctionAdvToGeographicalNameSimple extends FormattedStringHandler {
     if (joinSourcePath.isPresent()) {
       // multiple names are possible!
       sourcePath = joinSourcePath.get() + "/" + sourcePath;
-      propertyBuilder.type(SchemaBase.Type.VALUE_ARRAY);
+      shadow.type(propertyBuilder, SchemaBase.Type.VALUE_ARRAY);
       propertyBuilder.valueType(SchemaBase.Type.STRING);
     } else {
-      propertyBuilder.type(SchemaBase.Type.STRING);
+      shadow.type(propertyBuilder, SchemaBase.Type.STRING);
     }
-    propertyBuilder.sourcePath(sourcePath);
+    shadow.sourcePath(propertyBuilder, sourcePath);
 
     return Optional.of(propertyBuilder);
   }
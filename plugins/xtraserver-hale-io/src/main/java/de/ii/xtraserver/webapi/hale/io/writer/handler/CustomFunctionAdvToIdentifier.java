@@ -21,7 +21,6 @@ import de.ii.xtraplatform.features.domain.SchemaBase;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.core.io.Value;
@@ -61,26 +60,26 @@ class CustomFunctionAdvToIdentifier extends FormattedStringHandler {
 
 		Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
 		ImmutableFeatureSchema.Builder propertyBuilder = buildPropertyPath(propertyCell, targetProperty);
+		final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
 		PropertyDefinition pd = getLastPropertyDefinition(targetProperty);
 		TypeDefinition td = pd.getPropertyType();
 
 		String sourcePath = this.mappingContext.computeSourcePropertyName(sourceProperty
 				.getDefinition());
-		propertyBuilder.sourcePath(sourcePath);
+		shadow.sourcePath(propertyBuilder, sourcePath);
 
 		ImmutablePropertyTransformation.Builder trfBuilder = new ImmutablePropertyTransformation.Builder();
 		trfBuilder.stringFormat(value);
 
 		propertyBuilder.addAllTransformationsBuilders(trfBuilder);
 
-		SchemaBase.Type baseType = XtraServerWebApiUtil.getWebApiType(td,
-				this.mappingContext.getReporter());
+		SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
 		if (isMultiValuedPropertyPerSchemaDefinition(pd)) {
-			propertyBuilder.type(Type.VALUE_ARRAY);
+			shadow.type(propertyBuilder, Type.VALUE_ARRAY);
 			propertyBuilder.valueType(baseType);
 		} else {
-			propertyBuilder.type(baseType);
+			shadow.type(propertyBuilder, baseType);
 		}
 
 		return Optional.of(propertyBuilder);
@@ -22,7 +22,6 @@ import de.ii.xtraplatform.features.domain.SchemaBase.Role;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
@@ -51,30 +50,30 @@ class CustomFunctionAdvToLocalId extends FormattedStringHandler {
     Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
 
     ImmutableFeatureSchema.Builder propertyBuilder = buildPropertyPath(propertyCell, targetProperty);
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     String sourcePropertyName = propertyName(sourceProperty);
 
     String sourcePath = this.mappingContext.computeSourcePropertyName(sourceProperty
         .getDefinition());
-    propertyBuilder.sourcePath(sourcePath);
+    shadow.sourcePath(propertyBuilder, sourcePath);
 
     PropertyDefinition pd = getLastPropertyDefinition(targetProperty);
     TypeDefinition td = pd.getPropertyType();
 
-    SchemaBase.Type baseType = XtraServerWebApiUtil.getWebApiType(td,
-        this.mappingContext.getReporter());
+    SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
     if (isMultiValuedPropertyPerSchemaDefinition(pd)) {
-      propertyBuilder.type(Type.VALUE_ARRAY);
+      shadow.type(propertyBuilder, Type.VALUE_ARRAY);
       propertyBuilder.valueType(baseType);
     } else {
-      propertyBuilder.type(baseType);
+      shadow.type(propertyBuilder, baseType);
     }
 
     String targetPropertyName = propertyName(targetProperty);
 
     if(targetPropertyName.equals("id")) {
 
-      propertyBuilder.role(Role.ID);
+      shadow.role(propertyBuilder, Role.ID);
 
       this.mappingContext.setMainSortKeyField(sourcePropertyName);
 
@@ -56,15 +56,16 @@ class CustomFunctionAdvToNamespace extends FormattedStringHandler {
 
 			ImmutableFeatureSchema.Builder propertyBuilder = buildPropertyPath(propertyCell, targetProperty
 			);
+			final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
 			propertyBuilder.constantValue(value);
 
 			SchemaBase.Type baseType = SchemaBase.Type.STRING;
 			if (isMultiValuedPropertyPerSchemaDefinition(getLastPropertyDefinition(targetProperty))) {
-				propertyBuilder.type(Type.VALUE_ARRAY);
+				shadow.type(propertyBuilder, Type.VALUE_ARRAY);
 				propertyBuilder.valueType(baseType);
 			} else {
-				propertyBuilder.type(baseType);
+				shadow.type(propertyBuilder, baseType);
 			}
 
 			return Optional.of(propertyBuilder);
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.handler;
+
+import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
+import de.ii.xtraplatform.features.domain.SchemaBase.Role;
+import de.ii.xtraplatform.features.domain.SchemaBase.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Mutable shadow of the feature schema builders of the current feature type. The source paths,
+ * types, roles and coalesce/concat wrappers are recorded as they are set, so the handlers can
+ * inspect the state of a builder without building the immutable schema tree. Handlers change
+ * these attributes only with the setters of this class, otherwise the shadow gets out of sync.
+ */
+final class FeatureSchemaShadow {
+
+  private final Map<ImmutableFeatureSchema.Builder, Node> nodes = new IdentityHashMap<>();
+  private boolean hasPrimaryGeometry;
+
+  /**
+   * @return true if a property of the current feature type is a primary geometry, or a geometry
+   *     that would be used as primary geometry
+   */
+  boolean hasPrimaryGeometry() {
+    return hasPrimaryGeometry;
+  }
+
+  void sourcePath(final ImmutableFeatureSchema.Builder builder, final String sourcePath) {
+    builder.sourcePath(sourcePath);
+    node(builder).sourcePath = sourcePath;
+  }
+
+  void clearSourcePath(final ImmutableFeatureSchema.Builder builder) {
+    builder.sourcePath(Optional.empty());
+    node(builder).sourcePath = null;
+  }
+
+  void addSourcePath(final ImmutableFeatureSchema.Builder builder, final String sourcePath) {
+    builder.addSourcePaths(sourcePath);
+    node(builder).sourcePaths.add(sourcePath);
+  }
+
+  Optional<String> getSourcePath(final ImmutableFeatureSchema.Builder builder) {
+    final Node node = nodes.get(builder);
+    return node == null ? Optional.empty() : Optional.ofNullable(node.sourcePath);
+  }
+
+  List<String> getSourcePaths(final ImmutableFeatureSchema.Builder builder) {
+    final Node node = nodes.get(builder);
+    return node == null ? List.of() : Collections.unmodifiableList(node.sourcePaths);
+  }
+
+  /**
+   * @return the source path as single element list if it is set, otherwise the source paths
+   */
+  List<String> getEffectiveSourcePaths(final ImmutableFeatureSchema.Builder builder) {
+    final Optional<String> sourcePath = getSourcePath(builder);
+    return sourcePath.isPresent() ? List.of(sourcePath.get()) : getSourcePaths(builder);
+  }
+
+  void type(final ImmutableFeatureSchema.Builder builder, final Type type) {
+    builder.type(type);
+    node(builder).type = type;
+    if (type == Type.GEOMETRY) {
+      hasPrimaryGeometry = true;
+    }
+  }
+
+  /**
+   * @return the type of the builder, the schema is only built if the type was not set with {@link
+   *     #type(ImmutableFeatureSchema.Builder, Type)}
+   */
+  Type getType(final ImmutableFeatureSchema.Builder builder) {
+    final Node node = nodes.get(builder);
+    if (node != null && node.type != null) {
+      return node.type;
+    }
+    return builder.build().getType();
+  }
+
+  void role(final ImmutableFeatureSchema.Builder builder, final Role role) {
+    builder.role(role);
+    if (role == Role.PRIMARY_GEOMETRY) {
+      hasPrimaryGeometry = true;
+    }
+  }
+
+  /** Record that the builder wraps the alternatives of a property. */
+  void setCoalesce(final ImmutableFeatureSchema.Builder builder) {
+    node(builder).coalesce = true;
+  }
+
+  boolean isCoalesce(final ImmutableFeatureSchema.Builder builder) {
+    final Node node = nodes.get(builder);
+    return node != null && node.coalesce;
+  }
+
+  /** Record that the builder wraps the concatenated values of a property. */
+  void setConcat(final ImmutableFeatureSchema.Builder builder) {
+    node(builder).concat = true;
+  }
+
+  boolean isConcat(final ImmutableFeatureSchema.Builder builder) {
+    final Node node = nodes.get(builder);
+    return node != null && node.concat;
+  }
+
+  private Node node(final ImmutableFeatureSchema.Builder builder) {
+    return nodes.computeIfAbsent(builder, b -> new Node());
+  }
+
+  private static final class Node {
+
+    private String sourcePath;
+    private final List<String> sourcePaths = new ArrayList<>(1);
+    private Type type;
+    private boolean coalesce;
+    private boolean concat;
+  }
+}
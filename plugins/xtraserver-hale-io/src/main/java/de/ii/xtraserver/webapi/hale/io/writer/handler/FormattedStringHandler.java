@@ -25,7 +25,6 @@ import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.ii.xtraserver.hale.io.writer.handler.TransformationHandler;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Entity;
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
@@ -35,7 +34,6 @@ import eu.esdihumboldt.hale.common.align.model.functions.FormattedStringFunction
 import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
-import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -61,10 +59,11 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
     // Get the formatted string from parameters
     final ListMultimap<String, ParameterValue> parameters =
         propertyCell.getTransformationParameters();
-    List<ParameterValue> patterns =
+    final String patternParameter =
         propertyCell.getTransformationIdentifier().equals(AssignFunction.ID_BOUND)
-            ? parameters.get(PARAMETER_VALUE)
-            : parameters.get("pattern");
+            ? PARAMETER_VALUE
+            : "pattern";
+    List<ParameterValue> patterns = parameters.get(patternParameter);
 
     if (patterns == null || patterns.isEmpty() || patterns.get(0).isEmpty()) {
       mappingContext.getReporter().warn("Formatted string was ignored, no pattern set.");
@@ -72,10 +71,11 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
     }
     final String pattern = patterns.get(0).as(String.class);
     final StringBuilder formattedStr =
-        new StringBuilder(mappingContext.resolveProjectVars(pattern));
+        new StringBuilder(mappingContext.getResolvedParameter(propertyCell, patternParameter));
 
     Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
     ImmutableFeatureSchema.Builder propertyBuilder;
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     PropertyDefinition pd = getLastPropertyDefinition(targetProperty);
     TypeDefinition td = pd.getPropertyType();
@@ -130,17 +130,7 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
                 "\\{" + var + "\\}", "\\{\\{" + varReplacementValue + "\\}\\}");
       }
 
-      boolean isObjectReference = false;
-      if (targetProperty
-          .getDefinition()
-          .getDefinition()
-          .getConstraint(Reference.class)
-          .isReference()) {
-        final String associationTargetRef = getTargetFromSchema(targetProperty);
-        if (associationTargetRef != null) {
-          isObjectReference = true;
-        }
-      }
+      boolean isObjectReference = getAssociationTarget(propertyCell).isPresent();
 
       Optional<String> refType = Optional.empty();
 
@@ -175,7 +165,7 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
 
       // check if the property has already been established
       // TODO - FUTURE WORK (multiplicity not supported yet)
-      if (!propertyBuilder.build().getEffectiveSourcePaths().isEmpty()) {
+      if (!shadow.getEffectiveSourcePaths(propertyBuilder).isEmpty()) {
         mappingContext
             .getReporter()
             .warn(
@@ -191,30 +181,28 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
             this.mappingContext.computeSourcePropertyName(variableSourceEntities.get(0));
         if (joinSourcePath.isPresent()) {
           if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-            this.mappingContext
-                .getFirstObjectBuilder(targetProperty)
-                .sourcePath(joinSourcePath.get());
-            propertyBuilder.sourcePath(sourcePath);
+            shadow.sourcePath(
+                this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
+            shadow.sourcePath(propertyBuilder, sourcePath);
           } else {
-            propertyBuilder.sourcePath(joinSourcePath.get() + "/" + sourcePath);
+            shadow.sourcePath(propertyBuilder, joinSourcePath.get() + "/" + sourcePath);
           }
         } else {
-          propertyBuilder.sourcePath(sourcePath);
+          shadow.sourcePath(propertyBuilder, sourcePath);
         }
       } else {
         for (PropertyEntityDefinition ped : variableSourceEntities) {
           String sourcePath = this.mappingContext.computeSourcePropertyName(ped);
           if (joinSourcePath.isPresent()) {
             if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-              this.mappingContext
-                  .getFirstObjectBuilder(targetProperty)
-                  .sourcePath(joinSourcePath.get());
-              propertyBuilder.addSourcePaths(sourcePath);
+              shadow.sourcePath(
+                  this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
+              shadow.addSourcePath(propertyBuilder, sourcePath);
             } else {
-              propertyBuilder.addSourcePaths(joinSourcePath.get() + "/" + sourcePath);
+              shadow.addSourcePath(propertyBuilder, joinSourcePath.get() + "/" + sourcePath);
             }
           } else {
-            propertyBuilder.addSourcePaths(sourcePath);
+            shadow.addSourcePath(propertyBuilder, sourcePath);
           }
 
           /* TODO: create object with objectReduceFormat transformation
@@ -257,15 +245,14 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
           this.mappingContext.computeSourcePropertyName(sourceProperty.getDefinition());
       if (joinSourcePath.isPresent()) {
         if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-          this.mappingContext
-              .getFirstObjectBuilder(targetProperty)
-              .sourcePath(joinSourcePath.get());
+          shadow.sourcePath(
+              this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
         } else {
           sourcePath = joinSourcePath.get() + "/" + sourcePath;
         }
       }
 
-      propertyBuilder.sourcePath(sourcePath);
+      shadow.sourcePath(propertyBuilder, sourcePath);
 
       ImmutablePropertyTransformation.Builder trfBuilder =
           new ImmutablePropertyTransformation.Builder();
@@ -274,13 +261,12 @@ class FormattedStringHandler extends AbstractPropertyTransformationHandler {
       propertyBuilder.addAllTransformationsBuilders(trfBuilder);
     }
 
-    SchemaBase.Type baseType =
-        XtraServerWebApiUtil.getWebApiType(td, this.mappingContext.getReporter());
+    SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
     if (isMultiValuedPropertyPerSchemaDefinition(pd)) {
-      propertyBuilder.type(Type.VALUE_ARRAY);
+      shadow.type(propertyBuilder, Type.VALUE_ARRAY);
       propertyBuilder.valueType(baseType);
     } else {
-      propertyBuilder.type(baseType);
+      shadow.type(propertyBuilder, baseType);
     }
 
     return Optional.of(propertyBuilder);
@@ -15,21 +15,18 @@
 
 package de.ii.xtraserver.webapi.hale.io.writer.handler;
 
-import static eu.esdihumboldt.hale.common.align.model.functions.JoinFunction.PARAMETER_JOIN;
-
 import de.ii.xtraplatform.features.domain.FeatureSchema;
+import de.ii.xtraserver.hale.io.writer.JoinChain;
 import de.ii.xtraserver.hale.io.writer.handler.TransformationHandler;
 import eu.esdihumboldt.hale.common.align.model.AlignmentUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Entity;
-import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.functions.JoinFunction;
 import eu.esdihumboldt.hale.common.align.model.functions.join.JoinParameter;
 import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Transforms the {@link JoinFunction} to a {@link FeatureSchema}
@@ -47,47 +44,31 @@ class JoinHandler extends AbstractTypeTransformationHandler {
 	public void doHandle(final Collection<? extends Entity> sourceTypes, final Entity targetType,
 			final Cell typeCell) {
 
-		List<ParameterValue> typeCellJoinParameters = typeCell.getTransformationParameters()
-				.get(PARAMETER_JOIN);
-
-		for (final ParameterValue transParam : typeCellJoinParameters) {
-
-			final JoinParameter joinParameter = transParam.as(JoinParameter.class);
-			final String validation = joinParameter.validate();
-			if (validation != null) {
-				throw new IllegalArgumentException("Join parameter invalid: " + validation);
-			}
+		for (final JoinChain joinChain : mappingContext.getAlignmentIndex()
+				.getJoinChains(typeCell)) {
 
 			// get the (ordered) list of type definitions that are defined for the Join
 			// the first type definition defines the main table for the type mapping
-			List<TypeEntityDefinition> joinParameterTypes = joinParameter.getTypes();
+			List<TypeEntityDefinition> joinParameterTypes = joinChain.getTypes();
 			TypeEntityDefinition mainTypeEntityDefinition = joinParameterTypes.get(0);
 			this.mappingContext.setMainEntityDefinition(mainTypeEntityDefinition);
 
 			// Extract table mapping infos from join conditions
-			final List<JoinParameter.JoinCondition> sortedConditions = transformSortedConditions(joinParameter);
-			for(JoinParameter.JoinCondition jc : sortedConditions) {
+			for(JoinParameter.JoinCondition jc : joinChain.getSortedConditions()) {
 				String baseTableName = jc.baseProperty.getType().getName().getLocalPart();
 				String baseTableJoinField = jc.baseProperty.getLastPathElement().getChild().getName().getLocalPart();
 				String joinTableName = jc.joinProperty.getType().getName().getLocalPart();
 				String joinTableJoinField = jc.joinProperty.getLastPathElement().getChild().getName().getLocalPart();
 
-				JoinInfo ji = new JoinInfo(baseTableName,baseTableJoinField,joinTableName,joinTableJoinField);
+				JoinInfo ji = new JoinInfo(baseTableName, baseTableJoinField, joinTableName,
+						joinTableJoinField, AlignmentUtil.getTypeEntity(jc.baseProperty),
+						AlignmentUtil.getTypeEntity(jc.joinProperty));
 				this.mappingContext.addJoinInfo(ji);
 			}
 
 			// TODO - FUTURE WORK - multiple joins for same target type
 		}
-	}
-
-	private List<JoinParameter.JoinCondition> transformSortedConditions(final JoinParameter joinParameter) {
-
-		return joinParameter.getConditions().stream().sorted((o1, o2) -> {
-			TypeEntityDefinition o1Type = AlignmentUtil.getTypeEntity(o1.joinProperty);
-			TypeEntityDefinition o2Type = AlignmentUtil.getTypeEntity(o2.joinProperty);
-			return joinParameter.getTypes().indexOf(o1Type)
-					- joinParameter.getTypes().indexOf(o2Type);
-		}).collect(Collectors.toList());
+		mappingContext.reportUnresolvedJoins();
 	}
 
 }
@@ -15,19 +15,35 @@
 
 package de.ii.xtraserver.webapi.hale.io.writer.handler;
 
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+
 public class JoinInfo {
 
   private final String baseTableName;
   private final String baseTableJoinField;
   private final String joinTableName;
   private final String joinTableJoinField;
+  private final TypeEntityDefinition baseType;
+  private final TypeEntityDefinition joinType;
 
   public JoinInfo(String baseTableName, String baseTableJoinField, String joinTableName,
       String joinTableJoinField) {
+    this(baseTableName, baseTableJoinField, joinTableName, joinTableJoinField, null, null);
+  }
+
+  /**
+   * @param baseType the type of the base table in the join parameter, distinguishes joins of the
+   *     same table, may be null
+   * @param joinType the type of the joined table in the join parameter, may be null
+   */
+  public JoinInfo(String baseTableName, String baseTableJoinField, String joinTableName,
+      String joinTableJoinField, TypeEntityDefinition baseType, TypeEntityDefinition joinType) {
     this.baseTableName = baseTableName;
     this.baseTableJoinField = baseTableJoinField;
     this.joinTableName = joinTableName;
     this.joinTableJoinField = joinTableJoinField;
+    this.baseType = baseType;
+    this.joinType = joinType;
   }
 
   public String getBaseTableName() {
@@ -45,4 +61,12 @@ public class JoinInfo {
   public String getJoinTableJoinField() {
     return joinTableJoinField;
   }
+
+  public TypeEntityDefinition getBaseType() {
+    return baseType;
+  }
+
+  public TypeEntityDefinition getJoinType() {
+    return joinType;
+  }
 }
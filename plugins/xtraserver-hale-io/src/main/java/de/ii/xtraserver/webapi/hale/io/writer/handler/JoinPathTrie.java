@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.handler;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Caches the join source path prefixes of a feature type, e.g. <code>[id=fk]table/[id=fk]other
+ * </code>. The joins form a trie rooted at the main table, the prefix of every joined table
+ * extends the prefix of its base table and is computed and interned once when the join is added,
+ * instead of walking the joins for every property.
+ *
+ * <p>Every join gets its own node, keyed by its base node, the type or, if the type is unknown,
+ * the name of the joined table and the join condition. A table that is joined more than once, e.g.
+ * in a self-join or with different join conditions, keeps a node per join and gets the aliases
+ * <code>table</code>, <code>table_2</code>, ... in join order. Adding the same join again returns
+ * the existing node.
+ *
+ * <p>A source property only carries its type, so a joined table is found by the {@link
+ * TypeEntityDefinition} of the property or, if the type is unknown, by its name. If several joins
+ * match, the first one is used.
+ */
+final class JoinPathTrie {
+
+  private static final Interner<String> PREFIXES = Interners.newWeakInterner();
+
+  private final Node root;
+  private final Map<JoinKey, Node> nodesByJoin = new HashMap<>();
+  private final Map<TypeEntityDefinition, Node> nodesByType = new HashMap<>();
+  private final Map<String, Node> nodesByTable = new HashMap<>();
+  private final Map<String, Node> nodesByAlias = new LinkedHashMap<>();
+  private final Map<String, Integer> joinsPerTable = new HashMap<>();
+  private final List<JoinInfo> pending = new ArrayList<>();
+
+  /**
+   * @param mainType the type of the main table
+   * @param mainTableName the name of the main table
+   */
+  JoinPathTrie(final TypeEntityDefinition mainType, final String mainTableName) {
+    this.root = new Node(mainTableName, null, "");
+    nodesByType.put(mainType, root);
+  }
+
+  /**
+   * Add a join to the trie. Joins whose base table is not part of the trie yet are kept until the
+   * base table is added, see {@link #reportPending(IOReporter, String)}.
+   *
+   * @param joinInfo the join
+   */
+  void add(final JoinInfo joinInfo) {
+    pending.add(joinInfo);
+    boolean added = true;
+    while (added && !pending.isEmpty()) {
+      added = false;
+      for (final Iterator<JoinInfo> it = pending.iterator(); it.hasNext(); ) {
+        final JoinInfo next = it.next();
+        final Node parent = find(next.getBaseType(), next.getBaseTableName());
+        if (parent != null) {
+          it.remove();
+          attach(parent, next);
+          added = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Report the joins whose base table was never joined with the main table. They are not part of
+   * any source path.
+   *
+   * @param reporter the reporter
+   * @param featureTypeName the name of the feature type
+   */
+  void reportPending(final IOReporter reporter, final String featureTypeName) {
+    for (final JoinInfo joinInfo : pending) {
+      reporter.warn(
+          "Join of table {0} with table {1} in Feature Type {2} was ignored, table {1} is not"
+              + " joined with the main table {3}.",
+          joinInfo.getJoinTableName(),
+          joinInfo.getBaseTableName(),
+          featureTypeName,
+          root.tableName);
+    }
+    pending.clear();
+  }
+
+  private void attach(final Node parent, final JoinInfo joinInfo) {
+    final JoinKey key = new JoinKey(parent, joinInfo);
+    if (nodesByJoin.containsKey(key)) {
+      return;
+    }
+    final String segment =
+        "["
+            + joinInfo.getBaseTableJoinField()
+            + "="
+            + joinInfo.getJoinTableJoinField()
+            + "]"
+            + joinInfo.getJoinTableName();
+    final String prefix =
+        PREFIXES.intern(parent == root ? segment : parent.prefix + "/" + segment);
+
+    final String tableName = joinInfo.getJoinTableName();
+    final int joins = joinsPerTable.merge(tableName, 1, Integer::sum);
+    final String alias = joins == 1 ? tableName : tableName + "_" + joins;
+
+    final Node node = new Node(tableName, joinInfo, prefix);
+    nodesByJoin.put(key, node);
+    nodesByAlias.put(alias, node);
+    nodesByTable.putIfAbsent(tableName, node);
+    if (joinInfo.getJoinType() != null) {
+      nodesByType.putIfAbsent(joinInfo.getJoinType(), node);
+    }
+  }
+
+  /**
+   * Find the node of a table, by its type or, if the type is unknown, by the table name.
+   *
+   * @param type the type of the table, may be null
+   * @param tableName the name of the table
+   * @return the node or null if the table is not part of the trie
+   */
+  private Node find(final TypeEntityDefinition type, final String tableName) {
+    if (type != null) {
+      final Node node = nodesByType.get(type);
+      if (node != null) {
+        return node;
+      }
+    }
+    if (root.tableName.equals(tableName)) {
+      return root;
+    }
+    return nodesByTable.get(tableName);
+  }
+
+  /**
+   * @param type the type of a source property
+   * @param tableName the table name of the source property
+   * @return the join source path prefix of the table, empty for the main table
+   * @throws IllegalStateException if the table is not joined with the main table
+   */
+  Optional<String> getSourcePathPrefix(final TypeEntityDefinition type, final String tableName) {
+    final Node node = find(type, tableName);
+    if (node == null) {
+      throw new IllegalStateException(
+          "Table " + tableName + " is not joined with the main table " + root.tableName);
+    }
+    return node == root ? Optional.empty() : Optional.of(node.prefix);
+  }
+
+  /**
+   * @return the joins by the alias of the joined table, in join order. Tables that are joined more
+   *     than once get the aliases <code>table</code>, <code>table_2</code>, ...
+   */
+  Map<String, JoinInfo> getJoinsByAlias() {
+    final Map<String, JoinInfo> joins = new LinkedHashMap<>();
+    nodesByAlias.forEach((alias, node) -> joins.put(alias, node.joinInfo));
+    return Collections.unmodifiableMap(joins);
+  }
+
+  private static final class Node {
+
+    private final String tableName;
+    private final JoinInfo joinInfo;
+    private final String prefix;
+
+    private Node(final String tableName, final JoinInfo joinInfo, final String prefix) {
+      this.tableName = tableName;
+      this.joinInfo = joinInfo;
+      this.prefix = prefix;
+    }
+  }
+
+  /** A join below a base node: the joined table, by type or name, and the join condition. */
+  private static final class JoinKey {
+
+    private final Node parent;
+    private final Object table;
+    private final String baseField;
+    private final String joinField;
+
+    private JoinKey(final Node parent, final JoinInfo joinInfo) {
+      this.parent = parent;
+      this.table =
+          joinInfo.getJoinType() != null ? joinInfo.getJoinType() : joinInfo.getJoinTableName();
+      this.baseField = joinInfo.getBaseTableJoinField();
+      this.joinField = joinInfo.getJoinTableJoinField();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof JoinKey)) {
+        return false;
+      }
+      final JoinKey other = (JoinKey) o;
+      return parent == other.parent
+          && table.equals(other.table)
+          && Objects.equals(baseField, other.baseField)
+          && Objects.equals(joinField, other.joinField);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(parent), table, baseField, joinField);
+    }
+  }
+}
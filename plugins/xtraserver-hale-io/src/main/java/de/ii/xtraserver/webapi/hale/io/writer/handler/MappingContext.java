@@ -22,12 +22,29 @@ import de.ii.xtraplatform.features.domain.FeatureProviderDataV2;
 import de.ii.xtraplatform.features.domain.FeatureSchema;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
 import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema.Builder;
+import de.ii.xtraplatform.features.domain.SchemaBase;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.sql.domain.ConnectionInfoSql.Dialect;
 import de.ii.xtraplatform.features.sql.domain.ImmutableFeatureProviderSqlData;
+import de.ii.xtraserver.hale.io.jfr.FlightRecorder;
+import de.ii.xtraserver.hale.io.jfr.MappingBuildEvent;
+import de.ii.xtraserver.hale.io.writer.AlignmentAnalysis;
+import de.ii.xtraserver.hale.io.writer.AlignmentIndex;
+import de.ii.xtraserver.hale.io.writer.LookupTableCache;
+import de.ii.xtraserver.hale.io.writer.ProjectVariableTemplates;
+import de.ii.xtraserver.hale.io.writer.TargetSchemaIndex;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex;
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex.CellHints;
+import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
+import de.ii.xtraserver.hale.io.writer.handler.CellParentWrapper;
+import de.ii.xtraserver.webapi.hale.io.writer.DocumentationFacets;
+import de.ii.xtraserver.webapi.hale.io.writer.DocumentationFacets.Facets;
+import de.ii.xtraserver.webapi.hale.io.writer.WebApiTypeResolver;
 import de.ii.xtraserver.webapi.hale.io.writer.visitor.FilterInvalidMeasureProperties;
+import de.ii.xtraserver.webapi.hale.io.writer.visitor.SchemaRulePipeline;
 import de.interactive_instruments.xtraserver.config.api.XtraServerMappingBuilder;
 import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.AlignmentUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.EntityDefinition;
 import eu.esdihumboldt.hale.common.align.model.Property;
@@ -35,20 +52,24 @@ import eu.esdihumboldt.hale.common.align.model.impl.PropertyEntityDefinition;
 import eu.esdihumboldt.hale.common.core.io.Value;
 import eu.esdihumboldt.hale.common.core.io.project.ProjectInfo;
 import eu.esdihumboldt.hale.common.core.io.report.IOReporter;
+import eu.esdihumboldt.hale.common.schema.model.Definition;
 import eu.esdihumboldt.hale.common.schema.model.Schema;
 import eu.esdihumboldt.hale.common.schema.model.SchemaSpace;
+import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.stream.Collectors;
 import javax.xml.namespace.QName;
 
 /**
@@ -57,26 +78,35 @@ import javax.xml.namespace.QName;
  */
 public final class MappingContext {
 
+  static final String EXPORTER = "XtraServer Web API";
+
   static final String PROPERTY_ADV_MODELLART = "ADV_MODELLART";
   static final String PROPERTY_INSPIRE_NAMESPACE = "INSPIRE_NAMESPACE";
+  static final String PROPERTY_PARALLELISM = AlignmentAnalysis.PROPERTY_PARALLELISM;
   static final ImmutableList<QName> EMPTY_PATH = ImmutableList.of(new QName("__EMPTY__"));
 
+  /** Post-processing rules that are applied to every feature type in a single traversal. */
+  private static final SchemaRulePipeline SCHEMA_RULES =
+      new SchemaRulePipeline(new FilterInvalidMeasureProperties());
+
   private final Alignment alignment;
   private final Map<String, Value> transformationProperties;
-  private static final Pattern projectVarPattern = Pattern.compile("\\{\\{project:([^}]+)}}");
 
   /** Stores the feature schema builders generated while processing the alignment */
   private final Map<String, ImmutableFeatureSchema.Builder> featureTypeMappings =
       new LinkedHashMap<>();
 
   private final Map<String, Codelist> codeLists = new LinkedHashMap<>();
+  // ids of the code lists that were added since the last call of clearAddedCodeListIds()
+  private final Set<String> addedCodeListIds = new LinkedHashSet<>();
 
   private ImmutableFeatureSchema.Builder currentFeatureTypeMapping = null;
   private String currentFeatureTypeMappingName = null;
   private EntityDefinition currentMainEntityDefinition = null;
   private String currentMainTableName = null;
   private String currentMainSortKeyField = null;
-  private Map<String, JoinInfo> currentJoinInfoByJoinTableName = new HashMap<>();
+  private JoinPathTrie currentJoinPathTrie = null;
+  private FeatureSchemaShadow currentFeatureSchemaShadow = new FeatureSchemaShadow();
 
   // TODO - not sure if we need a separate set of "current" featureTypeMappings ... maybe in the
   //  future for cases of multiple type-relations for the same target type
@@ -90,6 +120,14 @@ public final class MappingContext {
   private final URI projectLocation;
   private final IOReporter reporter;
   private final LdproxyCfgWriter ldproxyCfg;
+  private final TargetSchemaIndex targetSchemaIndex;
+  private final AlignmentIndex alignmentIndex;
+  private final TransformationHintIndex transformationHintIndex;
+  private final ProjectVariableTemplates projectVariableTemplates;
+  private final LookupTableCache lookupTableCache;
+  private final int parallelism;
+  private final WebApiTypeResolver webApiTypeResolver;
+  private final DocumentationFacets documentationFacets = new DocumentationFacets();
   private Map<Property, Builder> currentFirstObjectBuilderMappings = new HashMap<>();
   private Map<String, List<PropertyTransformationHandler>>
       currentPropertyHandlersByTargetPropertyPath = new HashMap<>();
@@ -113,6 +151,38 @@ public final class MappingContext {
       final URI projectLocation,
       final IOReporter reporter,
       LdproxyCfgWriter ldproxyCfg) {
+    this(
+        alignment,
+        schemaspace,
+        transformationProperties,
+        projectInfo,
+        projectLocation,
+        reporter,
+        ldproxyCfg,
+        new AlignmentAnalysis(alignment, schemaspace, transformationProperties, reporter));
+  }
+
+  /**
+   * Constructor that uses an existing analysis of the alignment. Only the first schema is used
+   *
+   * @param alignment the Alignment with all cells
+   * @param schemaspace the target schema
+   * @param transformationProperties Properties used in transformations
+   * @param projectInfo project info
+   * @param projectLocation project file
+   * @param reporter reporter
+   * @param ldproxyCfg ldproxyCfg
+   * @param analysis the analysis of the alignment, may be shared with other exports
+   */
+  public MappingContext(
+      final Alignment alignment,
+      final SchemaSpace schemaspace,
+      final Map<String, Value> transformationProperties,
+      final ProjectInfo projectInfo,
+      final URI projectLocation,
+      final IOReporter reporter,
+      LdproxyCfgWriter ldproxyCfg,
+      final AlignmentAnalysis analysis) {
     this.alignment = Objects.requireNonNull(alignment);
     this.transformationProperties = Objects.requireNonNull(transformationProperties);
 
@@ -123,10 +193,63 @@ public final class MappingContext {
     }
     final Schema schema = it.next();
     this.applicationSchemaUri = schema.getLocation();
+    this.targetSchemaIndex = analysis.getTargetSchemaIndex();
     this.projectInfo = projectInfo;
     this.projectLocation = projectLocation;
     this.reporter = reporter;
     this.ldproxyCfg = ldproxyCfg;
+    this.alignmentIndex = analysis.getAlignmentIndex();
+    this.transformationHintIndex = analysis.getTransformationHintIndex();
+    this.projectVariableTemplates = analysis.getProjectVariableTemplates();
+    this.lookupTableCache = analysis.getLookupTableCache();
+    this.parallelism = analysis.getParallelism();
+    this.webApiTypeResolver =
+        new WebApiTypeResolver(transformationProperties, projectLocation, reporter);
+  }
+
+  /**
+   * @return the cached metadata of the target schema
+   */
+  public TargetSchemaIndex getTargetSchemaIndex() {
+    return this.targetSchemaIndex;
+  }
+
+  /**
+   * @return the grouped and sorted cells of the alignment
+   */
+  public AlignmentIndex getAlignmentIndex() {
+    return this.alignmentIndex;
+  }
+
+  /**
+   * @return the resolved lookup tables of the classification mappings
+   */
+  public LookupTableCache getLookupTableCache() {
+    return this.lookupTableCache;
+  }
+
+  /**
+   * @param td the schema type of a target property
+   * @return the Web API type of the schema type
+   */
+  public SchemaBase.Type getWebApiType(final TypeDefinition td) {
+    return this.webApiTypeResolver.resolve(td);
+  }
+
+  /**
+   * @param definition a type or property definition of the target schema
+   * @return the documentation facets from the description of the definition
+   */
+  public Facets getDocumentationFacets(final Definition<?> definition) {
+    return this.documentationFacets.get(definition);
+  }
+
+  /**
+   * @param cell the cell
+   * @return the transformation hints from the documentation of the cell
+   */
+  public CellHints getTransformationHints(final Cell cell) {
+    return this.transformationHintIndex.get(cell);
   }
 
   public void setMainEntityDefinition(EntityDefinition mainEntityDefinition) {
@@ -163,6 +286,20 @@ public final class MappingContext {
 
   public void addCodeList(String id, Codelist cl) {
     this.codeLists.put(id, cl);
+    this.addedCodeListIds.add(id);
+  }
+
+  /**
+   * @return the ids of the code lists that were added since the last call of {@link
+   *     #clearAddedCodeListIds()}, including code lists that replaced an existing one with the same
+   *     id
+   */
+  public Set<String> getAddedCodeListIds() {
+    return Collections.unmodifiableSet(this.addedCodeListIds);
+  }
+
+  public void clearAddedCodeListIds() {
+    this.addedCodeListIds.clear();
   }
 
   /**
@@ -176,6 +313,7 @@ public final class MappingContext {
     buildAndClearCurrentInfos();
 
     this.currentFeatureTypeMappingName = featureTypeName.getLocalPart();
+    this.currentFeatureSchemaShadow = new FeatureSchemaShadow();
 
     final String key =
         Objects.requireNonNull(featureTypeName, "Feature Type name is null").toString();
@@ -232,8 +370,9 @@ public final class MappingContext {
     this.currentMainEntityDefinition = null;
     this.currentMainTableName = null;
     this.currentMainSortKeyField = null;
-    this.currentJoinInfoByJoinTableName = new HashMap<>();
+    this.currentJoinPathTrie = null;
     this.currentFirstObjectBuilderMappings = new HashMap<>();
+    this.currentFeatureSchemaShadow = new FeatureSchemaShadow();
     //        this.currentMappingTables.clear();
     this.currentPropertyHandlersByTargetPropertyPath = new HashMap<>();
   }
@@ -262,8 +401,16 @@ public final class MappingContext {
     return this.currentFeatureTypeMapping;
   }
 
+  /**
+   * @return the shadow of the feature schema builders of the current feature type, all changes of
+   *     source paths, types and roles of the builders are made through the shadow
+   */
+  FeatureSchemaShadow getFeatureSchemaShadow() {
+    return this.currentFeatureSchemaShadow;
+  }
+
   public boolean hasCurrentFeatureTypePrimaryGeometry() {
-    return getFeatureBuilder().build().getPrimaryGeometry().isPresent();
+    return this.currentFeatureSchemaShadow.hasPrimaryGeometry();
   }
 
   //    /**
@@ -279,6 +426,18 @@ public final class MappingContext {
   //        this.missingAssociationTargets.add(associationTarget);
   //    }
 
+  /**
+   * Returns the number of threads that are used to post-process the feature types and to write
+   * the configuration, as set with the project variable {@value #PROPERTY_PARALLELISM}. Without the
+   * variable the configuration is written sequentially, like the XtraServer Mapping.
+   *
+   * @return the number of threads, 1 for sequential processing
+   * @see AlignmentAnalysis#getParallelism()
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
   Value getTransformationProperty(final String name) {
     final Value val = this.transformationProperties.get(name);
     if (val != null) {
@@ -316,10 +475,10 @@ public final class MappingContext {
    * Return the property cells for a type cell
    *
    * @param typeCell the type cell
-   * @return the property cells associated with type cell
+   * @return the property cells associated with type cell, sorted by priority
    */
   Collection<? extends Cell> getPropertyCells(final Cell typeCell) {
-    return this.alignment.getPropertyCells(typeCell);
+    return this.alignmentIndex.getPropertyCells(typeCell);
   }
 
   /**
@@ -328,6 +487,20 @@ public final class MappingContext {
    * @return FeatureProviderDataV2 containing all FeatureSchemas
    */
   public FeatureProviderDataV2 getProviderData(String id) {
+    final MappingBuildEvent event =
+        FlightRecorder.AVAILABLE ? MappingBuildEvent.start(EXPORTER) : null;
+    FeatureProviderDataV2 providerData = null;
+    try {
+      providerData = buildProviderData(id);
+      return providerData;
+    } finally {
+      if (event != null) {
+        event.end(providerData != null ? providerData.getTypes().size() : 0);
+      }
+    }
+  }
+
+  private FeatureProviderDataV2 buildProviderData(String id) {
 
     buildAndClearCurrentInfos();
 
@@ -351,24 +524,17 @@ public final class MappingContext {
         .user(String.format("${%s.db.user:-${db.user}}", id))
         .password(String.format("${%s.db.password:-${db.password}}", id));
 
-    featureTypeMappings.values().stream()
-        .map(ImmutableFeatureSchema.Builder::build)
-        .map(fs -> applyTransformations(fs))
-        .filter(Objects::nonNull)
+    final List<FeatureSchema> featureSchemas =
+        featureTypeMappings.values().stream()
+            .map(ImmutableFeatureSchema.Builder::build)
+            .collect(Collectors.toList());
+    SCHEMA_RULES
+        .applyAll(featureSchemas, getParallelism())
         .forEach(featureSchema -> providerData.putTypes(featureSchema.getName(), featureSchema));
 
     return providerData.build();
   }
 
-  private FeatureSchema applyTransformations(FeatureSchema original) {
-
-    FeatureSchema result = original.accept(new FilterInvalidMeasureProperties());
-
-    // Apply additional transformations, as necessary
-
-    return result;
-  }
-
   /**
    * Replace project variables in a string
    *
@@ -377,64 +543,88 @@ public final class MappingContext {
    *     'PROJECT_VARIABLE_<VARIABLE_NAME>_NOT_SET'
    */
   public String resolveProjectVars(final String str) {
-    final Matcher m = projectVarPattern.matcher(str);
-    String repStr = str;
-    while (m.find()) {
-      final String varName = m.group(1);
-      final Value val = transformationProperties.get(varName);
-      final String replacement;
-      if (val != null && !val.isEmpty()) {
-        replacement = val.as(String.class);
-      } else {
-        replacement = "PROJECT_VARIABLE_" + varName + "_NOT_SET";
-      }
-      repStr =
-          repStr.replaceAll(
-              "\\{\\{project:" + varName + "}}", Matcher.quoteReplacement(replacement));
+    return projectVariableTemplates.resolve(str);
+  }
+
+  /**
+   * Return the first value of a transformation parameter of a property cell with replaced project
+   * variables. The value of a {@link CellParentWrapper} is resolved once and shared with the other
+   * export formats.
+   *
+   * @param propertyCell the property cell
+   * @param name the parameter name
+   * @return the resolved value or null if the parameter is not set
+   */
+  public String getResolvedParameter(final Cell propertyCell, final String name) {
+    if (propertyCell instanceof CellParentWrapper) {
+      return ((CellParentWrapper) propertyCell).getResolvedParameter(name, projectVariableTemplates);
     }
-    return repStr;
+    return CellParentWrapper.resolveParameter(propertyCell, name, projectVariableTemplates);
+  }
+
+  /**
+   * Return the association target of the target property of a property cell that is found in the
+   * target schema. The association target of a {@link CellParentWrapper} is resolved once and
+   * shared with the other export formats.
+   *
+   * @param propertyCell the property cell
+   * @return association target or empty if the target property is not a reference
+   */
+  public Optional<String> getAssociationTarget(final Cell propertyCell) {
+    if (propertyCell instanceof CellParentWrapper) {
+      return ((CellParentWrapper) propertyCell).getAssociationTarget(targetSchemaIndex);
+    }
+    final Property targetProperty = XtraServerMappingUtils.getTargetProperty(propertyCell);
+    return targetProperty != null
+        ? targetSchemaIndex.getAssociationTarget(targetProperty)
+        : Optional.empty();
   }
 
   public void addJoinInfo(JoinInfo ji) {
-    this.currentJoinInfoByJoinTableName.put(ji.getJoinTableName(), ji);
+    if (this.currentJoinPathTrie == null) {
+      this.currentJoinPathTrie =
+          new JoinPathTrie(
+              AlignmentUtil.getTypeEntity(this.currentMainEntityDefinition),
+              this.currentMainTableName);
+    }
+    this.currentJoinPathTrie.add(ji);
   }
 
+  /**
+   * Report the joins of the current feature type whose base table is not joined with the main
+   * table.
+   */
+  public void reportUnresolvedJoins() {
+    if (this.currentJoinPathTrie != null) {
+      this.currentJoinPathTrie.reportPending(reporter, currentFeatureTypeMappingName);
+    }
+  }
+
+  /**
+   * @return the joins of the current feature type by the alias of the joined table, tables that
+   *     are joined more than once get the aliases <code>table</code>, <code>table_2</code>, ...
+   */
   public Map<String, JoinInfo> getCurrentJoinInfoByJoinTableName() {
-    return this.currentJoinInfoByJoinTableName;
+    return this.currentJoinPathTrie == null
+        ? Collections.emptyMap()
+        : this.currentJoinPathTrie.getJoinsByAlias();
   }
 
+  /**
+   * Return the join part of the source path of a property, e.g. <code>[id=fk]table</code>. The
+   * path prefixes are precomputed when the joins are added.
+   *
+   * @param sourceProperty the source property
+   * @return the join source path or empty if the property is a column of the main table
+   * @throws IllegalStateException if the table of the property is not joined with the main table
+   */
   public Optional<String> computeJoinSourcePath(PropertyEntityDefinition sourceProperty) {
-
-    if (sourceProperty != null && !this.getCurrentJoinInfoByJoinTableName().isEmpty()) {
-
-      String result = "";
-      String tableName = sourceProperty.getType().getName().getLocalPart();
-
-      while (!tableName.equals(this.getMainTableName())) {
-        // add join-statement
-        JoinInfo ji = this.getCurrentJoinInfoByJoinTableName().get(tableName);
-
-        result =
-            "["
-                + ji.getBaseTableJoinField()
-                + "="
-                + ji.getJoinTableJoinField()
-                + "]"
-                + ji.getJoinTableName()
-                + "/"
-                + result;
-
-        tableName = ji.getBaseTableName();
-      }
-
-      if (result.length() > 0) {
-        // strip the last '/'
-        result = result.substring(0, result.length() - 1);
-        return Optional.of(result);
-      }
+    if (sourceProperty == null || this.currentJoinPathTrie == null) {
+      return Optional.empty();
     }
-
-    return Optional.empty();
+    return this.currentJoinPathTrie.getSourcePathPrefix(
+        AlignmentUtil.getTypeEntity(sourceProperty),
+        sourceProperty.getType().getName().getLocalPart());
   }
 
   public String computeSourcePropertyName(PropertyEntityDefinition sourceProperty) {
@@ -22,14 +22,12 @@ import de.ii.xtraplatform.features.domain.SchemaBase;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.features.domain.transform.ImmutablePropertyTransformation;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.cst.functions.string.RegexAnalysisFunction;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.ParameterValue;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.schema.model.PropertyDefinition;
 import eu.esdihumboldt.hale.common.schema.model.TypeDefinition;
-import eu.esdihumboldt.hale.common.schema.model.constraint.property.Reference;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -73,14 +71,7 @@ class RegexHandler extends AbstractPropertyTransformationHandler {
     String newOutputFormat = outputFormat.replaceAll("\\{(\\d+)\\}", "\\$$1");
 
     // TODO refactoring - quite similar to code in FormattedStringHandler
-    boolean isObjectReference = false;
-    if (targetProperty.getDefinition().getDefinition().getConstraint(Reference.class)
-        .isReference()) {
-      final String associationTargetRef = getTargetFromSchema(targetProperty);
-      if (associationTargetRef != null) {
-        isObjectReference = true;
-      }
-    }
+    boolean isObjectReference = getAssociationTarget(propertyCell).isPresent();
 
     Optional<String> refType = Optional.empty();
 
@@ -109,13 +100,14 @@ class RegexHandler extends AbstractPropertyTransformationHandler {
 
     Property sourceProperty = XtraServerMappingUtils.getSourceProperty(propertyCell);
     ImmutableFeatureSchema.Builder propertyBuilder = buildPropertyPath(propertyCell, targetProperty, refType);
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     PropertyDefinition pd = getLastPropertyDefinition(targetProperty);
     TypeDefinition td = pd.getPropertyType();
 
     // check if the property has already been established
     // TODO - FUTURE WORK (multiplicity not supported yet)
-    if (!propertyBuilder.build().getEffectiveSourcePaths().isEmpty()) {
+    if (!shadow.getEffectiveSourcePaths(propertyBuilder).isEmpty()) {
       mappingContext.getReporter().warn(
               "Multiple 'Regex Analysis'-relations for same target property ({0}) not supported yet. Only the first encountered relationship will be encoded. Ignoring regex {1}.",
               fullDisplayPath(targetProperty), regex);
@@ -128,14 +120,14 @@ class RegexHandler extends AbstractPropertyTransformationHandler {
         .getDefinition());
     if (joinSourcePath.isPresent()) {
       if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-        this.mappingContext.getFirstObjectBuilder(targetProperty)
-            .sourcePath(joinSourcePath.get());
-        propertyBuilder.sourcePath(sourcePath);
+        shadow.sourcePath(
+            this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
+        shadow.sourcePath(propertyBuilder, sourcePath);
       } else {
-        propertyBuilder.sourcePath(joinSourcePath.get() + "/" + sourcePath);
+        shadow.sourcePath(propertyBuilder, joinSourcePath.get() + "/" + sourcePath);
       }
     } else {
-      propertyBuilder.sourcePath(sourcePath);
+      shadow.sourcePath(propertyBuilder, sourcePath);
     }
 
     ImmutablePropertyTransformation.Builder trfBuilder = new ImmutablePropertyTransformation.Builder();
@@ -144,13 +136,12 @@ class RegexHandler extends AbstractPropertyTransformationHandler {
 
     propertyBuilder.addAllTransformationsBuilders(trfBuilder);
 
-    SchemaBase.Type baseType = XtraServerWebApiUtil.getWebApiType(td,
-        this.mappingContext.getReporter());
+    SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
     if (isMultiValuedPropertyPerSchemaDefinition(pd)) {
-      propertyBuilder.type(Type.VALUE_ARRAY);
+      shadow.type(propertyBuilder, Type.VALUE_ARRAY);
       propertyBuilder.valueType(baseType);
     } else {
-      propertyBuilder.type(baseType);
+      shadow.type(propertyBuilder, baseType);
     }
 
     return Optional.of(propertyBuilder);
@@ -24,7 +24,6 @@ import de.ii.xtraplatform.features.domain.SchemaBase.Type;
 import de.ii.xtraplatform.geometries.domain.SimpleFeatureGeometry;
 import de.ii.xtraserver.hale.io.writer.XtraServerMappingUtils;
 import de.ii.xtraserver.hale.io.writer.handler.TransformationHandler;
-import de.ii.xtraserver.webapi.hale.io.writer.XtraServerWebApiUtil;
 import eu.esdihumboldt.hale.common.align.model.Cell;
 import eu.esdihumboldt.hale.common.align.model.Property;
 import eu.esdihumboldt.hale.common.align.model.functions.RenameFunction;
@@ -57,7 +56,10 @@ class RenameHandler extends AbstractPropertyTransformationHandler {
         this.mappingContext.computeSourcePropertyName(sourceProperty.getDefinition());
     if (joinSourcePath.isPresent()) {
       if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-        this.mappingContext.getFirstObjectBuilder(targetProperty).sourcePath(joinSourcePath.get());
+        this.mappingContext
+            .getFeatureSchemaShadow()
+            .sourcePath(
+                this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
       } else {
         sourcePath = joinSourcePath.get() + "/" + sourcePath;
       }
@@ -85,58 +87,59 @@ class RenameHandler extends AbstractPropertyTransformationHandler {
 
     PropertyDefinition targetPd = getLastPropertyDefinition(targetProperty);
     TypeDefinition td = targetPd.getPropertyType();
-    SchemaBase.Type baseType =
-        XtraServerWebApiUtil.getWebApiType(td, this.mappingContext.getReporter());
+    SchemaBase.Type baseType = this.mappingContext.getWebApiType(td);
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     // TODO - Try to identify approach for setting the primary geometry (relevant if a type had
     // multiple such properties).
     // Would a postprocessing transformation be a solution?
     if (baseType == Type.GEOMETRY) {
-      propertyBuilder.role(
+      shadow.role(
+          propertyBuilder,
           mappingContext.hasCurrentFeatureTypePrimaryGeometry()
               ? Role.SECONDARY_GEOMETRY
               : Role.PRIMARY_GEOMETRY);
       propertyBuilder.geometryType(SimpleFeatureGeometry.ANY);
     }
 
-    // build the current schema structure for inspection
-    FeatureSchema fs = propertyBuilder.build();
-
-    if (fs.getEffectiveSourcePaths().contains(sourcePath)) {
+    if (shadow.getEffectiveSourcePaths(propertyBuilder).contains(sourcePath)) {
       // then ignore the property - at least for now
       // TODO - FUTURE WORK (Joins with multiple main tables)
       //            mappingContext.getReporter().warn("Encountered sourcePath "+sourcePath+" again
       // (" +pName +")");
     } else {
 
-      if (!fs.getSourcePath().isPresent() && fs.getSourcePaths().isEmpty()) {
+      final Optional<String> currentSourcePath = shadow.getSourcePath(propertyBuilder);
+      final boolean hasSourcePaths = !shadow.getSourcePaths(propertyBuilder).isEmpty();
+
+      if (!currentSourcePath.isPresent() && !hasSourcePaths) {
 
         // the property has not been created yet
-        propertyBuilder.sourcePath(sourcePath);
+        shadow.sourcePath(propertyBuilder, sourcePath);
         if (isMultiValuedPropertyPerSchemaDefinition(targetPd)) {
-          propertyBuilder.type(Type.VALUE_ARRAY);
+          shadow.type(propertyBuilder, Type.VALUE_ARRAY);
           propertyBuilder.valueType(baseType);
         } else {
-          propertyBuilder.type(baseType);
+          shadow.type(propertyBuilder, baseType);
         }
 
       } else {
 
-        if (fs.getSourcePath().isPresent() && fs.getSourcePaths().isEmpty()) {
+        if (currentSourcePath.isPresent() && !hasSourcePaths) {
 
           /* We encountered another cell that applies to the same target property
           (with different source path). */
 
           // move current sourcePath to sourcePaths, then unset sourcePath
-          propertyBuilder.addSourcePaths(fs.getSourcePath().get());
-          propertyBuilder.sourcePath(Optional.empty());
+          shadow.addSourcePath(propertyBuilder, currentSourcePath.get());
+          shadow.clearSourcePath(propertyBuilder);
 
           propertyBuilder.valueType(baseType);
-          propertyBuilder.type(SchemaBase.Type.VALUE_ARRAY);
+          shadow.type(propertyBuilder, SchemaBase.Type.VALUE_ARRAY);
         }
 
         // add new source path to sourcePaths
-        propertyBuilder.addSourcePaths(sourcePath);
+        shadow.addSourcePath(propertyBuilder, sourcePath);
       }
     }
   }
@@ -45,6 +45,7 @@ class SqlExpressionHandler extends RenameHandler {
 
     ImmutableFeatureSchema.Builder propertyBuilder =
         buildPropertyPath(propertyCell, targetProperty);
+    final FeatureSchemaShadow shadow = this.mappingContext.getFeatureSchemaShadow();
 
     final ListMultimap<String, ParameterValue> parameters =
         propertyCell.getTransformationParameters();
@@ -58,7 +59,8 @@ class SqlExpressionHandler extends RenameHandler {
         this.mappingContext.computeJoinSourcePath(sourceProperty.getDefinition());
     if (joinSourcePath.isPresent()) {
       if (this.mappingContext.hasFirstObjectBuilderMapping(targetProperty)) {
-        this.mappingContext.getFirstObjectBuilder(targetProperty).sourcePath(joinSourcePath.get());
+        shadow.sourcePath(
+            this.mappingContext.getFirstObjectBuilder(targetProperty), joinSourcePath.get());
       } else {
         sourcePath = joinSourcePath.get() + "/" + sourcePath;
       }
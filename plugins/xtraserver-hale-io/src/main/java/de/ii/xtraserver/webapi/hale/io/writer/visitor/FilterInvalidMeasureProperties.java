@@ -15,27 +15,18 @@
 
 package de.ii.xtraserver.webapi.hale.io.writer.visitor;
 
-import com.google.common.collect.ImmutableMap;
 import de.ii.xtraplatform.features.domain.FeatureSchema;
-import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
 import de.ii.xtraplatform.features.domain.SchemaBase.Type;
-import de.ii.xtraplatform.features.domain.SchemaVisitorTopDown;
-import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
 
 /**
  * Removes properties where 'unit' is set, the property type is OBJECT or OBJECT_ARRAY, and no
  * sub-properties are defined.
  */
-public class FilterInvalidMeasureProperties implements
-    SchemaVisitorTopDown<FeatureSchema, FeatureSchema> {
+public class FilterInvalidMeasureProperties implements SchemaRule {
 
   @Override
-  public FeatureSchema visit(
-      FeatureSchema schema, List<FeatureSchema> parents, List<FeatureSchema> visitedProperties) {
+  public FeatureSchema enter(FeatureSchema schema, List<FeatureSchema> parents) {
 
     if (schema.getUnit().isPresent() && (schema.getType() == Type.OBJECT
         || schema.getType() == Type.OBJECT_ARRAY)
@@ -43,18 +34,6 @@ public class FilterInvalidMeasureProperties implements
       return null;
     }
 
-    Map<String, FeatureSchema> visitedPropertiesMap =
-        visitedProperties.stream()
-            .filter(Objects::nonNull)
-            .map(
-                featureSchema ->
-                    new SimpleImmutableEntry<>(featureSchema.getName(), featureSchema))
-            .collect(
-                ImmutableMap.toImmutableMap(
-                    Entry::getKey, Entry::getValue, (first, second) -> second));
-    return new ImmutableFeatureSchema.Builder()
-        .from(schema)
-        .propertyMap(visitedPropertiesMap)
-        .build();
+    return schema;
   }
-}
\ No newline at end of file
+}
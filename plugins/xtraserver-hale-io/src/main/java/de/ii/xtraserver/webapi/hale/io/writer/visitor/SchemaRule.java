@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.visitor;
+
+import de.ii.xtraplatform.features.domain.FeatureSchema;
+import java.util.List;
+
+/**
+ * A rule that is applied to every node of a {@link FeatureSchema} by a {@link SchemaRulePipeline}.
+ * Rules must return the given instance if they do not change a node, so that only changed nodes
+ * are copied, and must be stateless, since feature types are processed in parallel.
+ */
+public interface SchemaRule {
+
+  /**
+   * Called top-down, before the properties of the node are visited.
+   *
+   * @param schema the node as returned by the previous rules
+   * @param parents the parents of the node, starting with the feature type
+   * @return the node, a changed copy or null to remove the node with all its properties
+   */
+  default FeatureSchema enter(FeatureSchema schema, List<FeatureSchema> parents) {
+    return schema;
+  }
+
+  /**
+   * Called bottom-up, after the properties of the node have been visited.
+   *
+   * @param schema the node with the visited properties
+   * @param parents the parents of the node, starting with the feature type
+   * @return the node, a changed copy or null to remove the node
+   */
+  default FeatureSchema exit(FeatureSchema schema, List<FeatureSchema> parents) {
+    return schema;
+  }
+}
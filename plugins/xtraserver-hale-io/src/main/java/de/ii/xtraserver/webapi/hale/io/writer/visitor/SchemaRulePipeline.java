@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2022 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.visitor;
+
+import com.google.common.collect.ImmutableList;
+import de.ii.xtraplatform.features.domain.FeatureSchema;
+import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a list of {@link SchemaRule}s to feature schemas in a single traversal. For every node
+ * the {@link SchemaRule#enter} methods of all rules are called in order, then the properties are
+ * visited and then the {@link SchemaRule#exit} methods are called in order. Like a {@link
+ * de.ii.xtraplatform.features.domain.SchemaVisitorTopDown}, the traversal only follows the
+ * properties, concat and coalesce members are kept as they are. A node is only copied if a rule or
+ * one of its properties changed it, unchanged subtrees are shared with the input.
+ */
+public final class SchemaRulePipeline {
+
+  // shared by all pipelines, idle threads are stopped after a minute
+  private static final ExecutorService POOL =
+      Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+              final Thread thread =
+                  new Thread(runnable, "schema-rules-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+
+  private final List<SchemaRule> rules;
+
+  public SchemaRulePipeline(final List<SchemaRule> rules) {
+    this.rules = ImmutableList.copyOf(rules);
+  }
+
+  public SchemaRulePipeline(final SchemaRule... rules) {
+    this(ImmutableList.copyOf(rules));
+  }
+
+  /**
+   * Apply the rules to a feature schema.
+   *
+   * @param schema the feature schema
+   * @return the transformed feature schema or null if it was removed by a rule
+   */
+  public FeatureSchema apply(final FeatureSchema schema) {
+    final List<FeatureSchema> parents = new ArrayList<>();
+    return visit(schema, parents, Collections.unmodifiableList(parents));
+  }
+
+  /**
+   * Apply the rules to independent feature schemas, e.g. the types of a provider. The schemas are
+   * processed by up to <code>parallelism</code> workers on a pool that is shared by all pipelines.
+   *
+   * @param schemas the feature schemas
+   * @param parallelism the maximum number of feature schemas that are processed in parallel
+   * @return the transformed feature schemas in the given order, without removed schemas
+   */
+  public List<FeatureSchema> applyAll(
+      final Collection<FeatureSchema> schemas, final int parallelism) {
+    final List<FeatureSchema> result = new ArrayList<>(schemas.size());
+    final int threads = Math.min(parallelism, schemas.size());
+    if (threads <= 1) {
+      for (final FeatureSchema schema : schemas) {
+        addIfPresent(result, apply(schema));
+      }
+      return result;
+    }
+
+    final FeatureSchema[] input = schemas.toArray(new FeatureSchema[0]);
+    final FeatureSchema[] output = new FeatureSchema[input.length];
+    final AtomicInteger next = new AtomicInteger();
+    final List<Future<?>> workers = new ArrayList<>(threads);
+    try {
+      for (int t = 0; t < threads; t++) {
+        workers.add(
+            POOL.submit(
+                () -> {
+                  int i;
+                  while ((i = next.getAndIncrement()) < input.length) {
+                    output[i] = apply(input[i]);
+                  }
+                }));
+      }
+      for (final Future<?> worker : workers) {
+        getResult(worker);
+      }
+    } finally {
+      // stops the other workers after a failure
+      next.set(input.length);
+      for (final Future<?> worker : workers) {
+        worker.cancel(true);
+      }
+    }
+    for (final FeatureSchema schema : output) {
+      addIfPresent(result, schema);
+    }
+    return result;
+  }
+
+  private FeatureSchema visit(
+      final FeatureSchema original,
+      final List<FeatureSchema> parents,
+      final List<FeatureSchema> parentsView) {
+    FeatureSchema schema = original;
+    for (final SchemaRule rule : rules) {
+      schema = rule.enter(schema, parentsView);
+      if (schema == null) {
+        return null;
+      }
+    }
+
+    parents.add(schema);
+    final Map<String, FeatureSchema> properties =
+        visitProperties(schema.getPropertyMap(), parents, parentsView);
+    parents.remove(parents.size() - 1);
+
+    if (properties != null) {
+      schema = ImmutableFeatureSchema.copyOf(schema).withPropertyMap(properties);
+    }
+
+    for (final SchemaRule rule : rules) {
+      schema = rule.exit(schema, parentsView);
+      if (schema == null) {
+        return null;
+      }
+    }
+    return schema;
+  }
+
+  /** @return the visited properties or null if no property was changed */
+  private Map<String, FeatureSchema> visitProperties(
+      final Map<String, FeatureSchema> properties,
+      final List<FeatureSchema> parents,
+      final List<FeatureSchema> parentsView) {
+    Map<String, FeatureSchema> changed = null;
+    int i = 0;
+    for (final Map.Entry<String, FeatureSchema> entry : properties.entrySet()) {
+      final FeatureSchema visited = visit(entry.getValue(), parents, parentsView);
+      if (changed == null && visited != entry.getValue()) {
+        changed = new LinkedHashMap<>(properties.size());
+        copyFirst(properties, i, changed);
+      }
+      if (changed != null && visited != null) {
+        changed.put(entry.getKey(), visited);
+      }
+      i++;
+    }
+    return changed;
+  }
+
+  private static void copyFirst(
+      final Map<String, FeatureSchema> properties,
+      final int count,
+      final Map<String, FeatureSchema> target) {
+    int i = 0;
+    for (final Map.Entry<String, FeatureSchema> entry : properties.entrySet()) {
+      if (i++ == count) {
+        return;
+      }
+      target.put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private static void addIfPresent(final List<FeatureSchema> result, final FeatureSchema schema) {
+    if (schema != null) {
+      result.add(schema);
+    }
+  }
+
+  private static void getResult(final Future<?> future) {
+    try {
+      future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Post-processing of the feature schemas was interrupted", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.Test;
+
+public class ParallelZipWriterTest {
+
+  private static Map<String, byte[]> entries() {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (int i = 0; i < 20; i++) {
+      final StringBuilder content = new StringBuilder();
+      for (int j = 0; j < 1000 * i; j++) {
+        content.append("<FeatureType name=\"ft").append(i).append("\"/>\n");
+      }
+      entries.put("mapping/ft" + i + ".xml", content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    return entries;
+  }
+
+  private static byte[] write(final Map<String, byte[]> entries, final int parallelism)
+      throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ParallelZipWriter zip = new ParallelZipWriter(out, parallelism)) {
+      zip.addDirectory("mapping");
+      for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        zip.add(entry.getKey(), () -> new ByteArrayInputStream(entry.getValue()));
+      }
+      zip.finish();
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void writesSameBytesForSameEntries() throws IOException {
+    final Map<String, byte[]> entries = entries();
+
+    final byte[] first = write(entries, 4);
+
+    assertArrayEquals(first, write(entries, 4));
+    assertArrayEquals(first, write(entries, 1));
+  }
+
+  @Test
+  public void writesReadableArchive() throws IOException {
+    final Map<String, byte[]> entries = entries();
+
+    try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(write(entries, 4)))) {
+      final ZipEntry directory = in.getNextEntry();
+      assertEquals("mapping/", directory.getName());
+      assertTrue(directory.isDirectory());
+
+      for (final Map.Entry<String, byte[]> expected : entries.entrySet()) {
+        final ZipEntry entry = in.getNextEntry();
+        assertEquals(expected.getKey(), entry.getName());
+        assertArrayEquals(expected.getValue(), in.readAllBytes());
+      }
+      assertNull(in.getNextEntry());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsDuplicateEntries() throws IOException {
+    try (ParallelZipWriter zip = new ParallelZipWriter(new ByteArrayOutputStream(), 2)) {
+      zip.add("a.xml", () -> new ByteArrayInputStream(new byte[0]));
+      zip.add("a.xml", () -> new ByteArrayInputStream(new byte[0]));
+    }
+  }
+}
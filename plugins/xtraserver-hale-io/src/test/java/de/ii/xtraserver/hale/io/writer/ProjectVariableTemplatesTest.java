@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import eu.esdihumboldt.hale.common.core.io.Value;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ProjectVariableTemplatesTest {
+
+  private static ProjectVariableTemplates templates(final String... namesAndValues) {
+    final Map<String, Value> variables = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      variables.put(namesAndValues[i], Value.of(namesAndValues[i + 1]));
+    }
+    return new ProjectVariableTemplates(variables);
+  }
+
+  @Test
+  public void resolvesVariables() {
+    final ProjectVariableTemplates templates = templates("schema", "public", "prefix", "ax_");
+
+    assertEquals(
+        "public.ax_buchungsblatt",
+        templates.resolve("{{project:schema}}.{{project:prefix}}buchungsblatt"));
+    assertEquals("public", templates.resolve("{{project:schema}}"));
+  }
+
+  @Test
+  public void marksUnsetVariables() {
+    final ProjectVariableTemplates templates = templates("schema", "public");
+
+    assertEquals(
+        "PROJECT_VARIABLE_prefix_NOT_SET.table",
+        templates.resolve("{{project:prefix}}.table"));
+  }
+
+  @Test
+  public void returnsStringsWithoutVariables() {
+    final ProjectVariableTemplates templates = templates("schema", "public");
+    final String plain = "no {{variables}} here";
+
+    assertSame(plain, templates.resolve(plain));
+    assertNull(templates.resolve(null));
+  }
+
+  @Test
+  public void resolvesCachedTemplatesPerInstance() {
+    final String template = "{{project:schema}}.table";
+
+    assertEquals("a.table", templates("schema", "a").resolve(template));
+    assertEquals("b.table", templates("schema", "b").resolve(template));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class StreamingMappingDocumentTest {
+
+  private static final String NS = "http://www.interactive-instruments.de/namespaces/XtraServer";
+
+  private static ByteArrayInputStream document(final String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Document parse(final byte[] xml) throws Exception {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+  }
+
+  @Test
+  public void appendsChildrenOfRootElements() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final StreamingMappingDocument document = new StreamingMappingDocument(out);
+
+    document.append(
+        document(
+            "<?xml version=\"1.0\"?><!-- header --><x:XtraServerMapping xmlns:x=\""
+                + NS
+                + "\"><!-- first --><x:FeatureType name=\"a\"/></x:XtraServerMapping>"));
+    document.append(
+        document(
+            "<x:XtraServerMapping xmlns:x=\""
+                + NS
+                + "\" xmlns:ax=\"http://www.adv-online.de/namespaces/adv/gid/7.1\"><!-- second -->"
+                + "<x:FeatureType name=\"ax:b\"/></x:XtraServerMapping>"));
+    document.finish();
+
+    final String xml = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    assertFalse(xml.contains("second"));
+
+    final Element root = parse(out.toByteArray()).getDocumentElement();
+    assertEquals(NS, root.getNamespaceURI());
+    assertEquals("XtraServerMapping", root.getLocalName());
+    final NodeList featureTypes = root.getElementsByTagNameNS(NS, "FeatureType");
+    assertEquals(2, featureTypes.getLength());
+    assertEquals("a", ((Element) featureTypes.item(0)).getAttribute("name"));
+    // the namespace of the second root element is declared on its children
+    assertEquals(
+        "http://www.adv-online.de/namespaces/adv/gid/7.1",
+        featureTypes.item(1).lookupNamespaceURI("ax"));
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void rejectsDifferentRootElements() throws Exception {
+    final StreamingMappingDocument document =
+        new StreamingMappingDocument(new ByteArrayOutputStream());
+
+    document.append(document("<a><b/></a>"));
+    document.append(document("<c><b/></c>"));
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void rejectsEmptyDocument() throws Exception {
+    new StreamingMappingDocument(new ByteArrayOutputStream()).finish();
+  }
+}
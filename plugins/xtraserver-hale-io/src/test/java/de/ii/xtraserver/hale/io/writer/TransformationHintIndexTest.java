@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.hale.io.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.ii.xtraserver.hale.io.writer.TransformationHintIndex.CellHints;
+import eu.esdihumboldt.hale.common.align.model.Alignment;
+import eu.esdihumboldt.hale.common.align.model.Cell;
+import eu.esdihumboldt.hale.common.align.model.MutableCell;
+import eu.esdihumboldt.hale.common.align.model.Priority;
+import eu.esdihumboldt.hale.common.align.model.impl.DefaultCell;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class TransformationHintIndexTest {
+
+  private static MutableCell cell(final String id, final String documentation) {
+    final MutableCell cell = new DefaultCell();
+    cell.setId(id);
+    if (documentation != null) {
+      cell.getDocumentation().put(null, documentation);
+    }
+    return cell;
+  }
+
+  // the index only reads the cells, which have no entities here
+  private static TransformationHintIndex index(final Cell... cells) {
+    final List<Cell> cellList = List.of(cells);
+    final Alignment alignment =
+        (Alignment)
+            Proxy.newProxyInstance(
+                Alignment.class.getClassLoader(),
+                new Class<?>[] {Alignment.class},
+                (proxy, method, args) -> {
+                  if ("getCells".equals(method.getName())) {
+                    return cellList;
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+                });
+    return new TransformationHintIndex(alignment);
+  }
+
+  @Test
+  public void parsesHints() {
+    final MutableCell cell =
+        cell("c1", "Choice {{XTRASERVER:CHOICE}} with {{XTRASERVER:TARGET=value}} {{XSWA:EMBED}}");
+
+    final CellHints hints = index(cell).get(cell);
+
+    assertTrue(hints.isChoice());
+    assertTrue(hints.isEmbed());
+    assertEquals(Optional.of("value"), hints.get("TARGET"));
+    assertEquals(2, hints.getXtraServerHints().size());
+    assertEquals(3, hints.getHints().size());
+  }
+
+  @Test
+  public void webApiHintsTakePrecedence() {
+    final MutableCell cell = cell("c1", "{{XTRASERVER:TARGET=a}} {{XSWA:TARGET=b}}");
+
+    final CellHints hints = index(cell).get(cell);
+
+    assertEquals(Optional.of("b"), hints.get("TARGET"));
+    assertEquals("a", hints.getXtraServerHints().get("TARGET"));
+  }
+
+  @Test
+  public void returnsEmptyHintsForCellsWithoutHints() {
+    final MutableCell plain = cell("c1", "no hints");
+    final MutableCell undocumented = cell("c2", null);
+
+    final TransformationHintIndex index = index(plain, undocumented);
+
+    assertTrue(index.get(plain).getHints().isEmpty());
+    assertFalse(index.get(undocumented).isChoice());
+    assertFalse(index.get(undocumented).getPriority().isPresent());
+    assertTrue(index.getProblems().isEmpty());
+  }
+
+  @Test
+  public void keepsPriority() {
+    final MutableCell cell = cell("c1", null);
+    cell.setPriority(Priority.HIGH);
+
+    assertEquals(Optional.of(Priority.HIGH), index(cell).get(cell).getPriority());
+  }
+
+  @Test
+  public void reportsMisspelledHints() {
+    final MutableCell cell = cell("c1", "{{XSWA:CHOISE}} {{XTRASERVR:EMBED}} {{XTRASERVER:EMBDE}}");
+
+    final TransformationHintIndex index = index(cell);
+
+    assertEquals(3, index.getProblems().size());
+    assertTrue(index.getProblems().get(0).contains("did you mean CHOICE?"));
+    assertTrue(index.getProblems().get(1).contains("did you mean EMBED?"));
+    assertTrue(index.getProblems().get(2).startsWith("{{XTRASERVR:EMBED}}"));
+  }
+}
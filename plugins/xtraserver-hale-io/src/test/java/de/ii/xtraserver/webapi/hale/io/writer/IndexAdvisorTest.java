@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.ii.xtraplatform.features.domain.FeatureProviderDataV2;
+import de.ii.xtraplatform.features.domain.FeatureSchema;
+import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
+import de.ii.xtraplatform.features.domain.SchemaBase.Type;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class IndexAdvisorTest {
+
+  private static final Pattern INDEX_NAME = Pattern.compile("CREATE INDEX IF NOT EXISTS (\\S+) ");
+
+  // the advisor only reads the types of the provider
+  private static FeatureProviderDataV2 provider(final FeatureSchema... types) {
+    final Map<String, FeatureSchema> typeMap = new LinkedHashMap<>();
+    for (final FeatureSchema type : types) {
+      typeMap.put(type.getName(), type);
+    }
+    return (FeatureProviderDataV2)
+        Proxy.newProxyInstance(
+            FeatureProviderDataV2.class.getClassLoader(),
+            new Class<?>[] {FeatureProviderDataV2.class},
+            (proxy, method, args) -> {
+              if ("getTypes".equals(method.getName())) {
+                return typeMap;
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+
+  private static FeatureSchema type(
+      final String name, final String sourcePath, final FeatureSchema... properties) {
+    final Map<String, FeatureSchema> propertyMap = new LinkedHashMap<>();
+    for (final FeatureSchema property : properties) {
+      propertyMap.put(property.getName(), property);
+    }
+    return new ImmutableFeatureSchema.Builder()
+        .name(name)
+        .type(Type.OBJECT)
+        .sourcePath(sourcePath)
+        .propertyMap(propertyMap)
+        .build();
+  }
+
+  private static FeatureSchema property(
+      final String name, final Type type, final String sourcePath) {
+    return new ImmutableFeatureSchema.Builder()
+        .name(name)
+        .type(type)
+        .sourcePath(sourcePath)
+        .build();
+  }
+
+  private static String write(final IndexAdvisor advisor) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    advisor.write("provider", out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static List<String> indexNames(final String script) {
+    final List<String> names = new ArrayList<>();
+    final Matcher matcher = INDEX_NAME.matcher(script);
+    while (matcher.find()) {
+      names.add(matcher.group(1));
+    }
+    return names;
+  }
+
+  @Test
+  public void suggestsIndexesForSourcePaths() throws IOException {
+    final IndexAdvisor advisor = new IndexAdvisor(Map.of());
+    advisor.addProvider(
+        provider(
+            type(
+                "flurstueck",
+                "/flurstueck{sortKey=objid}{filter=land='05'}",
+                property("geometrie", Type.GEOMETRY, "geom"),
+                property("blatt", Type.STRING, "[objid=fs_id]buchung/blatt"))));
+
+    final String script = write(advisor);
+
+    assertEquals(4, advisor.size());
+    assertEquals(
+        List.of(
+            "idx_buchung_fs_id",
+            "idx_flurstueck_geom_gist",
+            "idx_flurstueck_land",
+            "idx_flurstueck_objid"),
+        indexNames(script));
+    assertTrue(script.contains("ON flurstueck USING gist (geom);"));
+    assertTrue(
+        script.contains(
+            "-- sort key of feature type flurstueck\n"
+                + "-- join flurstueck.objid = buchung.fs_id of feature type flurstueck\n"
+                + "CREATE INDEX IF NOT EXISTS idx_flurstueck_objid ON flurstueck (objid);"));
+  }
+
+  @Test
+  public void makesAmbiguousNamesUnique() throws IOException {
+    final IndexAdvisor advisor = new IndexAdvisor(Map.of());
+    advisor.addProvider(
+        provider(
+            type("a", "/Flurstueck{sortKey=id}"), type("b", "/flurstueck{sortKey=id}")));
+
+    final List<String> names = indexNames(write(advisor));
+
+    assertEquals(2, names.size());
+    assertNotEquals(names.get(0), names.get(1));
+    for (final String name : names) {
+      assertTrue(name, name.matches("idx_flurstueck_id_[0-9a-f]{8}"));
+    }
+  }
+
+  @Test
+  public void shortensLongNames() throws IOException {
+    final String table = "t".repeat(70);
+    final IndexAdvisor advisor = new IndexAdvisor(Map.of());
+    advisor.addProvider(provider(type("a", "/" + table + "{sortKey=id}")));
+
+    final String name = indexNames(write(advisor)).get(0);
+
+    assertEquals(63, name.length());
+    assertTrue(name, name.matches("idx_t+_[0-9a-f]{8}"));
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.ii.xtraplatform.features.domain.SchemaBase.Type;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class WebApiTypeResolverTest {
+
+  private static Map<String, Type> read(final String typeMap, final List<String> problems)
+      throws IOException {
+    return WebApiTypeResolver.readTypeMap(
+        new ByteArrayInputStream(typeMap.getBytes(StandardCharsets.UTF_8)), problems);
+  }
+
+  @Test
+  public void readsTypeMappings() throws IOException {
+    final List<String> problems = new ArrayList<>();
+
+    final Map<String, Type> typeMap =
+        read(
+            "# comment\n"
+                + "\n"
+                + "string = STRING\n"
+                + "  decimal=float  \n"
+                + "{http://example.com/a=b}Measure = FLOAT\n",
+            problems);
+
+    assertTrue(problems.isEmpty());
+    assertEquals(3, typeMap.size());
+    assertEquals(Type.STRING, typeMap.get("string"));
+    assertEquals(Type.FLOAT, typeMap.get("decimal"));
+    // the last '=' separates name and type
+    assertEquals(Type.FLOAT, typeMap.get("{http://example.com/a=b}Measure"));
+  }
+
+  @Test
+  public void skipsInvalidLines() throws IOException {
+    final List<String> problems = new ArrayList<>();
+
+    final Map<String, Type> typeMap =
+        read("string = STRING\nno separator\n= STRING\ninteger = NUMBER\n", problems);
+
+    assertEquals(Map.of("string", Type.STRING), typeMap);
+    assertEquals(3, problems.size());
+    assertTrue(problems.get(0).startsWith("line 2 "));
+    assertTrue(problems.get(1).startsWith("line 3 "));
+    assertEquals("line 4 has the unknown type 'NUMBER'", problems.get(2));
+  }
+
+  @Test
+  public void readsBundledTypeMap() {
+    final Map<String, Type> typeMap = WebApiTypeResolver.readBundledTypeMap();
+
+    assertEquals(Type.STRING, typeMap.get("string"));
+    assertEquals(Type.DATETIME, typeMap.get("dateTime"));
+  }
+}
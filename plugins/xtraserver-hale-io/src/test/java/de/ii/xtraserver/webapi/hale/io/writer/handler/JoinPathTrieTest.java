@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import eu.esdihumboldt.hale.common.align.model.impl.TypeEntityDefinition;
+import eu.esdihumboldt.hale.common.core.io.report.impl.DefaultIOReporter;
+import eu.esdihumboldt.hale.common.schema.SchemaSpaceID;
+import eu.esdihumboldt.hale.common.schema.model.impl.DefaultTypeDefinition;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.xml.namespace.QName;
+import org.junit.Test;
+
+public class JoinPathTrieTest {
+
+  private static TypeEntityDefinition type(final String tableName) {
+    return type("", tableName);
+  }
+
+  private static TypeEntityDefinition type(final String namespace, final String tableName) {
+    return new TypeEntityDefinition(
+        new DefaultTypeDefinition(new QName(namespace, tableName)), SchemaSpaceID.SOURCE, null);
+  }
+
+  @Test
+  public void buildsPrefixesAlongJoinPath() {
+    final JoinPathTrie trie = new JoinPathTrie(type("flurstueck"), "flurstueck");
+    // the second join arrives before its base table is joined
+    trie.add(new JoinInfo("buchung", "blatt_id", "blatt", "id"));
+    trie.add(new JoinInfo("flurstueck", "id", "buchung", "flurstueck_id"));
+
+    assertEquals(Optional.empty(), trie.getSourcePathPrefix(null, "flurstueck"));
+    assertEquals(
+        Optional.of("[id=flurstueck_id]buchung"), trie.getSourcePathPrefix(null, "buchung"));
+    assertEquals(
+        Optional.of("[id=flurstueck_id]buchung/[blatt_id=id]blatt"),
+        trie.getSourcePathPrefix(null, "blatt"));
+  }
+
+  @Test
+  public void findsJoinedTablesByType() {
+    final TypeEntityDefinition mainType = type("flurstueck");
+    // two distinct source types of the same table
+    final TypeEntityDefinition first = type("urn:a", "person");
+    final TypeEntityDefinition second = type("urn:b", "person");
+    final JoinPathTrie trie = new JoinPathTrie(mainType, "flurstueck");
+    trie.add(new JoinInfo("flurstueck", "eigentuemer", "person", "id", mainType, first));
+    trie.add(new JoinInfo("flurstueck", "verwalter", "person", "id", mainType, second));
+
+    assertEquals(
+        Optional.of("[eigentuemer=id]person"), trie.getSourcePathPrefix(first, "person"));
+    assertEquals(
+        Optional.of("[verwalter=id]person"), trie.getSourcePathPrefix(second, "person"));
+    // the first join of a table is used if the type is unknown
+    assertEquals(
+        Optional.of("[eigentuemer=id]person"), trie.getSourcePathPrefix(null, "person"));
+  }
+
+  @Test
+  public void aliasesRepeatedTables() {
+    final JoinInfo first = new JoinInfo("flurstueck", "eigentuemer", "person", "id");
+    final JoinInfo second = new JoinInfo("flurstueck", "verwalter", "person", "id");
+    final JoinPathTrie trie = new JoinPathTrie(type("flurstueck"), "flurstueck");
+    trie.add(first);
+    trie.add(second);
+    // the same join again
+    trie.add(new JoinInfo("flurstueck", "eigentuemer", "person", "id"));
+
+    final Map<String, JoinInfo> joins = trie.getJoinsByAlias();
+    assertEquals(List.of("person", "person_2"), List.copyOf(joins.keySet()));
+    assertSame(first, joins.get("person"));
+    assertSame(second, joins.get("person_2"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsTablesThatAreNotJoined() {
+    new JoinPathTrie(type("flurstueck"), "flurstueck").getSourcePathPrefix(null, "person");
+  }
+
+  @Test
+  public void reportsJoinsWithoutBaseTable() {
+    final JoinPathTrie trie = new JoinPathTrie(type("flurstueck"), "flurstueck");
+    trie.add(new JoinInfo("buchung", "blatt_id", "blatt", "id"));
+    final DefaultIOReporter reporter = new DefaultIOReporter(null, "Test", "Test", false);
+
+    trie.reportPending(reporter, "AX_Flurstueck");
+
+    assertEquals(1, reporter.getWarnings().size());
+    assertTrue(reporter.getWarnings().iterator().next().getMessage().contains("AX_Flurstueck"));
+    assertTrue(trie.getJoinsByAlias().isEmpty());
+  }
+}
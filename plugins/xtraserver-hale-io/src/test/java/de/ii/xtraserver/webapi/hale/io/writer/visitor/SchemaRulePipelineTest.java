@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 interactive instruments GmbH
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contributors:
+ *     interactive instruments GmbH <http://www.interactive-instruments.de>
+ */
+
+package de.ii.xtraserver.webapi.hale.io.writer.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import de.ii.xtraplatform.features.domain.FeatureSchema;
+import de.ii.xtraplatform.features.domain.ImmutableFeatureSchema;
+import de.ii.xtraplatform.features.domain.SchemaBase.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class SchemaRulePipelineTest {
+
+  private static FeatureSchema value(final String name) {
+    return new ImmutableFeatureSchema.Builder().name(name).type(Type.STRING).build();
+  }
+
+  private static FeatureSchema measure(final String name) {
+    return new ImmutableFeatureSchema.Builder().name(name).type(Type.OBJECT).unit("m").build();
+  }
+
+  private static FeatureSchema object(final String name, final FeatureSchema... properties) {
+    final Map<String, FeatureSchema> propertyMap = new LinkedHashMap<>();
+    for (final FeatureSchema property : properties) {
+      propertyMap.put(property.getName(), property);
+    }
+    return new ImmutableFeatureSchema.Builder()
+        .name(name)
+        .type(Type.OBJECT)
+        .propertyMap(propertyMap)
+        .build();
+  }
+
+  @Test
+  public void returnsUnchangedSchema() {
+    final FeatureSchema schema = object("ft", value("a"), object("b", value("c")));
+
+    assertSame(schema, new SchemaRulePipeline(new FilterInvalidMeasureProperties()).apply(schema));
+  }
+
+  @Test
+  public void copiesOnlyChangedNodes() {
+    final FeatureSchema unchanged = object("b", value("c"));
+    final FeatureSchema changed = object("d", value("e"), measure("f"));
+    final FeatureSchema schema = object("ft", value("a"), unchanged, changed);
+
+    final FeatureSchema result =
+        new SchemaRulePipeline(new FilterInvalidMeasureProperties()).apply(schema);
+
+    assertEquals(List.of("a", "b", "d"), List.copyOf(result.getPropertyMap().keySet()));
+    assertSame(schema.getPropertyMap().get("a"), result.getPropertyMap().get("a"));
+    assertSame(unchanged, result.getPropertyMap().get("b"));
+    final FeatureSchema copy = result.getPropertyMap().get("d");
+    assertEquals(List.of("e"), List.copyOf(copy.getPropertyMap().keySet()));
+  }
+
+  @Test
+  public void appliesRulesInOrder() {
+    final List<String> calls = new ArrayList<>();
+    final SchemaRule first =
+        new SchemaRule() {
+          @Override
+          public FeatureSchema enter(
+              final FeatureSchema schema, final List<FeatureSchema> parents) {
+            calls.add("enter " + schema.getName() + " " + parents.size());
+            return schema;
+          }
+
+          @Override
+          public FeatureSchema exit(
+              final FeatureSchema schema, final List<FeatureSchema> parents) {
+            calls.add("exit " + schema.getName() + " " + parents.size());
+            return schema;
+          }
+        };
+    final SchemaRule second =
+        new SchemaRule() {
+          @Override
+          public FeatureSchema enter(
+              final FeatureSchema schema, final List<FeatureSchema> parents) {
+            return "a".equals(schema.getName()) ? null : schema;
+          }
+        };
+
+    final FeatureSchema result =
+        new SchemaRulePipeline(first, second).apply(object("ft", value("a"), value("b")));
+
+    assertEquals(List.of("b"), List.copyOf(result.getPropertyMap().keySet()));
+    assertEquals(
+        List.of("enter ft 0", "enter a 1", "enter b 1", "exit b 1", "exit ft 0"), calls);
+  }
+
+  @Test
+  public void removesSchemas() {
+    assertNull(new SchemaRulePipeline(new FilterInvalidMeasureProperties()).apply(measure("ft")));
+  }
+
+  @Test
+  public void appliesAllInOrder() {
+    final List<FeatureSchema> schemas = new ArrayList<>();
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      if (i % 7 == 0) {
+        schemas.add(measure("ft" + i));
+      } else {
+        schemas.add(object("ft" + i, value("a"), measure("b")));
+        expected.add("ft" + i);
+      }
+    }
+
+    final List<FeatureSchema> result =
+        new SchemaRulePipeline(new FilterInvalidMeasureProperties()).applyAll(schemas, 4);
+
+    final List<String> names = new ArrayList<>();
+    for (final FeatureSchema schema : result) {
+      names.add(schema.getName());
+      assertEquals(List.of("a"), List.copyOf(schema.getPropertyMap().keySet()));
+    }
+    assertEquals(expected, names);
+  }
+}